@@ -25,6 +25,7 @@ import consulo.container.boot.ContainerPathManager;
 import consulo.container.impl.*;
 import consulo.container.impl.classloader.Java9ModuleInitializer;
 import consulo.container.impl.classloader.PluginClassLoaderFactory;
+import consulo.container.impl.classloader.PluginLoadStatistics;
 import consulo.container.plugin.*;
 import consulo.container.util.StatCollector;
 import consulo.logging.Logger;
@@ -38,6 +39,8 @@ import jakarta.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.IntConsumer;
 
 public class PluginsLoader {
@@ -69,6 +72,8 @@ public class PluginsLoader {
 
   static final float PLUGINS_PROGRESS_MAX_VALUE = 0.3f;
 
+  private static final boolean PARALLEL_LOADING = !Boolean.getBoolean("consulo.plugins.sequential.loading");
+
   public static void setVersionChecker() {
     PluginValidator.VALIDATOR = new PluginDescriptorVersionValidator() {
       @Override
@@ -108,15 +113,35 @@ public class PluginsLoader {
     }
     int pluginsCount = PluginManager.getPluginsCount();
     getLogger().info(pluginsCount + " plugins initialized in " + (System.currentTimeMillis() - start) + " ms");
+    PluginLoadStatistics.get().dumpPluginLoadTimeStatistics(getLogger()::info, 10);
     logPlugins();
     return info;
   }
 
   @Nonnull
   static PluginsInitializeInfo initializePlugins(@Nullable StartupProgress progress, boolean isHeadlessMode) {
+    // one pool for descriptors of all plugin directories and for class loaders
+    ForkJoinPool pool = createLoadingPool();
+    try {
+      return initializePlugins(progress, isHeadlessMode, pool);
+    }
+    finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  @Nullable
+  private static ForkJoinPool createLoadingPool() {
+    return PARALLEL_LOADING ? new ForkJoinPool(Runtime.getRuntime().availableProcessors()) : null;
+  }
+
+  @Nonnull
+  private static PluginsInitializeInfo initializePlugins(@Nullable StartupProgress progress, boolean isHeadlessMode, @Nullable ForkJoinPool pool) {
     PluginsInitializeInfo info = new PluginsInitializeInfo();
 
-    List<PluginDescriptorImpl> pluginDescriptors = loadPluginDescriptors(progress, isHeadlessMode);
+    List<PluginDescriptorImpl> pluginDescriptors = loadPluginDescriptors(progress, isHeadlessMode, pool);
 
     final ClassLoader parentLoader = Application.class.getClassLoader();
 
@@ -206,42 +231,89 @@ public class PluginsLoader {
 
     PluginHolderModificator.setPluginLoadOrder(id2Index);
 
-    int i = 0;
-    for (final PluginDescriptorImpl pluginDescriptor : result) {
-      // platform plugin already have classloader
-      if (PluginIds.isPlatformPlugin(pluginDescriptor.getPluginId())) {
-        continue;
-      }
-      else {
-        try {
-          final PluginId[] dependentPluginIds = pluginDescriptor.getDependentPluginIds();
-          final ClassLoader[] parentLoaders = getParentLoaders(idToDescriptorMap, dependentPluginIds);
-
-          final ClassLoader pluginClassLoader = createPluginClassLoader(idToDescriptorMap.keySet(), parentLoaders.length > 0 ? parentLoaders : new ClassLoader[]{parentLoader}, pluginDescriptor);
+    if (pool != null && builder.isAcyclic()) {
+      initializeClassLoadersInParallel(progress, result, idToDescriptorMap, parentLoader, pool);
+    }
+    else {
+      int i = 0;
+      for (final PluginDescriptorImpl pluginDescriptor : result) {
+        initializeClassLoader(pluginDescriptor, idToDescriptorMap, parentLoader);
 
-          if (System.getProperty("jdk.module.path") != null) {
-            List<ModuleLayer> parentModuleLayer = getParentModuleLayer(idToDescriptorMap, dependentPluginIds);
+        if (progress != null) {
+          progress.showProgress("", PLUGINS_PROGRESS_MAX_VALUE + (i++ / (float)result.size()) * 0.35f);
+        }
+      }
+    }
 
-            pluginDescriptor.setModuleLayer(Java9ModuleInitializer.initializeEtcModules(parentModuleLayer, pluginDescriptor.getClassPath(idToDescriptorMap.keySet()), pluginClassLoader));
-          }
+    PluginHolderModificator.initialize(pluginDescriptors);
 
-          pluginDescriptor.setLoader(pluginClassLoader);
-        }
-        catch (Throwable e) {
-          pluginDescriptor.setStatus(PluginDescriptorStatus.ERROR_WHILE_LOADING);
+    return info;
+  }
 
-          getLogger().error(e);
+  /**
+   * Creates class loaders of plugins which do not depend on each other concurrently, every plugin waits only for class loaders of its dependencies.
+   * Must be called only for acyclic plugin graph
+   */
+  private static void initializeClassLoadersInParallel(@Nullable StartupProgress progress,
+                                                       List<PluginDescriptorImpl> result,
+                                                       Map<PluginId, PluginDescriptorImpl> idToDescriptorMap,
+                                                       ClassLoader parentLoader,
+                                                       @Nonnull ForkJoinPool pool) {
+    // result is sorted according to dependencies, so futures of dependencies are always created first
+    Map<PluginId, CompletableFuture<?>> futures = new HashMap<>();
+    for (PluginDescriptorImpl pluginDescriptor : result) {
+      List<CompletableFuture<?>> dependencies = new ArrayList<>();
+      for (PluginId dependentPluginId : pluginDescriptor.getDependentPluginIds()) {
+        CompletableFuture<?> dependency = futures.get(dependentPluginId);
+        if (dependency != null) {
+          dependencies.add(dependency);
         }
       }
 
+      CompletableFuture<?> future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[dependencies.size()]))
+              .thenRunAsync(() -> initializeClassLoader(pluginDescriptor, idToDescriptorMap, parentLoader), pool);
+      futures.put(pluginDescriptor.getPluginId(), future);
+    }
+
+    int i = 0;
+    for (PluginDescriptorImpl pluginDescriptor : result) {
+      futures.get(pluginDescriptor.getPluginId()).join();
+
       if (progress != null) {
         progress.showProgress("", PLUGINS_PROGRESS_MAX_VALUE + (i++ / (float)result.size()) * 0.35f);
       }
     }
+  }
 
-    PluginHolderModificator.initialize(pluginDescriptors);
+  private static void initializeClassLoader(PluginDescriptorImpl pluginDescriptor, Map<PluginId, PluginDescriptorImpl> idToDescriptorMap, ClassLoader parentLoader) {
+    // platform plugin already have classloader
+    if (PluginIds.isPlatformPlugin(pluginDescriptor.getPluginId())) {
+      return;
+    }
 
-    return info;
+    long start = System.currentTimeMillis();
+    try {
+      final PluginId[] dependentPluginIds = pluginDescriptor.getDependentPluginIds();
+      final ClassLoader[] parentLoaders = getParentLoaders(idToDescriptorMap, dependentPluginIds);
+
+      final ClassLoader pluginClassLoader = createPluginClassLoader(idToDescriptorMap.keySet(), parentLoaders.length > 0 ? parentLoaders : new ClassLoader[]{parentLoader}, pluginDescriptor);
+
+      if (System.getProperty("jdk.module.path") != null) {
+        List<ModuleLayer> parentModuleLayer = getParentModuleLayer(idToDescriptorMap, dependentPluginIds);
+
+        pluginDescriptor.setModuleLayer(Java9ModuleInitializer.initializeEtcModules(parentModuleLayer, pluginDescriptor.getClassPath(idToDescriptorMap.keySet()), pluginClassLoader));
+      }
+
+      pluginDescriptor.setLoader(pluginClassLoader);
+    }
+    catch (Throwable e) {
+      pluginDescriptor.setStatus(PluginDescriptorStatus.ERROR_WHILE_LOADING);
+
+      getLogger().error(e);
+    }
+    finally {
+      PluginLoadStatistics.get().addPluginLoadTime(pluginDescriptor.getPluginId(), PluginLoadStatistics.CLASSLOADER_STAGE, System.currentTimeMillis() - start);
+    }
   }
 
   static void prepareLoadingPluginsErrorMessage(PluginsInitializeInfo info, final List<CompositeMessage> problems, boolean isHeadlessMode) {
@@ -256,7 +328,7 @@ public class PluginsLoader {
   }
 
   @Nonnull
-  private static List<PluginDescriptorImpl> loadPluginDescriptors(@Nullable StartupProgress progress, boolean isHeadlessMode) {
+  private static List<PluginDescriptorImpl> loadPluginDescriptors(@Nullable StartupProgress progress, boolean isHeadlessMode, @Nullable ForkJoinPool pool) {
     StatCollector stat = new StatCollector();
 
     List<PluginDescriptorImpl> pluginDescriptors = new ArrayList<>();
@@ -264,7 +336,7 @@ public class PluginsLoader {
       pluginDescriptors.add((PluginDescriptorImpl)descriptor);
     }
 
-    pluginDescriptors.addAll(loadDescriptorsFromPluginsPath(progress, isHeadlessMode, stat));
+    pluginDescriptors.addAll(loadDescriptorsFromPluginsPath(progress, isHeadlessMode, stat, pool));
 
     final Map<PluginId, PluginDescriptorImpl> idToDescriptorMap = new HashMap<>();
 
@@ -285,6 +357,22 @@ public class PluginsLoader {
 
   @Nonnull
   public static List<PluginDescriptorImpl> loadDescriptorsFromPluginsPath(@Nullable StartupProgress progress, boolean isHeadlessMode, StatCollector stat) {
+    ForkJoinPool pool = createLoadingPool();
+    try {
+      return loadDescriptorsFromPluginsPath(progress, isHeadlessMode, stat, pool);
+    }
+    finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  @Nonnull
+  private static List<PluginDescriptorImpl> loadDescriptorsFromPluginsPath(@Nullable StartupProgress progress,
+                                                                          boolean isHeadlessMode,
+                                                                          StatCollector stat,
+                                                                          @Nullable ForkJoinPool pool) {
     final List<PluginDescriptorImpl> result = new ArrayList<>();
 
     int pluginsCount = 0;
@@ -294,7 +382,7 @@ public class PluginsLoader {
     }
 
     for (String pluginsPath : pluginsPaths) {
-      loadDescriptors(pluginsPath, result, progress, pluginsCount, isHeadlessMode, stat, false);
+      loadDescriptors(new File(pluginsPath), result, progress, pluginsCount, stat, false, pool);
     }
 
     return result;
@@ -317,14 +405,41 @@ public class PluginsLoader {
                                      StatCollector stat,
                                      boolean isHeadlessMode,
                                      boolean isPreInstalledPath) {
+    ForkJoinPool pool = createLoadingPool();
+    try {
+      loadDescriptors(pluginsHome, result, progress, pluginsCount, stat, isPreInstalledPath, pool);
+    }
+    finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private static void loadDescriptors(@Nonnull File pluginsHome,
+                                      List<PluginDescriptorImpl> result,
+                                      @Nullable StartupProgress progress,
+                                      int pluginsCount,
+                                      StatCollector stat,
+                                      boolean isPreInstalledPath,
+                                      @Nullable ForkJoinPool pool) {
     final File[] files = pluginsHome.listFiles();
     if (files != null) {
-      int i = result.size();
+      List<CompletableFuture<PluginDescriptorImpl>> descriptors = new ArrayList<>(files.length);
       for (File file : files) {
-        Runnable mark = stat.mark(file.getName());
-        final PluginDescriptorImpl descriptor = PluginDescriptorLoader.loadDescriptor(file, isPreInstalledPath, C_LOG);
+        if (pool == null) {
+          descriptors.add(CompletableFuture.completedFuture(loadDescriptor(file, stat, isPreInstalledPath)));
+        }
+        else {
+          descriptors.add(CompletableFuture.supplyAsync(() -> loadDescriptor(file, stat, isPreInstalledPath), pool));
+        }
+      }
+
+      // merge in directory order, so the result does not depend on threads timing
+      int i = result.size();
+      for (CompletableFuture<PluginDescriptorImpl> future : descriptors) {
+        final PluginDescriptorImpl descriptor = future.join();
         if (descriptor == null) {
-          mark.run();
           continue;
         }
 
@@ -341,11 +456,22 @@ public class PluginsLoader {
         else {
           result.add(descriptor);
         }
-        mark.run();
       }
     }
   }
 
+  @Nullable
+  private static PluginDescriptorImpl loadDescriptor(File file, StatCollector stat, boolean isPreInstalledPath) {
+    Runnable mark = stat.mark(file.getName());
+    long start = System.currentTimeMillis();
+    final PluginDescriptorImpl descriptor = PluginDescriptorLoader.loadDescriptor(file, isPreInstalledPath, C_LOG);
+    if (descriptor != null) {
+      PluginLoadStatistics.get().addPluginLoadTime(descriptor.getPluginId(), PluginLoadStatistics.DESCRIPTOR_STAGE, System.currentTimeMillis() - start);
+    }
+    mark.run();
+    return descriptor;
+  }
+
   public static int countPlugins(String pluginsPath) {
     File configuredPluginsDir = new File(pluginsPath);
     if (configuredPluginsDir.exists()) {
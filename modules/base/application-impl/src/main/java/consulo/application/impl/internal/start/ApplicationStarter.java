@@ -133,7 +133,8 @@ public abstract class ApplicationStarter {
     libraryStats.markWith("library.analyze", () -> analyzeLibraries(filesWithMarkers));
 
     libraryStats.markWith("localize.initialize",
-                          () -> localizeManager.initialize(filesWithMarkers.get(LocalizeManagerImpl.LOCALIZE_DIRECTORY)));
+                          () -> localizeManager.initialize(filesWithMarkers.get(LocalizeManagerImpl.LOCALIZE_DIRECTORY),
+                                                           ContainerPathManager.get().getSystemDir().resolve("localize")));
     libraryStats.markWith("icon.initialize",
                           () -> iconLibraryManager.initialize(filesWithMarkers.get(BaseIconLibraryManager.ICON_DIRECTORY)));
 
@@ -183,6 +184,8 @@ public abstract class ApplicationStarter {
       ApplicationEx app = (ApplicationEx)Application.get();
       app.load(ContainerPathManager.get().getOptionsPath());
 
+      ((LocalizeManagerImpl)LocalizeManager.get()).writeCaches(app::executeOnPooledThread);
+
       boolean enableSecurityManager = EarlyAccessProgramManager.is(PluginPermissionEarlyAccessProgramDescriptor.class);
       if (enableSecurityManager) {
         ConsuloSecurityManagerEnabler.enableSecurityManager();
@@ -29,6 +29,7 @@ import consulo.util.lang.function.Condition;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -176,6 +177,11 @@ public class EditorFilteringMarkupModelEx implements MarkupModelEx {
     myDelegate.removeHighlighter(rangeHighlighter);
   }
 
+  @Override
+  public void removeHighlighters(@Nonnull Collection<? extends RangeHighlighter> highlighters) {
+    myDelegate.removeHighlighters(highlighters);
+  }
+
   @Override
   public void removeAllHighlighters() {
     myDelegate.removeAllHighlighters();
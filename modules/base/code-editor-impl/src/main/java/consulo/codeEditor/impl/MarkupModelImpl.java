@@ -41,6 +41,7 @@ import consulo.util.lang.BitUtil;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -168,6 +169,24 @@ public class MarkupModelImpl extends UserDataHolderBase implements MarkupModelEx
     LOG.assertTrue(removed);
   }
 
+  @Override
+  public void removeHighlighters(@Nonnull Collection<? extends RangeHighlighter> highlighters) {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    myCachedHighlighters = null;
+    List<RangeHighlighterEx> exact = new ArrayList<>(highlighters.size());
+    List<RangeHighlighterEx> lines = new ArrayList<>();
+    for (RangeHighlighter highlighter : highlighters) {
+      if (!(highlighter instanceof RangeHighlighterImpl) || ((RangeHighlighterImpl)highlighter).getMarkupModel() != this) {
+        highlighter.dispose();
+      }
+      else if (highlighter.isValid()) {
+        (treeFor(highlighter) == myHighlighterTree ? exact : lines).add((RangeHighlighterEx)highlighter);
+      }
+    }
+    myHighlighterTree.removeIntervals(exact);
+    myHighlighterTreeForLines.removeIntervals(lines);
+  }
+
   @Override
   public void removeAllHighlighters() {
     ApplicationManager.getApplication().assertIsDispatchThread();
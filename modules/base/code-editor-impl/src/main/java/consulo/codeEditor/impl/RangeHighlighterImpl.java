@@ -355,7 +355,7 @@ class RangeHighlighterImpl extends RangeMarkerImpl implements RangeHighlighterEx
     return result;
   }
 
-  private MarkupModel getMarkupModel() {
+  MarkupModel getMarkupModel() {
     return myModel;
   }
 
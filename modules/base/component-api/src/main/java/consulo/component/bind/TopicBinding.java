@@ -27,4 +27,11 @@ public interface TopicBinding {
   String getApiClassName();
 
   TopicMethod[] methods();
+
+  /**
+   * @return generated publisher, which implements topic interface and calls subscribers directly, or null if binding was generated without it
+   */
+  default Object createPublisher(TopicDispatcher dispatcher) {
+    return null;
+  }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.component.bind;
+
+import java.util.List;
+
+/**
+ * Runtime side of publishers generated for topics. Generated publisher asks for {@link #getDirectHandlers()} on each call,
+ * and calls subscribers directly when it's possible, otherwise it posts message to bus queue.
+ */
+public interface TopicDispatcher {
+  /**
+   * @return null if message can't be delivered synchronously right now and must be posted via {@link #post(TopicMethod, Object[])},
+   * {@link List} of handlers or single handler otherwise
+   */
+  Object getDirectHandlers();
+
+  void post(TopicMethod method, Object[] args);
+
+  /**
+   * Called when subscriber failed while direct delivery. Remaining handlers of the same subscription are not called, like in queued delivery
+   */
+  void handleException(Throwable e);
+}
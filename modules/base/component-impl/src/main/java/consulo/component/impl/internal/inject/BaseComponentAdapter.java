@@ -58,6 +58,10 @@ class BaseComponentAdapter<T> implements ComponentAdapter<T> {
 
   private volatile String myCreationTrace;
 
+  // guarded by myLock
+  private ConstructorInjectionComponentAdapter<T> myDelegate;
+  private Boolean myAnnotationSingleton;
+
   public BaseComponentAdapter(InjectingKey<T> interfaceKey) {
     myInterfaceKey = interfaceKey;
     myImplementationKey = interfaceKey;
@@ -125,7 +129,10 @@ class BaseComponentAdapter<T> implements ComponentAdapter<T> {
         return instance;
       }
 
-      isAnnotationSingleton = targetClass.isAnnotationPresent(Singleton.class);
+      if (myAnnotationSingleton == null) {
+        myAnnotationSingleton = targetClass.isAnnotationPresent(Singleton.class);
+      }
+      isAnnotationSingleton = myAnnotationSingleton;
 
       isSingleton = myForceSingleton || isAnnotationSingleton;
 
@@ -142,12 +149,15 @@ class BaseComponentAdapter<T> implements ComponentAdapter<T> {
       long l = System.nanoTime();
 
       try {
-        ConstructorInjectionComponentAdapter<T> delegate;
-        if (myConstructorParameterTypes != null && myConstructorFactory != null) {
-          delegate = new NewConstructorInjectionComponentAdapter<T>(getComponentClass(), getComponentImplClass(), myConstructorParameterTypes, myConstructorFactory);
-        }
-        else {
-          delegate = new ConstructorInjectionComponentAdapter<T>(getComponentClass(), getComponentImplClass());
+        ConstructorInjectionComponentAdapter<T> delegate = myDelegate;
+        if (delegate == null) {
+          if (myConstructorParameterTypes != null && myConstructorFactory != null) {
+            delegate = new NewConstructorInjectionComponentAdapter<T>(getComponentClass(), getComponentImplClass(), myConstructorParameterTypes, myConstructorFactory);
+          }
+          else {
+            delegate = new ConstructorInjectionComponentAdapter<T>(getComponentClass(), getComponentImplClass());
+          }
+          myDelegate = delegate;
         }
 
         instance = myRemap.apply(() -> GetInstanceValidator.createObject(targetClass, () -> (T)delegate.getComponentInstance(container)));
@@ -28,13 +28,29 @@ import java.util.function.Function;
  * @since 18-Jun-22
  */
 class NewConstructorInjectionComponentAdapter<T> extends ConstructorInjectionComponentAdapter<T> {
-  private final Type[] myConstructorParameterTypes;
   private final Function<Object[], T> myConstructorFactory;
+  // resolved once from generated parameter types, adapter is reused for every instance of component
+  private final Class[] myExpectedTypes;
+  private final Parameter[] myParameters;
 
   NewConstructorInjectionComponentAdapter(@Nonnull Class<? super T> componentKey, @Nonnull Class<T> componentImplementation, Type[] constructorParameterTypes, Function<Object[], T> constructorFactory) {
     super(componentKey, componentImplementation);
-    myConstructorParameterTypes = constructorParameterTypes;
     myConstructorFactory = constructorFactory;
+    myExpectedTypes = new Class[constructorParameterTypes.length];
+    myParameters = new Parameter[constructorParameterTypes.length];
+
+    for (int i = 0; i < constructorParameterTypes.length; i++) {
+      Type constructorParameterType = constructorParameterTypes[i];
+
+      if (constructorParameterType instanceof ParameterizedType) {
+        myExpectedTypes[i] = (Class)((ParameterizedType)constructorParameterType).getRawType();
+      }
+      else {
+        myExpectedTypes[i] = (Class)constructorParameterType;
+      }
+
+      myParameters[i] = createParameter(constructorParameterType);
+    }
   }
 
   @Nonnull
@@ -44,53 +60,29 @@ class NewConstructorInjectionComponentAdapter<T> extends ConstructorInjectionCom
     return myConstructorFactory.apply(args);
   }
 
+  @SuppressWarnings("unchecked")
   private Object[] getConstructorArguments(InstanceContainer container) {
-    Object[] result = new Object[myConstructorParameterTypes.length];
-    Parameter[] currentParameters = createParameters();
-
-    for (int i = 0; i < currentParameters.length; i++) {
-      Type constructorParameterType = myConstructorParameterTypes[i];
-
-      Class expectedType;
-      if (constructorParameterType instanceof ParameterizedType) {
-        expectedType = (Class)((ParameterizedType)constructorParameterType).getRawType();
-      }
-      else {
-        expectedType = (Class)constructorParameterType;
-      }
-
-      result[i] = currentParameters[i].resolveInstance(container, this, expectedType);
+    Object[] result = new Object[myParameters.length];
+    for (int i = 0; i < myParameters.length; i++) {
+      result[i] = myParameters[i].resolveInstance(container, this, myExpectedTypes[i]);
     }
     return result;
   }
 
-  @SuppressWarnings("unchecked")
-  private Parameter[] createParameters() {
-    Parameter[] parameters = new Parameter[myConstructorParameterTypes.length];
-    for (int i = 0; i < myConstructorParameterTypes.length; i++) {
-      Type genericParameterType = myConstructorParameterTypes[i];
-
-      if (genericParameterType instanceof ParameterizedType) {
-        Class<?> rawType = ReflectionUtil.getRawType(genericParameterType);
+  private static Parameter createParameter(Type genericParameterType) {
+    if (genericParameterType instanceof ParameterizedType) {
+      Class<?> rawType = ReflectionUtil.getRawType(genericParameterType);
 
-        if (rawType == Provider.class) {
-          Type type = ((ParameterizedType)genericParameterType).getActualTypeArguments()[0];
+      if (rawType == Provider.class) {
+        Type type = ((ParameterizedType)genericParameterType).getActualTypeArguments()[0];
 
-          if (!(type instanceof Class)) {
-            throw new UnsupportedOperationException("Unknown type " + genericParameterType);
-          }
-
-          parameters[i] = new ProviderParameter((Class<?>)type);
-        }
-        else {
-          parameters[i] = DefaultComponentParameter.DEFAULT;
+        if (!(type instanceof Class)) {
+          throw new UnsupportedOperationException("Unknown type " + genericParameterType);
         }
-      }
-      else {
-        parameters[i] = DefaultComponentParameter.DEFAULT;
+
+        return new ProviderParameter((Class<?>)type);
       }
     }
-
-    return parameters;
+    return DefaultComponentParameter.DEFAULT;
   }
 }
@@ -10,6 +10,7 @@ import consulo.logging.Logger;
 import consulo.util.collection.SmartFMap;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
@@ -120,21 +121,31 @@ final class MessageBusConnectionImpl implements MessageBusConnection, Disposable
         myBus.invokeListener(message, handler);
       }
     }
-    catch (AbstractMethodError e) {
+    catch (Throwable e) {
+      handleDeliveryException(e);
+    }
+  }
+
+  static void handleDeliveryException(@Nonnull Throwable e) {
+    if (e instanceof AbstractMethodError) {
       //Do nothing. This listener just does not implement something newly added yet.
+      return;
     }
-    catch (ProcessCanceledException e) {
-      throw e;
+    if (e instanceof ProcessCanceledException) {
+      throw (ProcessCanceledException)e;
     }
-    catch (InvocationTargetException e) {
-      if (e.getCause() instanceof ProcessCanceledException) {
-        throw (ProcessCanceledException)e.getCause();
-      }
-      LOG.error(e.getCause() == null ? e : e.getCause());
-    }
-    catch (Throwable e) {
-      LOG.error(e.getCause() == null ? e : e.getCause());
+    if (e instanceof InvocationTargetException && e.getCause() instanceof ProcessCanceledException) {
+      throw (ProcessCanceledException)e.getCause();
     }
+    LOG.error(e.getCause() == null ? e : e.getCause());
+  }
+
+  /**
+   * @return handler, list of handlers or null
+   */
+  @Nullable
+  Object getHandlers(@Nonnull Class<?> topic) {
+    return mySubscriptions.get(topic);
   }
 
   void scheduleMessageDelivery(@Nonnull Message message) {
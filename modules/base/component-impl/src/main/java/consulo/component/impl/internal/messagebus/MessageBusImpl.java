@@ -5,6 +5,9 @@ import consulo.annotation.component.TopicAPI;
 import consulo.annotation.component.TopicBroadcastDirection;
 import consulo.component.ProcessCanceledException;
 import consulo.component.bind.InjectingBinding;
+import consulo.component.bind.TopicBinding;
+import consulo.component.bind.TopicDispatcher;
+import consulo.component.bind.TopicMethod;
 import consulo.component.internal.inject.InjectingContainerOwner;
 import consulo.component.internal.inject.TopicBindingLoader;
 import consulo.component.messagebus.MessageBus;
@@ -179,7 +182,7 @@ public class MessageBusImpl implements MessageBus, Disposable {
     }
 
     if (myTopicClassToListenerClass.isEmpty()) {
-      Object newInstance = Proxy.newProxyInstance(topicClass.getClassLoader(), new Class[]{topicClass}, new TopicInvocationHandler<>(this, topicClass));
+      Object newInstance = createPublisher(topicClass, topicClass);
       Object prev = myPublishers.putIfAbsent(topicClass, newInstance);
       //noinspection unchecked
       return (L)(prev == null ? newInstance : prev);
@@ -224,11 +227,66 @@ public class MessageBusImpl implements MessageBus, Disposable {
     }
 
     //noinspection unchecked
-    publisher = (L)Proxy.newProxyInstance(listenerClass.getClassLoader(), new Class[]{listenerClass}, new TopicInvocationHandler<>(this, topic));
+    publisher = (L)createPublisher(topic, listenerClass);
     myPublishers.put(topic, publisher);
     return publisher;
   }
 
+  @Nonnull
+  private Object createPublisher(@Nonnull Class<?> topic, @Nonnull Class<?> listenerClass) {
+    TopicBinding binding = myTopicBindingLoader.getBinding(topic.getName());
+    if (binding != null) {
+      Object publisher = binding.createPublisher(new DirectTopicDispatcher(topic));
+      if (publisher != null) {
+        return publisher;
+      }
+    }
+    return Proxy.newProxyInstance(listenerClass.getClassLoader(), new Class[]{listenerClass}, new TopicInvocationHandler<>(this, topic));
+  }
+
+  /**
+   * Used by generated publishers. If nothing is pending on this thread and topic has only one subscribed connection, message is delivered
+   * right in the publishing call - exactly as queue would do it, but without message, delivery job and arguments allocation
+   */
+  private final class DirectTopicDispatcher implements TopicDispatcher {
+    private final Class<?> myTopic;
+
+    private DirectTopicDispatcher(@Nonnull Class<?> topic) {
+      myTopic = topic;
+    }
+
+    @Nullable
+    @Override
+    public Object getDirectHandlers() {
+      checkNotDisposed();
+      if (isDispatchingAnything()) {
+        return null;
+      }
+
+      List<MessageBusConnectionImpl> subscribers = getTopicSubscribers(myTopic);
+      switch (subscribers.size()) {
+        case 0:
+          return Collections.emptyList();
+        case 1:
+          Object handlers = subscribers.get(0).getHandlers(myTopic);
+          return handlers == null ? Collections.emptyList() : handlers;
+        default:
+          return null;
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void post(TopicMethod method, Object[] args) {
+      sendMessage(new TopicMethodMessage<>((Class<Object>)myTopic, method, args));
+    }
+
+    @Override
+    public void handleException(Throwable e) {
+      MessageBusConnectionImpl.handleDeliveryException(e);
+    }
+  }
+
   @Override
   public void dispose() {
     checkNotDisposed();
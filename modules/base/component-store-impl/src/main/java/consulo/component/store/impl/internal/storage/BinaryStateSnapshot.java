@@ -0,0 +1,249 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.component.store.impl.internal.storage;
+
+import consulo.application.macro.PathMacros;
+import consulo.application.util.concurrent.AppExecutorUtil;
+import consulo.component.persist.StoragePathMacros;
+import consulo.component.store.impl.internal.PathMacrosService;
+import consulo.component.store.impl.internal.TrackingPathMacroSubstitutor;
+import consulo.container.boot.ContainerPathManager;
+import consulo.logging.Logger;
+import consulo.platform.LineSeparator;
+import consulo.util.lang.SystemProperties;
+import org.jdom.Element;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Binary copy of a per-user storage file (workspace), kept in the system directory. The xml file stays the source of truth.
+ * <p>
+ * Component states are stored as separately archived xml with collapsed paths, so loading doesn't parse the whole file: each state is
+ * parsed only when its component requests it (see {@link StateMap.LazyState}), states of components which are never requested are never
+ * parsed on load. The snapshot is bound to the xml file by its length and modification time, so an edited or replaced xml file is loaded
+ * as usual. The line separator of the xml file is kept too, so that the file is saved with the same separators.
+ * <p>
+ * Shared project files are never snapshotted: they are changed by VCS and by other tools, and have to be read as xml anyway.
+ */
+final class BinaryStateSnapshot {
+  private static final Logger LOG = Logger.getInstance(BinaryStateSnapshot.class);
+
+  private static final int VERSION = 2;
+
+  private static final boolean ENABLED = SystemProperties.getBooleanProperty("consulo.workspace.binary.state", true);
+
+  private BinaryStateSnapshot() {
+  }
+
+  static boolean isApplicable(@Nonnull String fileSpec) {
+    return ENABLED && fileSpec.equals(StoragePathMacros.WORKSPACE_FILE);
+  }
+
+  @Nonnull
+  private static Path getSnapshotFile(@Nonnull File xmlFile) {
+    String name = xmlFile.getName() + "." + Integer.toHexString(xmlFile.getAbsolutePath().hashCode()) + ".bin";
+    return ContainerPathManager.get().getSystemDir().resolve("workspace-states").resolve(name);
+  }
+
+  /**
+   * @return false if there is no up-to-date snapshot of the file, {@code data} is not changed in this case
+   */
+  static boolean load(@Nonnull File xmlFile,
+                      @Nonnull StorageData data,
+                      @Nullable TrackingPathMacroSubstitutor pathMacroSubstitutor,
+                      @Nonnull Consumer<LineSeparator> lineSeparatorConsumer) {
+    Path snapshotFile = getSnapshotFile(xmlFile);
+    if (!Files.isRegularFile(snapshotFile) || !xmlFile.isFile()) {
+      return false;
+    }
+
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+      if (input.readInt() != VERSION || input.readLong() != xmlFile.length() || input.readLong() != xmlFile.lastModified()) {
+        return false;
+      }
+      String lineSeparator = input.readUTF();
+
+      Set<String> definedMacros = null;
+      if (pathMacroSubstitutor != null) {
+        PathMacros pathMacros = PathMacros.getInstance();
+        definedMacros = new HashSet<>(pathMacros.getUserMacroNames());
+        definedMacros.addAll(pathMacros.getIgnoredMacroNames());
+      }
+
+      // read everything before changing data, a truncated snapshot is ignored as a whole
+      int count = input.readInt();
+      Map<String, byte[]> states = new LinkedHashMap<>();
+      Map<String, Set<String>> unknownMacros = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+        String name = input.readUTF();
+
+        Set<String> macros = new HashSet<>();
+        int macroCount = input.readInt();
+        for (int j = 0; j < macroCount; j++) {
+          macros.add(input.readUTF());
+        }
+
+        byte[] state = new byte[input.readInt()];
+        input.readFully(state);
+
+        states.put(name, state);
+        unknownMacros.put(name, macros);
+      }
+
+      if (!lineSeparator.isEmpty()) {
+        lineSeparatorConsumer.accept(LineSeparator.valueOf(lineSeparator));
+      }
+      for (Map.Entry<String, byte[]> entry : states.entrySet()) {
+        String name = entry.getKey();
+        data.putLazyState(name, entry.getValue(), pathMacroSubstitutor);
+
+        if (pathMacroSubstitutor != null) {
+          // macros which were defined after the snapshot was written are expanded on load
+          Set<String> macros = unknownMacros.get(name);
+          macros.removeAll(definedMacros);
+          pathMacroSubstitutor.addUnknownMacros(name, macros);
+        }
+      }
+      return true;
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.warn("Cannot load state snapshot of " + xmlFile, e);
+      return false;
+    }
+  }
+
+  /**
+   * Schedules writing of the snapshot, the save itself doesn't wait for it. The stamp of the xml file is taken now, so a snapshot which
+   * is written after a later save of the file doesn't match it and is ignored on load.
+   *
+   * @param rootElement   saved content of the file with collapsed paths, null if the file was deleted, it's not changed after the save
+   * @param lineSeparator line separator of the saved file, null if it's unknown
+   */
+  static void write(@Nonnull File xmlFile,
+                    @Nullable Element rootElement,
+                    @Nonnull PathMacrosService pathMacrosService,
+                    @Nullable LineSeparator lineSeparator) {
+    Path snapshotFile = getSnapshotFile(xmlFile);
+    if (rootElement == null || !xmlFile.isFile()) {
+      WriterHolder.ourWriter.execute(() -> delete(xmlFile, snapshotFile));
+      return;
+    }
+
+    long length = xmlFile.length();
+    long timestamp = xmlFile.lastModified();
+    String separator = lineSeparator == null ? "" : lineSeparator.name();
+    WriterHolder.ourWriter.execute(() -> {
+      try {
+        // the file is saved only when some state is changed, but the content may be the same
+        if (!isUpToDate(snapshotFile, length, timestamp, separator)) {
+          doWrite(snapshotFile, rootElement, pathMacrosService, length, timestamp, separator);
+        }
+      }
+      catch (IOException | RuntimeException e) {
+        LOG.warn("Cannot write state snapshot of " + xmlFile, e);
+        delete(xmlFile, snapshotFile);
+      }
+    });
+  }
+
+  private static boolean isUpToDate(@Nonnull Path snapshotFile, long length, long timestamp, @Nonnull String lineSeparator) {
+    if (!Files.isRegularFile(snapshotFile)) {
+      return false;
+    }
+
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+      return input.readInt() == VERSION && input.readLong() == length && input.readLong() == timestamp && input.readUTF().equals(lineSeparator);
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static void doWrite(@Nonnull Path snapshotFile,
+                              @Nonnull Element rootElement,
+                              @Nonnull PathMacrosService pathMacrosService,
+                              long length,
+                              long timestamp,
+                              @Nonnull String lineSeparator) throws IOException {
+    // components without state are skipped, like on load of the xml file
+    List<Element> components = new ArrayList<>();
+    for (Element component : rootElement.getChildren(StorageData.COMPONENT)) {
+      if (StorageData.getNameIfNotEmpty(component) != null) {
+        components.add(component);
+      }
+    }
+
+    Files.createDirectories(snapshotFile.getParent());
+    // unique temp file, so that concurrent saves of the same workspace (e.g. by two instances sharing the system directory) don't collide
+    Path tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        output.writeInt(VERSION);
+        output.writeLong(length);
+        output.writeLong(timestamp);
+        output.writeUTF(lineSeparator);
+        output.writeInt(components.size());
+        for (Element component : components) {
+          output.writeUTF(component.getAttributeValue(StorageData.NAME));
+
+          // all not system macros, the ones which are defined on load are filtered out there
+          Set<String> macros = pathMacrosService.getMacroNames(component);
+          output.writeInt(macros.size());
+          for (String macro : macros) {
+            output.writeUTF(macro);
+          }
+
+          byte[] state = StateMap.archiveState(component);
+          output.writeInt(state.length);
+          output.write(state);
+        }
+      }
+
+      try {
+        Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static void delete(@Nonnull File xmlFile, @Nonnull Path snapshotFile) {
+    try {
+      Files.deleteIfExists(snapshotFile);
+    }
+    catch (IOException e) {
+      LOG.warn("Cannot delete state snapshot of " + xmlFile, e);
+    }
+  }
+
+  private static class WriterHolder {
+    // one thread keeps snapshots of the same file in order of saves
+    private static final ExecutorService ourWriter = AppExecutorUtil.createBoundedApplicationPoolExecutor("BinaryStateSnapshot Writer", 1);
+  }
+}
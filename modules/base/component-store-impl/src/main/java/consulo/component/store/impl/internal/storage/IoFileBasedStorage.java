@@ -128,6 +128,23 @@ public final class IoFileBasedStorage extends XmlElementStorage {
     return myFilePath;
   }
 
+  @Nullable
+  @Override
+  protected File getSnapshotSourceFile() {
+    return BinaryStateSnapshot.isApplicable(myFileSpec) ? myFile : null;
+  }
+
+  @Nullable
+  @Override
+  protected LineSeparator getLineSeparator() {
+    return myLineSeparator;
+  }
+
+  @Override
+  protected void setLineSeparator(@Nonnull LineSeparator lineSeparator) {
+    myLineSeparator = lineSeparator;
+  }
+
   @Override
   @Nullable
   protected Element loadLocalData() {
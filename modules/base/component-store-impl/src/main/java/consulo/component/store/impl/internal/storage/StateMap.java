@@ -15,6 +15,7 @@
  */
 package consulo.component.store.impl.internal.storage;
 
+import consulo.component.macro.PathMacroSubstitutor;
 import consulo.component.store.impl.internal.StateStorageException;
 import consulo.logging.Logger;
 import consulo.util.collection.ArrayUtil;
@@ -88,7 +89,7 @@ final class StateMap {
       Element element = newLiveStates.get(key);
       if (element == null) {
         assert state != null;
-        element = unarchiveState((byte[])state);
+        element = state instanceof LazyState ? ((LazyState)state).load() : unarchiveState((byte[])state);
       }
       return element;
     }
@@ -109,7 +110,12 @@ final class StateMap {
   }
 
   public boolean hasState(@Nonnull String key) {
-    return states.get(key) instanceof Element;
+    return isNotRequested(states.get(key));
+  }
+
+  // state which wasn't requested by its component yet
+  private static boolean isNotRequested(@Nullable Object state) {
+    return state instanceof Element || state instanceof LazyState;
   }
 
   public boolean hasStates() {
@@ -118,7 +124,7 @@ final class StateMap {
     }
 
     for (Object value : states.values()) {
-      if (value instanceof Element) {
+      if (isNotRequested(value)) {
         return true;
       }
     }
@@ -128,6 +134,9 @@ final class StateMap {
   public void compare(@Nonnull String key, @Nonnull StateMap newStates, @Nonnull Set<String> diffs) {
     Object oldState = states.get(key);
     Object newState = newStates.get(key);
+    if (newState instanceof LazyState) {
+      newState = ((LazyState)newState).load();
+    }
     if (oldState instanceof Element) {
       if (!JDOMUtil.areElementsEqual((Element)oldState, (Element)newState)) {
         diffs.add(key);
@@ -135,7 +144,7 @@ final class StateMap {
     }
     else {
       assert newState != null;
-      if (getNewByteIfDiffers(key, newState, (byte[])oldState) != null) {
+      if (getNewByteIfDiffers(key, newState, getArchivedState(oldState)) != null) {
         diffs.add(key);
       }
     }
@@ -160,8 +169,16 @@ final class StateMap {
     return newBytes;
   }
 
+  /**
+   * @param state archived or {@link LazyState lazy} state
+   */
+  @Nonnull
+  static byte[] getArchivedState(@Nonnull Object state) {
+    return state instanceof LazyState ? archiveState(((LazyState)state).load()) : (byte[])state;
+  }
+
   @Nonnull
-  private static byte[] archiveState(@Nonnull Element state) {
+  static byte[] archiveState(@Nonnull Element state) {
     BufferExposingByteArrayOutputStream byteOut = new BufferExposingByteArrayOutputStream();
     try {
       try (OutputStreamWriter writer = new OutputStreamWriter(new LZ4BlockOutputStream(byteOut), CharsetToolkit.UTF8_CHARSET)) {
@@ -179,6 +196,11 @@ final class StateMap {
   @Nullable
   public Element getStateAndArchive(@Nonnull String key) {
     Object state = states.get(key);
+    if (state instanceof LazyState) {
+      Element element = ((LazyState)state).load();
+      states.put(key, archiveState(element));
+      return element;
+    }
     if (!(state instanceof Element)) {
       return null;
     }
@@ -214,7 +236,7 @@ final class StateMap {
     }
     else {
       try {
-        element = unarchiveState((byte[])state);
+        element = state instanceof LazyState ? ((LazyState)state).load() : unarchiveState((byte[])state);
       }
       catch (Throwable e) {
         LOG.error(e);
@@ -236,4 +258,29 @@ final class StateMap {
   public void forEachEntry(@Nonnull BiConsumer<String, Object> consumer) {
     states.forEach(consumer);
   }
+
+  /**
+   * State which is not parsed yet: archived xml of a component as it is stored in a file, with collapsed paths.
+   * It's parsed and expanded when the component requests its state or when the state is compared or saved.
+   */
+  static final class LazyState {
+    private final byte[] myCollapsedState;
+    @Nullable
+    private final PathMacroSubstitutor myPathMacroSubstitutor;
+
+    LazyState(@Nonnull byte[] collapsedState, @Nullable PathMacroSubstitutor pathMacroSubstitutor) {
+      myCollapsedState = collapsedState;
+      myPathMacroSubstitutor = pathMacroSubstitutor;
+    }
+
+    @Nonnull
+    Element load() {
+      Element element = unarchiveState(myCollapsedState);
+      if (myPathMacroSubstitutor != null) {
+        myPathMacroSubstitutor.expandPaths(element);
+      }
+      element.removeAttribute(StorageData.NAME);
+      return element;
+    }
+  }
 }
\ No newline at end of file
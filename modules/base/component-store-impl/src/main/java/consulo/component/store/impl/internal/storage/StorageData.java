@@ -69,8 +69,8 @@ public class StorageData extends StorageDataBase {
     Interner<String> interner = intern ? Interner.createStringInterner() : null;
     for (Iterator<Element> iterator = rootElement.getChildren(COMPONENT).iterator(); iterator.hasNext(); ) {
       Element element = iterator.next();
-      String name = getComponentNameIfValid(element);
-      if (name == null || !(element.getAttributes().size() > 1 || !element.getChildren().isEmpty())) {
+      String name = getNameIfNotEmpty(element);
+      if (name == null) {
         continue;
       }
 
@@ -90,6 +90,22 @@ public class StorageData extends StorageDataBase {
     }
   }
 
+  /**
+   * Adds state of the component read from {@link BinaryStateSnapshot}, it's parsed only on request.
+   */
+  void putLazyState(@Nonnull String name, @Nonnull byte[] collapsedState, @Nullable PathMacroSubstitutor pathMacroSubstitutor) {
+    myStates.put(name, new StateMap.LazyState(collapsedState, pathMacroSubstitutor));
+  }
+
+  /**
+   * @return name of the component, or null if it's invalid or has no state, such components are skipped on load
+   */
+  @Nullable
+  static String getNameIfNotEmpty(@Nonnull Element element) {
+    String name = getComponentNameIfValid(element);
+    return name == null || !(element.getAttributes().size() > 1 || !element.getChildren().isEmpty()) ? null : name;
+  }
+
   @Nullable
   public static String getComponentNameIfValid(@Nonnull Element element) {
     String name = element.getAttributeValue(NAME);
@@ -171,7 +187,7 @@ public class StorageData extends StorageDataBase {
       }
     }
     else if (oldState != null) {
-      newBytes = StateMap.getNewByteIfDiffers(componentName, newState, (byte[])oldState);
+      newBytes = StateMap.getNewByteIfDiffers(componentName, newState, StateMap.getArchivedState(oldState));
       if (newBytes == null) {
         return null;
       }
@@ -201,7 +217,7 @@ public class StorageData extends StorageDataBase {
       }
     }
     else if (oldState != null) {
-      newBytes = StateMap.getNewByteIfDiffers(componentName, newState, (byte[])oldState);
+      newBytes = StateMap.getNewByteIfDiffers(componentName, newState, StateMap.getArchivedState(oldState));
       if (newBytes == null) {
         return null;
       }
@@ -161,6 +161,12 @@ public final class VfsFileBasedStorage extends XmlElementStorage {
     return myFilePath;
   }
 
+  @Nullable
+  @Override
+  protected File getSnapshotSourceFile() {
+    return BinaryStateSnapshot.isApplicable(myFileSpec) ? myFile : null;
+  }
+
   @Override
   @Nullable
   protected Element loadLocalData() {
@@ -18,6 +18,7 @@ package consulo.component.store.impl.internal.storage;
 import consulo.component.persist.RoamingType;
 import consulo.component.persist.Storage;
 import consulo.component.store.impl.internal.*;
+import consulo.platform.LineSeparator;
 import consulo.util.collection.ContainerUtil;
 import consulo.util.jdom.JDOMUtil;
 import consulo.util.xml.serializer.WriteExternalException;
@@ -26,6 +27,7 @@ import org.jdom.JDOMException;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -61,6 +63,25 @@ public abstract class XmlElementStorage extends StateStorageBase<StorageData> {
   @Nullable
   protected abstract Element loadLocalData();
 
+  /**
+   * @return local file of the storage, if its states are also kept in {@link BinaryStateSnapshot}
+   */
+  @Nullable
+  protected File getSnapshotSourceFile() {
+    return null;
+  }
+
+  /**
+   * @return line separator of the local file, which is kept in {@link BinaryStateSnapshot} since the file isn't read when the snapshot is
+   * loaded, null if it's unknown
+   */
+  @Nullable
+  protected LineSeparator getLineSeparator() {
+    return null;
+  }
+
+  protected void setLineSeparator(@Nonnull LineSeparator lineSeparator) {
+  }
 
   @Nullable
   @Override
@@ -98,6 +119,12 @@ public abstract class XmlElementStorage extends StateStorageBase<StorageData> {
       }
     }
 
+    File snapshotSourceFile = getSnapshotSourceFile();
+    if (snapshotSourceFile != null && BinaryStateSnapshot.load(snapshotSourceFile, result, myPathMacroSubstitutor, this::setLineSeparator)) {
+      myBlockSavingTheContent = false;
+      return result;
+    }
+
     Element element = loadLocalData();
     if (element != null) {
       loadState(result, element);
@@ -229,13 +256,21 @@ public abstract class XmlElementStorage extends StateStorageBase<StorageData> {
       }
 
       try {
+        Element element;
         if(force) {
-          doSave(getElement(myOriginalStorageData, isCollapsePathsOnSave(), Map.of()));
+          element = getElement(myOriginalStorageData, isCollapsePathsOnSave(), Map.of());
+          doSave(element);
         }
         else {
-          doSave(getElement(myCopiedStorageData, isCollapsePathsOnSave(), myNewLiveStates));
+          element = getElement(myCopiedStorageData, isCollapsePathsOnSave(), myNewLiveStates);
+          doSave(element);
           myLoadedData = myCopiedStorageData;
         }
+
+        File snapshotSourceFile = getSnapshotSourceFile();
+        if (snapshotSourceFile != null) {
+          BinaryStateSnapshot.write(snapshotSourceFile, element, myPathMacrosService, getLineSeparator());
+        }
       }
       catch (IOException e) {
         throw new StateStorageException(e);
@@ -18,6 +18,8 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.List;
@@ -569,130 +571,169 @@ public abstract class IntervalTreeImpl<T> extends RedBlackTree<T> implements Int
     return processContaining(root.getRight(), offset, modCountBefore, delta, processor);
   }
 
+  /**
+   * The returned iterator doesn't hold the read lock while the caller processes intervals: overlapping intervals are collected
+   * by chunks of {@link #ITERATOR_CHUNK_SIZE}, each under a short read lock. So iteration over a big range (painting, error stripe)
+   * doesn't block threads which add or remove intervals. If the tree is changed between chunks, iteration continues from
+   * the start offset of the last returned interval; intervals added before this offset during iteration are not returned.
+   */
   @Nonnull
   public MarkupIterator<T> overlappingIterator(@Nonnull final TextRangeInterval rangeInterval, @Nullable Predicate<IntervalNode<T>> nodeFilter) {
-    l.readLock().lock();
+    return new ChunkedOverlappingIterator(rangeInterval, nodeFilter);
+  }
 
-    try {
-      final int startOffset = rangeInterval.getStartOffset();
-      final int endOffset = rangeInterval.getEndOffset();
-      final IntervalNode<T> firstOverlap = findMinOverlappingWith(getRoot(), rangeInterval, getModCount(), 0, nodeFilter);
-      if (firstOverlap == null) {
+  private static final int ITERATOR_CHUNK_SIZE = 64;
+
+  private class ChunkedOverlappingIterator implements MarkupIterator<T> {
+    @Nonnull
+    private final TextRangeInterval myRange;
+    @Nullable
+    private final Predicate<IntervalNode<T>> myNodeFilter;
+    private final List<T> myChunk = new ArrayList<>();
+    private int myIndexInChunk;
+
+    private boolean myStarted;
+    // the node to continue from, valid only while the tree mod count is the same
+    private IntervalNode<T> myNextNode;
+    private int myDeltaUpToRootExclusive;
+    private int myModCount;
+    // start offset of the last collected node and its collected intervals, to continue after the tree was changed
+    private int myLastStart = Integer.MIN_VALUE;
+    private final List<T> myCollectedAtLastStart = new ArrayList<>();
+    private boolean mySkipCollected;
+
+    private ChunkedOverlappingIterator(@Nonnull TextRangeInterval range, @Nullable Predicate<IntervalNode<T>> nodeFilter) {
+      myRange = range;
+      myNodeFilter = nodeFilter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (myIndexInChunk != myChunk.size()) return true;
+      if (myStarted && myNextNode == null) return false;
+
+      myChunk.clear();
+      myIndexInChunk = 0;
+      l.readLock().lock();
+      try {
+        collectChunk();
+      }
+      finally {
         l.readLock().unlock();
-        //noinspection unchecked
-        return MarkupIterator.EMPTY;
       }
-      final int firstOverlapDelta = firstOverlap.computeDeltaUpToRoot();
-      final int firstOverlapStart = firstOverlap.intervalStart() + firstOverlapDelta;
-      final int modCountBefore = getModCount();
-
-      return new MarkupIterator<T>() {
-        private IntervalNode<T> currentNode = firstOverlap;
-        private int deltaUpToRootExclusive = firstOverlapDelta - firstOverlap.delta;
-        private int indexInCurrentList;
-        private T current;
-
-        @Override
-        public boolean hasNext() {
-          if (current != null) return true;
-          if (currentNode == null) return false;
-
-          if (getModCount() != modCountBefore) throw new ConcurrentModificationException();
-          while (indexInCurrentList != currentNode.intervals.size()) {
-            T t = currentNode.intervals.get(indexInCurrentList++).get();
-            if (t != null) {
-              current = t;
-              return true;
-            }
+      return !myChunk.isEmpty();
+    }
+
+    // run under read lock
+    private void collectChunk() {
+      IntervalNode<T> node;
+      if (!myStarted || getModCount() != myModCount) {
+        TextRangeInterval range = myStarted && myLastStart > myRange.getStartOffset()
+                                  ? new TextRangeInterval(myLastStart, myRange.getEndOffset())
+                                  : myRange;
+        mySkipCollected = myStarted;
+        myStarted = true;
+        node = findMinOverlappingWith(getRoot(), range, getModCount(), 0, myNodeFilter);
+        if (node != null) {
+          myDeltaUpToRootExclusive = node.computeDeltaUpToRoot() - node.delta;
+        }
+      }
+      else {
+        node = myNextNode;
+      }
+
+      while (node != null && myChunk.size() < ITERATOR_CHUNK_SIZE) {
+        if (overlaps(node, myRange, myDeltaUpToRootExclusive)) {
+          int start = node.intervalStart() + myDeltaUpToRootExclusive + node.delta;
+          if (start > myLastStart) {
+            myLastStart = start;
+            myCollectedAtLastStart.clear();
+            mySkipCollected = false;
           }
-          indexInCurrentList = 0;
-          while (true) {
-            currentNode = nextNode(currentNode);
-            if (currentNode == null) {
-              return false;
-            }
-            if (overlaps(currentNode, rangeInterval, deltaUpToRootExclusive)) {
-              assert currentNode.intervalStart() + deltaUpToRootExclusive + currentNode.delta >= firstOverlapStart;
-              indexInCurrentList = 0;
-              while (indexInCurrentList != currentNode.intervals.size()) {
-                T t = currentNode.intervals.get(indexInCurrentList++).get();
-                if (t != null) {
-                  current = t;
-                  return true;
-                }
+          // lesser start offsets are met only after the tree was changed, these intervals were already returned
+          if (start == myLastStart) {
+            for (Supplier<T> supplier : node.intervals) {
+              T t = supplier.get();
+              if (t != null && (!mySkipCollected || !containsIdentity(myCollectedAtLastStart, t))) {
+                myChunk.add(t);
+                myCollectedAtLastStart.add(t);
               }
-              indexInCurrentList = 0;
             }
           }
         }
+        node = nextNode(node);
+      }
+      myNextNode = node;
+      myModCount = getModCount();
+    }
 
-        @Override
-        public T next() {
-          if (!hasNext()) throw new NoSuchElementException();
-          T t = current;
-          current = null;
-          return t;
-        }
-
-        @Override
-        public T peek() {
-          if (!hasNext()) throw new NoSuchElementException();
-          return current;
-        }
+    @Override
+    public T next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return myChunk.get(myIndexInChunk++);
+    }
 
-        @Override
-        public void remove() {
-          throw new UnsupportedOperationException();
-        }
+    @Override
+    public T peek() {
+      if (!hasNext()) throw new NoSuchElementException();
+      return myChunk.get(myIndexInChunk);
+    }
 
-        @Override
-        public void dispose() {
-          l.readLock().unlock();
-        }
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
 
-        // next node in in-order traversal
-        private IntervalNode<T> nextNode(@Nonnull IntervalNode<T> root) {
-          assert root.isValid() : root;
-          int delta = deltaUpToRootExclusive + root.delta;
-          int myMaxEnd = maxEndOf(root, deltaUpToRootExclusive);
-          if (startOffset > myMaxEnd) return null; // tree changed
-
-          // try to go right down
-          IntervalNode<T> right = root.getRight();
-          if (right != null && (nodeFilter == null || nodeFilter.test(right))) {
-            int rightMaxEnd = maxEndOf(right, delta);
-            if (startOffset <= rightMaxEnd) {
-              int rightDelta = delta + right.delta;
-              IntervalNode<T> left;
-              while ((left = right.getLeft()) != null && (nodeFilter == null || nodeFilter.test(left)) && startOffset <= maxEndOf(left, rightDelta)) {
-                right = left;
-                rightDelta += right.delta;
-              }
-              deltaUpToRootExclusive = rightDelta - right.delta;
-              return right;
-            }
+    @Override
+    public void dispose() {
+    }
+
+    // next node in in-order traversal
+    private IntervalNode<T> nextNode(@Nonnull IntervalNode<T> root) {
+      assert root.isValid() : root;
+      int startOffset = myRange.getStartOffset();
+      int endOffset = myRange.getEndOffset();
+      int delta = myDeltaUpToRootExclusive + root.delta;
+      int myMaxEnd = maxEndOf(root, myDeltaUpToRootExclusive);
+      if (startOffset > myMaxEnd) return null; // tree changed
+
+      // try to go right down
+      IntervalNode<T> right = root.getRight();
+      if (right != null && (myNodeFilter == null || myNodeFilter.test(right))) {
+        int rightMaxEnd = maxEndOf(right, delta);
+        if (startOffset <= rightMaxEnd) {
+          int rightDelta = delta + right.delta;
+          IntervalNode<T> left;
+          while ((left = right.getLeft()) != null && (myNodeFilter == null || myNodeFilter.test(left)) && startOffset <= maxEndOf(left, rightDelta)) {
+            right = left;
+            rightDelta += right.delta;
           }
+          myDeltaUpToRootExclusive = rightDelta - right.delta;
+          return right;
+        }
+      }
 
-          // go up
-          while (true) {
-            IntervalNode<T> parent = root.getParent();
-            if (parent == null) return null;
-            if (parent.intervalStart() + deltaUpToRootExclusive > endOffset) return null; // can't move right
-            deltaUpToRootExclusive -= parent.delta;
-
-            if (parent.getLeft() == root) {
-              return parent;
-            }
+      // go up
+      while (true) {
+        IntervalNode<T> parent = root.getParent();
+        if (parent == null) return null;
+        if (parent.intervalStart() + myDeltaUpToRootExclusive > endOffset) return null; // can't move right
+        myDeltaUpToRootExclusive -= parent.delta;
 
-            root = parent;
-          }
+        if (parent.getLeft() == root) {
+          return parent;
         }
-      };
+
+        root = parent;
+      }
     }
-    catch (RuntimeException | Error e) {
-      l.readLock().unlock();
-      throw e;
+  }
+
+  private static <T> boolean containsIdentity(@Nonnull List<T> list, @Nonnull T t) {
+    for (T o : list) {
+      if (o == t) return true;
     }
+    return false;
   }
 
   private boolean overlaps(@Nullable IntervalNode<T> root, @Nonnull TextRangeInterval rangeInterval, int deltaUpToRootExclusive) {
@@ -966,6 +1007,28 @@ public abstract class IntervalTreeImpl<T> extends RedBlackTree<T> implements Int
     }
   }
 
+  /**
+   * Removes intervals under one write lock acquisition, so readers don't interleave with the removal of each interval.
+   *
+   * @return number of removed intervals
+   */
+  public int removeIntervals(@Nonnull Collection<? extends T> intervals) {
+    if (intervals.isEmpty()) return 0;
+    try {
+      l.writeLock().lock();
+      int removed = 0;
+      for (T interval : intervals) {
+        if (removeInterval(interval)) {
+          removed++;
+        }
+      }
+      return removed;
+    }
+    finally {
+      l.writeLock().unlock();
+    }
+  }
+
   // run under write lock
   void removeNode(@Nonnull IntervalNode<T> node) {
     deleteNode(node);
@@ -17,35 +17,60 @@ package consulo.document.impl;
 
 import consulo.application.util.LineTokenizer;
 import consulo.document.internal.LineIterator;
-import consulo.util.collection.primitive.bytes.ByteList;
-import consulo.util.collection.primitive.bytes.ByteLists;
 import consulo.util.collection.primitive.ints.IntList;
-import consulo.util.collection.primitive.ints.IntLists;
 import consulo.util.lang.BitUtil;
 import consulo.util.lang.CharArrayUtil;
 import consulo.util.lang.MergingCharSequence;
 import consulo.util.lang.StringUtil;
 
 import jakarta.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Data structure specialized for working with document text lines, i.e. stores information about line mapping to document
  * offsets and provides convenient ways to work with that information like retrieving target line by document offset etc.
  * <p/>
- * Immutable.
+ * Immutable. Lines are stored in chunks of at most {@link #CHUNK_SIZE} lines with offsets relative to the chunk start,
+ * so an update copies only the chunks it touches and small per-chunk tables, untouched chunks are shared with the previous
+ * line set (and so with {@link FrozenDocument} snapshots of the previous document versions).
  */
 public class LineSet {
   private static final int MODIFIED_MASK = 0x4;
   private static final int SEPARATOR_MASK = 0x3;
+  private static final int CHUNK_SIZE = 512;
 
-  private final int[] myStarts;
-  private final byte[] myFlags; // MODIFIED_MASK bit is for is/setModified(line); SEPARATOR_MASK 2 bits stores line separator length: 0..2
+  private static final class Chunk {
+    final int[] myStarts; // relative to the start of the first line of chunk
+    final byte[] myFlags; // MODIFIED_MASK bit is for is/setModified(line); SEPARATOR_MASK 2 bits stores line separator length: 0..2
+
+    Chunk(int[] starts, byte[] flags) {
+      myStarts = starts;
+      myFlags = flags;
+    }
+
+    int size() {
+      return myStarts.length;
+    }
+
+    @Nonnull
+    Chunk copyFlags() {
+      return new Chunk(myStarts, myFlags.clone());
+    }
+  }
+
+  private final Chunk[] myChunks;
+  private final int[] myChunkFirstLines;
+  private final int[] myChunkStarts;
+  private final int myLineCount; // lines with start offset, i.e. without the empty line after trailing line separator
   private final int myLength;
 
-  private LineSet(int[] starts, byte[] flags, int length) {
-    myStarts = starts;
-    myFlags = flags;
+  private LineSet(Chunk[] chunks, int[] chunkFirstLines, int[] chunkStarts, int lineCount, int length) {
+    myChunks = chunks;
+    myChunkFirstLines = chunkFirstLines;
+    myChunkStarts = chunkStarts;
+    myLineCount = lineCount;
     myLength = length;
   }
 
@@ -55,16 +80,14 @@ public class LineSet {
 
   @Nonnull
   private static LineSet createLineSet(@Nonnull CharSequence text, boolean markModified) {
-    IntList starts = IntLists.newArrayList();
-    ByteList flags = ByteLists.newArrayList();
+    Builder builder = new Builder();
 
     LineTokenizer lineTokenizer = new LineTokenizer(text);
     while (!lineTokenizer.atEnd()) {
-      starts.add(lineTokenizer.getOffset());
-      flags.add((byte)(lineTokenizer.getLineSeparatorLength() | (markModified ? MODIFIED_MASK : 0)));
+      builder.addLine(lineTokenizer.getOffset(), (byte)(lineTokenizer.getLineSeparatorLength() | (markModified ? MODIFIED_MASK : 0)));
       lineTokenizer.advance();
     }
-    return new LineSet(starts.toArray(), flags.toArray(), text.length());
+    return builder.build(text.length());
   }
 
   @Nonnull
@@ -103,14 +126,7 @@ public class LineSet {
 
   @Nonnull
   private LineSet updateInsideOneLine(int line, int lengthDelta) {
-    int[] starts = myStarts.clone();
-    for (int i = line + 1; i < starts.length; i++) {
-      starts[i] += lengthDelta;
-    }
-
-    byte[] flags = myFlags.clone();
-    flags[line] |= MODIFIED_MASK;
-    return new LineSet(starts, flags, myLength + lengthDelta);
+    return replaceLines(line, line + 1, new int[]{getStartUnsafe(line)}, new byte[]{(byte)(getFlagsUnsafe(line) | MODIFIED_MASK)}, lengthDelta);
   }
 
   private LineSet genericUpdate(int startOffset, int endOffset, CharSequence replacement) {
@@ -122,51 +138,90 @@ public class LineSet {
     int lengthShift = patch.myLength - (endOffset - startOffset);
 
     int startLineStart = getLineStart(startLine);
-    boolean addStartLine = startOffset - startLineStart > 0 || patch.myStarts.length > 0 || endOffset < myLength;
-    boolean addEndLine = endOffset < myLength && patch.myLength > 0 && patch.getSeparatorLength(patch.myStarts.length - 1) > 0;
-    int newLineCount = startLine + (addStartLine ? 1 : 0) + Math.max(patch.myStarts.length - 1, 0) + (addEndLine ? 1 : 0) + Math.max(myStarts.length - endLine - 1, 0);
+    boolean addStartLine = startOffset - startLineStart > 0 || patch.myLineCount > 0 || endOffset < myLength;
+    boolean addEndLine = endOffset < myLength && patch.myLength > 0 && patch.getSeparatorLength(patch.myLineCount - 1) > 0;
+    int newLineCount = (addStartLine ? 1 : 0) + Math.max(patch.myLineCount - 1, 0) + (addEndLine ? 1 : 0);
 
     int[] starts = new int[newLineCount];
     byte[] flags = new byte[newLineCount];
 
-    if (startLine > 0) {
-      System.arraycopy(myStarts, 0, starts, 0, startLine);
-      System.arraycopy(myFlags, 0, flags, 0, startLine);
-    }
-
-    int toIndex = startLine;
+    int toIndex = 0;
     if (addStartLine) {
       starts[toIndex] = startLineStart;
-      flags[toIndex] = patch.myStarts.length > 0 ? patch.myFlags[0] : MODIFIED_MASK;
+      flags[toIndex] = patch.myLineCount > 0 ? patch.getFlagsUnsafe(0) : MODIFIED_MASK;
       toIndex++;
     }
 
-    toIndex = patch.shiftData(starts, flags, 1, toIndex, patch.myStarts.length - 1, startOffset);
+    for (int i = 1; i < patch.myLineCount; i++) {
+      starts[toIndex] = patch.getStartUnsafe(i) + startOffset;
+      flags[toIndex] = patch.getFlagsUnsafe(i);
+      toIndex++;
+    }
 
     if (endOffset < myLength) {
       if (addEndLine) {
         starts[toIndex] = endOffset + lengthShift;
-        flags[toIndex] = (byte)(myFlags[endLine] | MODIFIED_MASK);
+        flags[toIndex] = (byte)(getFlagsUnsafe(endLine) | MODIFIED_MASK);
         toIndex++;
       }
       else if (toIndex > 0) {
-        flags[toIndex - 1] = (byte)(myFlags[endLine] | MODIFIED_MASK);
+        flags[toIndex - 1] = (byte)(getFlagsUnsafe(endLine) | MODIFIED_MASK);
       }
     }
 
-    shiftData(starts, flags, endLine + 1, toIndex, myStarts.length - (endLine + 1), lengthShift);
-
-    return new LineSet(starts, flags, myLength + lengthShift);
+    return replaceLines(startLine, Math.min(endLine + 1, myLineCount), starts, flags, lengthShift);
   }
 
-  private int shiftData(int[] dstStarts, byte[] dstFlags, int srcOffset, int dstOffset, int count, int offsetDelta) {
-    if (count < 0) return dstOffset;
+  /**
+   * Replaces lines [fromLine, toLine) with the given ones and shifts starts of the following lines by lengthShift.
+   * Chunks before and after the changed range are shared with this line set, a small chunk produced by the change
+   * is merged with the following ones while they fit into a single chunk.
+   */
+  @Nonnull
+  private LineSet replaceLines(int fromLine, int toLine, int[] starts, byte[] flags, int lengthShift) {
+    Builder builder = new Builder();
+
+    int chunk = myChunks.length == 0 ? 0 : findChunk(Math.min(fromLine, myLineCount - 1));
+    for (int i = 0; i < chunk; i++) {
+      builder.addChunk(myChunks[i], myChunkStarts[i]);
+    }
+    if (chunk < myChunks.length) {
+      builder.addLines(myChunks[chunk], myChunkStarts[chunk], 0, fromLine - myChunkFirstLines[chunk]);
+    }
+
+    for (int i = 0; i < starts.length; i++) {
+      builder.addLine(starts[i], flags[i]);
+    }
 
-    System.arraycopy(myFlags, srcOffset, dstFlags, dstOffset, count);
-    for (int i = 0; i < count; i++) {
-      dstStarts[dstOffset + i] = myStarts[srcOffset + i] + offsetDelta;
+    chunk = toLine < myLineCount ? findChunk(toLine) : myChunks.length;
+    if (chunk < myChunks.length) {
+      builder.addLines(myChunks[chunk], myChunkStarts[chunk] + lengthShift, toLine - myChunkFirstLines[chunk], myChunks[chunk].size());
+      chunk++;
     }
-    return dstOffset + count;
+    while (chunk < myChunks.length && builder.getPendingLineCount() + myChunks[chunk].size() <= CHUNK_SIZE) {
+      builder.addLines(myChunks[chunk], myChunkStarts[chunk] + lengthShift, 0, myChunks[chunk].size());
+      chunk++;
+    }
+    for (; chunk < myChunks.length; chunk++) {
+      builder.addChunk(myChunks[chunk], myChunkStarts[chunk] + lengthShift);
+    }
+
+    return builder.build(myLength + lengthShift);
+  }
+
+  private int findChunk(int line) {
+    int bsResult = Arrays.binarySearch(myChunkFirstLines, line);
+    return bsResult >= 0 ? bsResult : -bsResult - 2;
+  }
+
+  private int getStartUnsafe(int line) {
+    int chunk = findChunk(line);
+    return myChunkStarts[chunk] + myChunks[chunk].myStarts[line - myChunkFirstLines[chunk]];
+  }
+
+  private byte getFlagsUnsafe(int line) {
+    int chunk = findChunk(line);
+    return myChunks[chunk].myFlags[line - myChunkFirstLines[chunk]];
   }
 
   public int findLineIndex(int offset) {
@@ -176,8 +231,10 @@ public class LineSet {
     if (myLength == 0) return 0;
     if (offset == myLength) return getLineCount() - 1;
 
-    int bsResult = Arrays.binarySearch(myStarts, offset);
-    return bsResult >= 0 ? bsResult : -bsResult - 2;
+    int chunkResult = Arrays.binarySearch(myChunkStarts, offset);
+    int chunk = chunkResult >= 0 ? chunkResult : -chunkResult - 2;
+    int bsResult = Arrays.binarySearch(myChunks[chunk].myStarts, offset - myChunkStarts[chunk]);
+    return myChunkFirstLines[chunk] + (bsResult >= 0 ? bsResult : -bsResult - 2);
   }
 
   @Nonnull
@@ -187,11 +244,11 @@ public class LineSet {
 
   public final int getLineStart(int index) {
     checkLineIndex(index);
-    return isLastEmptyLine(index) ? myLength : myStarts[index];
+    return isLastEmptyLine(index) ? myLength : getStartUnsafe(index);
   }
 
   private boolean isLastEmptyLine(int index) {
-    return index == myFlags.length && hasEol(index - 1);
+    return index == myLineCount && hasEol(index - 1);
   }
 
   private boolean hasEol(int lineIndex) {
@@ -200,7 +257,7 @@ public class LineSet {
 
   public final int getLineEnd(int index) {
     checkLineIndex(index);
-    return index >= myStarts.length - 1 ? myLength : myStarts[index + 1];
+    return index >= myLineCount - 1 ? myLength : getStartUnsafe(index + 1);
   }
 
   private void checkLineIndex(int index) {
@@ -211,7 +268,7 @@ public class LineSet {
 
   final boolean isModified(int index) {
     checkLineIndex(index);
-    return !isLastEmptyLine(index) && BitUtil.isSet(myFlags[index], MODIFIED_MASK);
+    return !isLastEmptyLine(index) && BitUtil.isSet(getFlagsUnsafe(index), MODIFIED_MASK);
   }
 
   @Nonnull
@@ -224,12 +281,14 @@ public class LineSet {
       if (isLastEmptyLine(index) || isModified(index)) return this;
     }
 
-    byte[] flags = myFlags.clone();
+    Chunk[] chunks = myChunks.clone();
     for (int i = 0; i < indices.size(); i++) {
       int index = indices.get(i);
-      flags[index] |= MODIFIED_MASK;
+      int chunk = findChunk(index);
+      if (chunks[chunk] == myChunks[chunk]) chunks[chunk] = myChunks[chunk].copyFlags();
+      chunks[chunk].myFlags[index - myChunkFirstLines[chunk]] |= MODIFIED_MASK;
     }
-    return new LineSet(myStarts, flags, myLength);
+    return new LineSet(chunks, myChunkFirstLines, myChunkStarts, myLineCount, myLength);
   }
 
   @Nonnull
@@ -243,11 +302,17 @@ public class LineSet {
     if (isLastEmptyLine(endLine - 1)) endLine--;
     if (startLine >= endLine) return this;
 
-    byte[] flags = myFlags.clone();
-    for (int i = startLine; i < endLine; i++) {
-      flags[i] &= ~MODIFIED_MASK;
+    Chunk[] chunks = myChunks.clone();
+    for (int chunk = findChunk(startLine); chunk < chunks.length && myChunkFirstLines[chunk] < endLine; chunk++) {
+      int firstLine = myChunkFirstLines[chunk];
+      for (int i = Math.max(startLine - firstLine, 0), end = Math.min(endLine - firstLine, chunks[chunk].size()); i < end; i++) {
+        if (BitUtil.isSet(chunks[chunk].myFlags[i], MODIFIED_MASK)) {
+          if (chunks[chunk] == myChunks[chunk]) chunks[chunk] = myChunks[chunk].copyFlags();
+          chunks[chunk].myFlags[i] &= ~MODIFIED_MASK;
+        }
+      }
     }
-    return new LineSet(myStarts, flags, myLength);
+    return new LineSet(chunks, myChunkFirstLines, myChunkStarts, myLineCount, myLength);
   }
 
   @Nonnull
@@ -261,14 +326,79 @@ public class LineSet {
   }
 
   private int getSeparatorLengthUnsafe(int index) {
-    return index < myFlags.length ? myFlags[index] & SEPARATOR_MASK : 0;
+    return index < myLineCount ? getFlagsUnsafe(index) & SEPARATOR_MASK : 0;
   }
 
   final int getLineCount() {
-    return myStarts.length + (isLastEmptyLine(myStarts.length) ? 1 : 0);
+    return myLineCount + (isLastEmptyLine(myLineCount) ? 1 : 0);
   }
 
   int getLength() {
     return myLength;
   }
+
+  private static final class Builder {
+    private final List<Chunk> myChunks = new ArrayList<>();
+    private int[] myChunkStarts = new int[4];
+    // lines of the chunk being built, with absolute starts
+    private final int[] myStarts = new int[CHUNK_SIZE];
+    private final byte[] myFlags = new byte[CHUNK_SIZE];
+    private int myPendingLineCount;
+
+    void addLine(int start, byte flags) {
+      if (myPendingLineCount == CHUNK_SIZE) flushPendingLines();
+      myStarts[myPendingLineCount] = start;
+      myFlags[myPendingLineCount] = flags;
+      myPendingLineCount++;
+    }
+
+    void addLines(@Nonnull Chunk chunk, int chunkStart, int from, int to) {
+      for (int i = from; i < to; i++) {
+        addLine(chunkStart + chunk.myStarts[i], chunk.myFlags[i]);
+      }
+    }
+
+    void addChunk(@Nonnull Chunk chunk, int chunkStart) {
+      flushPendingLines();
+      doAddChunk(chunk, chunkStart);
+    }
+
+    int getPendingLineCount() {
+      return myPendingLineCount;
+    }
+
+    private void flushPendingLines() {
+      if (myPendingLineCount == 0) return;
+
+      int chunkStart = myStarts[0];
+      int[] starts = new int[myPendingLineCount];
+      for (int i = 0; i < myPendingLineCount; i++) {
+        starts[i] = myStarts[i] - chunkStart;
+      }
+      doAddChunk(new Chunk(starts, Arrays.copyOf(myFlags, myPendingLineCount)), chunkStart);
+      myPendingLineCount = 0;
+    }
+
+    private void doAddChunk(@Nonnull Chunk chunk, int chunkStart) {
+      if (myChunks.size() == myChunkStarts.length) {
+        myChunkStarts = Arrays.copyOf(myChunkStarts, myChunkStarts.length * 2);
+      }
+      myChunkStarts[myChunks.size()] = chunkStart;
+      myChunks.add(chunk);
+    }
+
+    @Nonnull
+    LineSet build(int length) {
+      flushPendingLines();
+
+      int count = myChunks.size();
+      int[] firstLines = new int[count];
+      int lineCount = 0;
+      for (int i = 0; i < count; i++) {
+        firstLines[i] = lineCount;
+        lineCount += myChunks.get(i).size();
+      }
+      return new LineSet(myChunks.toArray(new Chunk[count]), firstLines, Arrays.copyOf(myChunkStarts, count), lineCount, length);
+    }
+  }
 }
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.document.impl;
+
+import consulo.application.util.LineTokenizer;
+import consulo.util.collection.primitive.ints.IntList;
+import consulo.util.collection.primitive.ints.IntLists;
+import consulo.util.lang.CharArrayUtil;
+import consulo.util.lang.MergingCharSequence;
+import consulo.util.lang.StringUtil;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares chunked {@link LineSet} with the flat implementation it replaced on random edits.
+ */
+public class LineSetTest extends TestCase {
+  private static final char[] ALPHABET = {'a', 'b', ' ', '\n', '\n', '\r'};
+
+  public void testRandomEdits() {
+    for (int seed = 0; seed < 30; seed++) {
+      Random random = new Random(seed);
+      String text = randomText(random, random.nextInt(4000));
+      LineSet lineSet = LineSet.createLineSet(text);
+      FlatLineSet expected = FlatLineSet.createLineSet(text);
+      assertSame(seed, text, expected, lineSet);
+
+      for (int step = 0; step < 200; step++) {
+        LineSet previous = lineSet;
+        FlatLineSet previousExpected = expected;
+        String previousText = text;
+
+        int action = random.nextInt(10);
+        if (action < 7 || text.isEmpty()) {
+          int start = text.isEmpty() ? 0 : random.nextInt(text.length() + 1);
+          int end = start + (start == text.length() ? 0 : random.nextInt(Math.min(text.length() - start, 2000) + 1));
+          String replacement = randomText(random, random.nextInt(10) == 0 ? random.nextInt(3000) : random.nextInt(5));
+          boolean wholeTextReplaced = start == 0 && end == text.length() && random.nextBoolean();
+          lineSet = lineSet.update(text, start, end, replacement, wholeTextReplaced);
+          expected = expected.update(text, start, end, replacement, wholeTextReplaced);
+          text = text.substring(0, start) + replacement + text.substring(end);
+        }
+        else if (action < 9) {
+          // the last empty line can't be marked, it has no flags
+          IntList indices = IntLists.newArrayList();
+          for (int i = random.nextInt(5); i >= 0; i--) {
+            indices.add(random.nextInt(expected.myStarts.length));
+          }
+          lineSet = lineSet.setModified(indices);
+          expected = expected.setModified(indices);
+        }
+        else {
+          int startLine = random.nextInt(expected.getLineCount());
+          int endLine = startLine + 1 + random.nextInt(expected.getLineCount() - startLine);
+          lineSet = lineSet.clearModificationFlags(startLine, endLine);
+          expected = expected.clearModificationFlags(startLine, endLine);
+        }
+
+        assertSame(seed, text, expected, lineSet);
+        // chunks are shared between versions, the previous one must stay intact
+        assertSame(seed, previousText, previousExpected, previous);
+      }
+    }
+  }
+
+  public void testChunkBoundaries() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      builder.append(i % 3 == 0 ? "x\r\n" : "x\n");
+    }
+    String text = builder.toString();
+    LineSet lineSet = LineSet.createLineSet(text);
+    FlatLineSet expected = FlatLineSet.createLineSet(text);
+
+    // join and split lines around the chunk borders
+    for (int line : new int[]{511, 512, 513, 1023, 1024, 1535, 1536}) {
+      int offset = expected.getLineEnd(line) - 1;
+      lineSet = lineSet.update(text, offset, offset + 1, "", false);
+      expected = expected.update(text, offset, offset + 1, "", false);
+      text = text.substring(0, offset) + text.substring(offset + 1);
+      assertSame(line, text, expected, lineSet);
+
+      lineSet = lineSet.update(text, offset, offset, "\n\n", false);
+      expected = expected.update(text, offset, offset, "\n\n", false);
+      text = text.substring(0, offset) + "\n\n" + text.substring(offset);
+      assertSame(line, text, expected, lineSet);
+    }
+  }
+
+  private static String randomText(Random random, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+    }
+    return new String(chars);
+  }
+
+  private static void assertSame(int seed, String text, FlatLineSet expected, LineSet actual) {
+    String message = "seed " + seed;
+    assertEquals(message, text.length(), actual.getLength());
+    assertEquals(message, expected.getLineCount(), actual.getLineCount());
+    for (int line = 0; line < expected.getLineCount(); line++) {
+      assertEquals(message, expected.getLineStart(line), actual.getLineStart(line));
+      assertEquals(message, expected.getLineEnd(line), actual.getLineEnd(line));
+      assertEquals(message, expected.getSeparatorLength(line), actual.getSeparatorLength(line));
+      assertEquals(message, expected.isModified(line), actual.isModified(line));
+    }
+    for (int offset = 0; offset <= text.length(); offset++) {
+      assertEquals(message, expected.findLineIndex(offset), actual.findLineIndex(offset));
+    }
+  }
+
+  /**
+   * The flat implementation of {@link LineSet} which was used before lines were split into chunks, used as an oracle.
+   */
+  private static final class FlatLineSet {
+    private static final int MODIFIED_MASK = 0x4;
+    private static final int SEPARATOR_MASK = 0x3;
+
+    private final int[] myStarts;
+    private final byte[] myFlags;
+    private final int myLength;
+
+    private FlatLineSet(int[] starts, byte[] flags, int length) {
+      myStarts = starts;
+      myFlags = flags;
+      myLength = length;
+    }
+
+    static FlatLineSet createLineSet(CharSequence text) {
+      return createLineSet(text, false);
+    }
+
+    private static FlatLineSet createLineSet(CharSequence text, boolean markModified) {
+      List<Integer> starts = new ArrayList<>();
+      List<Byte> flags = new ArrayList<>();
+
+      LineTokenizer lineTokenizer = new LineTokenizer(text);
+      while (!lineTokenizer.atEnd()) {
+        starts.add(lineTokenizer.getOffset());
+        flags.add((byte)(lineTokenizer.getLineSeparatorLength() | (markModified ? MODIFIED_MASK : 0)));
+        lineTokenizer.advance();
+      }
+
+      int[] startArray = new int[starts.size()];
+      byte[] flagArray = new byte[flags.size()];
+      for (int i = 0; i < startArray.length; i++) {
+        startArray[i] = starts.get(i);
+        flagArray[i] = flags.get(i);
+      }
+      return new FlatLineSet(startArray, flagArray, text.length());
+    }
+
+    FlatLineSet update(CharSequence prevText, int start, int end, CharSequence replacement, boolean wholeTextReplaced) {
+      if (myLength == 0) {
+        return createLineSet(replacement, !wholeTextReplaced);
+      }
+
+      CharSequence newText = StringUtil.replaceSubSequence(prevText, start, end, replacement);
+      if (hasChar(prevText, start - 1, '\r') && (hasChar(prevText, start, '\n') || hasChar(newText, start, '\n'))) {
+        replacement = new MergingCharSequence("\r", replacement);
+        start--;
+      }
+
+      if (hasChar(prevText, end, '\n') && (hasChar(prevText, end - 1, '\r') || hasChar(newText, start + replacement.length() - 1, '\r'))) {
+        replacement = new MergingCharSequence(replacement, "\n");
+        end++;
+      }
+
+      FlatLineSet result = isSingleLineChange(start, end, replacement)
+                           ? updateInsideOneLine(findLineIndex(start), replacement.length() - (end - start))
+                           : genericUpdate(start, end, replacement);
+
+      return wholeTextReplaced ? result.clearModificationFlags() : result;
+    }
+
+    private static boolean hasChar(CharSequence s, int index, char c) {
+      return index >= 0 && index < s.length() && s.charAt(index) == c;
+    }
+
+    private boolean isSingleLineChange(int start, int end, CharSequence replacement) {
+      if (start == 0 && end == myLength && replacement.length() == 0) return false;
+
+      int startLine = findLineIndex(start);
+      return startLine == findLineIndex(end) && !CharArrayUtil.containLineBreaks(replacement) && !isLastEmptyLine(startLine);
+    }
+
+    private FlatLineSet updateInsideOneLine(int line, int lengthDelta) {
+      int[] starts = myStarts.clone();
+      for (int i = line + 1; i < starts.length; i++) {
+        starts[i] += lengthDelta;
+      }
+
+      byte[] flags = myFlags.clone();
+      flags[line] |= MODIFIED_MASK;
+      return new FlatLineSet(starts, flags, myLength + lengthDelta);
+    }
+
+    private FlatLineSet genericUpdate(int startOffset, int endOffset, CharSequence replacement) {
+      int startLine = findLineIndex(startOffset);
+      int endLine = findLineIndex(endOffset);
+
+      FlatLineSet patch = createLineSet(replacement, true);
+
+      int lengthShift = patch.myLength - (endOffset - startOffset);
+
+      int startLineStart = getLineStart(startLine);
+      boolean addStartLine = startOffset - startLineStart > 0 || patch.myStarts.length > 0 || endOffset < myLength;
+      boolean addEndLine = endOffset < myLength && patch.myLength > 0 && patch.getSeparatorLength(patch.myStarts.length - 1) > 0;
+      int newLineCount = startLine + (addStartLine ? 1 : 0) + Math.max(patch.myStarts.length - 1, 0) + (addEndLine ? 1 : 0) +
+                         Math.max(myStarts.length - endLine - 1, 0);
+
+      int[] starts = new int[newLineCount];
+      byte[] flags = new byte[newLineCount];
+
+      if (startLine > 0) {
+        System.arraycopy(myStarts, 0, starts, 0, startLine);
+        System.arraycopy(myFlags, 0, flags, 0, startLine);
+      }
+
+      int toIndex = startLine;
+      if (addStartLine) {
+        starts[toIndex] = startLineStart;
+        flags[toIndex] = patch.myStarts.length > 0 ? patch.myFlags[0] : MODIFIED_MASK;
+        toIndex++;
+      }
+
+      toIndex = patch.shiftData(starts, flags, 1, toIndex, patch.myStarts.length - 1, startOffset);
+
+      if (endOffset < myLength) {
+        if (addEndLine) {
+          starts[toIndex] = endOffset + lengthShift;
+          flags[toIndex] = (byte)(myFlags[endLine] | MODIFIED_MASK);
+          toIndex++;
+        }
+        else if (toIndex > 0) {
+          flags[toIndex - 1] = (byte)(myFlags[endLine] | MODIFIED_MASK);
+        }
+      }
+
+      shiftData(starts, flags, endLine + 1, toIndex, myStarts.length - (endLine + 1), lengthShift);
+
+      return new FlatLineSet(starts, flags, myLength + lengthShift);
+    }
+
+    private int shiftData(int[] dstStarts, byte[] dstFlags, int srcOffset, int dstOffset, int count, int offsetDelta) {
+      if (count < 0) return dstOffset;
+
+      System.arraycopy(myFlags, srcOffset, dstFlags, dstOffset, count);
+      for (int i = 0; i < count; i++) {
+        dstStarts[dstOffset + i] = myStarts[srcOffset + i] + offsetDelta;
+      }
+      return dstOffset + count;
+    }
+
+    int findLineIndex(int offset) {
+      if (myLength == 0) return 0;
+      if (offset == myLength) return getLineCount() - 1;
+
+      int bsResult = Arrays.binarySearch(myStarts, offset);
+      return bsResult >= 0 ? bsResult : -bsResult - 2;
+    }
+
+    int getLineStart(int index) {
+      return isLastEmptyLine(index) ? myLength : myStarts[index];
+    }
+
+    private boolean isLastEmptyLine(int index) {
+      return index == myFlags.length && index > 0 && getSeparatorLength(index - 1) > 0;
+    }
+
+    int getLineEnd(int index) {
+      return index >= myStarts.length - 1 ? myLength : myStarts[index + 1];
+    }
+
+    boolean isModified(int index) {
+      return !isLastEmptyLine(index) && (myFlags[index] & MODIFIED_MASK) != 0;
+    }
+
+    FlatLineSet setModified(IntList indices) {
+      byte[] flags = myFlags.clone();
+      for (int i = 0; i < indices.size(); i++) {
+        flags[indices.get(i)] |= MODIFIED_MASK;
+      }
+      return new FlatLineSet(myStarts, flags, myLength);
+    }
+
+    FlatLineSet clearModificationFlags(int startLine, int endLine) {
+      if (isLastEmptyLine(endLine - 1)) endLine--;
+
+      byte[] flags = myFlags.clone();
+      for (int i = startLine; i < endLine; i++) {
+        flags[i] &= ~MODIFIED_MASK;
+      }
+      return new FlatLineSet(myStarts, flags, myLength);
+    }
+
+    FlatLineSet clearModificationFlags() {
+      return getLineCount() == 0 ? this : clearModificationFlags(0, getLineCount());
+    }
+
+    int getSeparatorLength(int index) {
+      return index < myFlags.length ? myFlags[index] & SEPARATOR_MASK : 0;
+    }
+
+    int getLineCount() {
+      return myStarts.length + (isLastEmptyLine(myStarts.length) ? 1 : 0);
+    }
+  }
+}
@@ -112,6 +112,13 @@ public abstract class AbstractTestProxy extends CompositePrintable {
     fireOnNewPrintable(printable);
   }
 
+  @Nonnull
+  @Override
+  TestOutputSpillFile getOutputSpillFile() {
+    AbstractTestProxy parent = getParent();
+    return parent != null ? parent.getOutputSpillFile() : super.getOutputSpillFile();
+  }
+
   @Override
   public void dispose() {
     super.dispose();
@@ -26,7 +26,8 @@ import consulo.index.io.data.IOUtil;
 import consulo.logging.Logger;
 import consulo.util.collection.ContainerUtil;
 import consulo.util.dataholder.UserDataHolderBase;
-import consulo.util.io.FileUtil;
+import consulo.util.io.BufferExposingByteArrayOutputStream;
+import consulo.util.lang.SystemProperties;
 import consulo.virtualFileSystem.RawFileLoader;
 
 import jakarta.annotation.Nonnull;
@@ -37,16 +38,25 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CompositePrintable extends UserDataHolderBase implements Printable, Disposable {
   public static final String NEW_LINE = "\n";
 
+  // chars of output kept in memory by all printables, when it's over the budget output is spilled to disk
+  private static final AtomicLong ourOutputSize = new AtomicLong();
+  private static final long OUTPUT_SIZE_BUDGET = SystemProperties.getIntProperty("consulo.test.output.memory.budget", 32 * 1024 * 1024);
+  private static final int MIN_SPILLED_OUTPUT_SIZE = 16 * 1024;
+
   protected final List<Printable> myNestedPrintables = new ArrayList<>();
   private final PrintablesWrapper myWrapper = new PrintablesWrapper();
   protected int myExceptionMark;
   private int myCurrentSize = 0;
+  private int myOutputSize = 0;
   private String myOutputFile = null;
   private String myFrameworkOutputFile;
+  private final Object myOutputSpillFileLock = new Object();
+  private TestOutputSpillFile myOutputSpillFile;
   private static final ExecutorService ourTestExecutorService = AppExecutorUtil.createBoundedApplicationPoolExecutor("Tests", 1);
 
   public void flush() {
@@ -123,6 +133,45 @@ public class CompositePrintable extends UserDataHolderBase implements Printable,
     synchronized (myNestedPrintables) {
       myCurrentSize += myNestedPrintables.size();
       myNestedPrintables.clear();
+      ourOutputSize.addAndGet(-myOutputSize);
+      myOutputSize = 0;
+    }
+  }
+
+  /**
+   * Takes into account {@code length} chars of output held by the last added printable. While output kept in memory by all printables
+   * is over the budget, output of this one is spilled to disk by chunks.
+   */
+  protected void addOutputSize(int length) {
+    synchronized (myNestedPrintables) {
+      myOutputSize += length;
+      if (ourOutputSize.addAndGet(length) > OUTPUT_SIZE_BUDGET && myOutputSize >= MIN_SPILLED_OUTPUT_SIZE) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Spills the rest of the output if output kept in memory is over the budget, it's called when no more output is expected.
+   */
+  protected void spillOutputIfOverBudget() {
+    synchronized (myNestedPrintables) {
+      if (myOutputSize > 0 && ourOutputSize.get() > OUTPUT_SIZE_BUDGET) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * @return file where output of this printable is spilled, test proxies share the file of their root
+   */
+  @Nonnull
+  TestOutputSpillFile getOutputSpillFile() {
+    synchronized (myOutputSpillFileLock) {
+      if (myOutputSpillFile == null) {
+        myOutputSpillFile = new TestOutputSpillFile();
+      }
+      return myOutputSpillFile;
     }
   }
 
@@ -178,34 +227,31 @@ public class CompositePrintable extends UserDataHolderBase implements Printable,
 
     private static final String HYPERLINK = "hyperlink";
 
-    private File myFile;
+    // offset and length of spilled output in mySpillFile, guarded by myFileLock
+    private final List<long[]> myRanges = new ArrayList<>();
+    // acquired while there are ranges
+    private TestOutputSpillFile mySpillFile;
+    private boolean myDisposed;
     private final MyFlushToFilePrinter myPrinter = new MyFlushToFilePrinter();
     private final Object myFileLock = new Object();
 
-    @Nullable
-    private synchronized File getFile() {
-      if (myFile == null) {
-        try {
-          final File tempFile = FileUtil.createTempFile("consulo_test_", ".out");
-          if (tempFile.exists()) {
-            myFile = tempFile;
-            return myFile;
-          }
-        }
-        catch (IOException e) {
-          LOG.error(e);
-          return null;
-        }
+    public void dispose() {
+      synchronized (myFileLock) {
+        if (!myDisposed && !myRanges.isEmpty()) mySpillFile.release();
+        myRanges.clear();
+        mySpillFile = null;
+        myDisposed = true;
       }
-      return myFile;
-    }
-
-    public synchronized void dispose() {
-      if (myFile != null) FileUtil.delete(myFile);
     }
 
-    public synchronized boolean hasOutput() {
-      return myFile != null;
+    private void addRange(long offset, int length) {
+      long[] last = myRanges.isEmpty() ? null : myRanges.get(myRanges.size() - 1);
+      if (last != null && last[0] + last[1] == offset) {
+        last[1] += length;
+      }
+      else {
+        myRanges.add(new long[]{offset, length});
+      }
     }
 
     public void flush(final List<Printable> printables) {
@@ -214,6 +260,7 @@ public class CompositePrintable extends UserDataHolderBase implements Printable,
       //move out from AWT thread
       final Runnable request = () -> {
         synchronized (myFileLock) {
+          if (myDisposed) return;
           for (final Printable printable : currentPrintables) {
             printable.printOn(myPrinter);
           }
@@ -231,62 +278,56 @@ public class CompositePrintable extends UserDataHolderBase implements Printable,
     public void printOn(final Printer console, final List<Printable> printables, final boolean skipFileContent) {
       final Runnable request = () -> {
         if (skipFileContent) {
-          readFileContentAndPrint(console, null, printables);
+          readFileContentAndPrint(console, null, null, printables);
           return;
         }
-        final File file = hasOutput() ? getFile() : null;
         synchronized (myFileLock) {
-          readFileContentAndPrint(console, file, printables);
+          readFileContentAndPrint(console, mySpillFile, myRanges.isEmpty() ? null : new ArrayList<>(myRanges), printables);
         }
       };
       invokeInAlarm(request);
     }
 
     private class MyFlushToFilePrinter implements Printer {
-      //all access is performed from alarm thread
-      private DataOutputStream myFileWriter;
+      private static final int CHUNK_SIZE = 64 * 1024;
+
+      //all access is performed from alarm thread under myFileLock
+      private final BufferExposingByteArrayOutputStream myBuffer = new BufferExposingByteArrayOutputStream();
+      private final DataOutputStream myFileWriter = new DataOutputStream(myBuffer);
 
       private DataOutputStream getFileWriter() {
-        if (myFileWriter == null) {
-          try {
-            final File file = getFile();
-            LOG.assertTrue(file != null);
-            myFileWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
-          }
-          catch (FileNotFoundException e) {
-            LOG.info(e);
-            return null;
-          }
-        }
+        if (myBuffer.size() >= CHUNK_SIZE) close();
         return myFileWriter;
       }
 
       private void close() {
-        if (myFileWriter != null) {
-          try {
-            myFileWriter.close();
-          }
-          catch (FileNotFoundException e) {
-            LOG.info(e);
-          }
-          catch (IOException e) {
-            LOG.error(e);
+        if (myBuffer.size() == 0) return;
+        boolean acquired = false;
+        if (myRanges.isEmpty()) {
+          // acquire before append, otherwise the file may be deleted together with the bytes by the last other printable released
+          mySpillFile = getOutputSpillFile();
+          mySpillFile.acquire();
+          acquired = true;
+        }
+        try {
+          addRange(mySpillFile.append(myBuffer.getInternalBuffer(), myBuffer.size()), myBuffer.size());
+        }
+        catch (IOException e) {
+          if (acquired) {
+            mySpillFile.release();
+            mySpillFile = null;
           }
-          myFileWriter = null;
+          LOG.error(e);
         }
+        myBuffer.reset();
       }
 
       @Override
       public void print(String text, ConsoleViewContentType contentType) {
         try {
           final DataOutputStream writer = getFileWriter();
-          if (writer != null) {
-            IOUtil.writeString(contentType.toString(), writer);
-            IOUtil.writeString(text, writer);
-          }
-        }
-        catch (FileNotFoundException e) {
-          LOG.info(e);
+          IOUtil.writeString(contentType.toString(), writer);
+          IOUtil.writeString(text, writer);
         }
         catch (IOException e) {
           LOG.error(e);
@@ -299,15 +340,10 @@ public class CompositePrintable extends UserDataHolderBase implements Printable,
           final DiffHyperlink diffHyperlink = ((DiffHyperlink.DiffHyperlinkInfo)info).getPrintable();
           try {
             final DataOutputStream fileWriter = getFileWriter();
-            if (fileWriter != null) {
-              IOUtil.writeString(HYPERLINK, fileWriter);
-              IOUtil.writeString(diffHyperlink.getLeft(), fileWriter);
-              IOUtil.writeString(diffHyperlink.getRight(), fileWriter);
-              IOUtil.writeString(diffHyperlink.getFilePath(), fileWriter);
-            }
-          }
-          catch (FileNotFoundException e) {
-            LOG.info(e);
+            IOUtil.writeString(HYPERLINK, fileWriter);
+            IOUtil.writeString(diffHyperlink.getLeft(), fileWriter);
+            IOUtil.writeString(diffHyperlink.getRight(), fileWriter);
+            IOUtil.writeString(diffHyperlink.getFilePath(), fileWriter);
           }
           catch (IOException e) {
             LOG.error(e);
@@ -327,12 +363,15 @@ public class CompositePrintable extends UserDataHolderBase implements Printable,
       }
     }
 
-    private void readFileContentAndPrint(Printer printer, @Nullable File file, List<Printable> nestedPrintables) {
-      if (file != null) {
+    private void readFileContentAndPrint(Printer printer,
+                                         @Nullable TestOutputSpillFile spillFile,
+                                         @Nullable List<long[]> ranges,
+                                         List<Printable> nestedPrintables) {
+      if (spillFile != null && ranges != null) {
         try {
           int lineNum = 0;
           Map<String, ConsoleViewContentType> contentTypeByNameMap = ContainerUtil.newMapFromValues(ConsoleViewContentType.getRegisteredTypes().iterator(), contentType -> contentType.toString());
-          DataInputStream reader = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+          DataInputStream reader = new DataInputStream(new BufferedInputStream(spillFile.openStream(ranges)));
           try {
             while (reader.available() > 0 && !wasPrintableChanged(printer)) {
               if (lineNum == CompositePrintable.this.getExceptionMark() && lineNum > 0) printer.mark();
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.execution.test;
+
+import consulo.logging.Logger;
+import consulo.util.io.FileUtil;
+
+import jakarta.annotation.Nonnull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Append-only temp file where output of {@link CompositePrintable}s is spilled when it's not kept in memory. A printable refers to its
+ * output by ranges of the file, so a run of many tests doesn't create a temp file per test. Test proxies of a run share the file of its
+ * root proxy (see {@link CompositePrintable#getOutputSpillFile()}), the file is deleted when no printable refers to it anymore, that is
+ * when the run is closed.
+ */
+final class TestOutputSpillFile {
+  private static final Logger LOG = Logger.getInstance(TestOutputSpillFile.class);
+
+  private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+  private final Object myLock = new Object();
+  private Path myFile;
+  private FileChannel myChannel;
+  private int myUsers;
+
+  /**
+   * Must be called before the first {@link #append}, the file is kept until the matching {@link #release()}.
+   */
+  void acquire() {
+    synchronized (myLock) {
+      myUsers++;
+    }
+  }
+
+  void release() {
+    synchronized (myLock) {
+      if (--myUsers > 0 || myChannel == null) return;
+
+      try {
+        myChannel.close();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+      try {
+        Files.deleteIfExists(myFile);
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+      myChannel = null;
+      myFile = null;
+    }
+  }
+
+  /**
+   * @return offset of the bytes in the file
+   */
+  long append(@Nonnull byte[] bytes, int length) throws IOException {
+    synchronized (myLock) {
+      if (myChannel == null) {
+        myFile = FileUtil.createTempFile("consulo_test_", ".out").toPath();
+        myChannel = FileChannel.open(myFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+
+      long offset = myChannel.size();
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+      while (buffer.hasRemaining()) {
+        myChannel.write(buffer, offset + buffer.position());
+      }
+      return offset;
+    }
+  }
+
+  private int read(long offset, @Nonnull byte[] bytes, int start, int length) throws IOException {
+    synchronized (myLock) {
+      if (myChannel == null) throw new EOFException("Test output file is deleted");
+
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, start, length);
+      while (buffer.hasRemaining()) {
+        if (myChannel.read(buffer, offset + buffer.position() - start) < 0) throw new EOFException();
+      }
+      return length;
+    }
+  }
+
+  /**
+   * @param ranges offset and length of each range
+   */
+  @Nonnull
+  InputStream openStream(@Nonnull List<long[]> ranges) {
+    return new InputStream() {
+      private int myRange;
+      private long myPosition;
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+      }
+
+      @Override
+      public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (myRange < ranges.size() && myPosition == ranges.get(myRange)[1]) {
+          myRange++;
+          myPosition = 0;
+        }
+        if (myRange == ranges.size()) return -1;
+
+        long[] range = ranges.get(myRange);
+        int count = (int)Math.min(Math.min(len, READ_CHUNK_SIZE), range[1] - myPosition);
+        TestOutputSpillFile.this.read(range[0] + myPosition, b, off, count);
+        myPosition += count;
+        return count;
+      }
+
+      @Override
+      public int available() {
+        long available = -myPosition;
+        for (int i = myRange; i < ranges.size(); i++) {
+          available += ranges.get(i)[1];
+        }
+        return (int)Math.min(available, Integer.MAX_VALUE);
+      }
+    };
+  }
+}
@@ -406,6 +406,8 @@ public class SMTestProxy extends AbstractTestProxy {
   }
 
   public void setFinished() {
+    spillOutputIfOverBudget();
+
     if (myState.isFinal()) {
       // we shouldn't fire new printable because final state
       // has been already fired
@@ -619,6 +621,10 @@ public class SMTestProxy extends AbstractTestProxy {
         printer.print(output, ConsoleViewContentType.getConsoleViewType(outputType));
       }
     });
+    if (!isSuite()) {
+      // spilling output of a suite would spill its children too
+      addOutputSize(output.length());
+    }
   }
 
   public void addError(final String output, @Nullable final String stackTrace, boolean isCritical) {
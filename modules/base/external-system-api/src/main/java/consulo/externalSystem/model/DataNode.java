@@ -39,7 +39,16 @@ import java.util.*;
  */
 public class DataNode<T> implements Serializable {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
+
+  private static final Map<String, Class<?>> PRIMITIVE_CLASSES = new HashMap<>();
+
+  static {
+    for (Class<?> aClass : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class,
+      double.class, void.class}) {
+      PRIMITIVE_CLASSES.put(aClass.getName(), aClass);
+    }
+  }
 
   @Nonnull
   private final List<DataNode<?>> myChildren = new ArrayList<>();
@@ -115,9 +124,32 @@ public class DataNode<T> implements Serializable {
     ObjectInputStream oIn = null;
     try {
       oIn = new ObjectInputStream(new ByteArrayInputStream(myRawData)) {
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+          // the data is written by the same classes, see CompactClassDescObjectOutputStream
+          String name = readUTF();
+          long serialVersionUID = readLong();
+          ObjectStreamClass desc = ObjectStreamClass.lookupAny(resolveClass(name));
+          if (desc == null) {
+            throw new InvalidClassException(name, "Can't describe the class");
+          }
+          if (desc.getSerialVersionUID() != serialVersionUID) {
+            throw new InvalidClassException(name, "local class incompatible: stream classdesc serialVersionUID = " + serialVersionUID +
+                                                  ", local class serialVersionUID = " + desc.getSerialVersionUID());
+          }
+          return desc;
+        }
+
         @Override
         protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
-          String name = desc.getName();
+          return resolveClass(desc.getName());
+        }
+
+        private Class<?> resolveClass(@Nonnull String name) throws ClassNotFoundException {
+          Class<?> primitiveClass = PRIMITIVE_CLASSES.get(name);
+          if (primitiveClass != null) {
+            return primitiveClass;
+          }
           for (ClassLoader loader : loaders) {
             try {
               return Class.forName(name, false, loader);
@@ -126,7 +158,7 @@ public class DataNode<T> implements Serializable {
               // Ignore
             }
           }
-          return super.resolveClass(desc);
+          return Class.forName(name, false, DataNode.class.getClassLoader());
         }
 
         @Override
@@ -236,16 +268,45 @@ public class DataNode<T> implements Serializable {
   }
 
   private void writeObject(ObjectOutputStream out) throws IOException {
+    if (myData == null) {
+      // not prepared yet, the raw data is passed as is
+      out.defaultWriteObject();
+      return;
+    }
+
     ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-    ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+    ObjectOutputStream oOut = new CompactClassDescObjectOutputStream(bOut);
     try {
       oOut.writeObject(myData);
     }
     finally {
       oOut.close();
     }
-    myRawData = bOut.toByteArray();
-    out.defaultWriteObject();
+    // the data is kept as object, so its bytes are written from a local and not kept in the node after the graph is sent
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("myChildren", myChildren);
+    fields.put("myKey", myKey);
+    fields.put("myRawData", bOut.toByteArray());
+    fields.put("myParent", myParent);
+    out.writeFields();
+  }
+
+  /**
+   * Writes only names and serialVersionUIDs of classes instead of full class descriptors. Every node data is written to a separate stream (see
+   * {@link #prepareData(ClassLoader...)}), so full descriptors of the data class and all its super classes are repeated for every node
+   * of a graph and take most of its serialized size. Both sides of the stream run the same classes, so the reading side takes
+   * descriptors of its own classes and rejects ones with another serialVersionUID.
+   */
+  private static class CompactClassDescObjectOutputStream extends ObjectOutputStream {
+    private CompactClassDescObjectOutputStream(@Nonnull OutputStream out) throws IOException {
+      super(out);
+    }
+
+    @Override
+    protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+      writeUTF(desc.getName());
+      writeLong(desc.getSerialVersionUID());
+    }
   }
 
   @Override
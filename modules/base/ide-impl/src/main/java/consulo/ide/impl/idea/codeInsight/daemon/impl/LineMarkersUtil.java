@@ -65,9 +65,7 @@ class LineMarkersUtil {
       createOrReuseLineMarker(info, markupModel, toReuse);
     }
 
-    for (RangeHighlighter highlighter : toReuse.forAllInGarbageBin()) {
-      highlighter.dispose();
-    }
+    markupModel.removeHighlighters(toReuse.forAllInGarbageBin());
   }
 
   @Nonnull
@@ -98,6 +98,8 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
   private static final Logger LOG = Logger.getInstance(ConsoleViewImpl.class);
 
   private static final int DEFAULT_FLUSH_DELAY = SystemProperties.getIntProperty("console.flush.delay.ms", 200);
+  // max length of text added to the document by one flush, a flood of output is added by portions so that UI stays responsive
+  private static final int FLUSH_CHUNK_SIZE = SystemProperties.getIntProperty("console.flush.chunk.size", 256 * 1024);
 
   public static final Key<ConsoleViewImpl> CONSOLE_VIEW_IN_EDITOR_VIEW = Key.create("CONSOLE_VIEW_IN_EDITOR_VIEW");
   private static final Key<ConsoleViewContentType> CONTENT_TYPE = Key.create("ConsoleViewContentType");
@@ -569,7 +571,7 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
         requestFlushImmediately();
       }
       else if (myEditor != null) {
-        final boolean shouldFlushNow = myDeferredBuffer.length() >= myDeferredBuffer.getCycleBufferSize();
+        final boolean shouldFlushNow = myDeferredBuffer.length() >= Math.min(myDeferredBuffer.getCycleBufferSize(), FLUSH_CHUNK_SIZE);
         addFlushRequest(shouldFlushNow ? 0 : DEFAULT_FLUSH_DELAY, FLUSH);
       }
     }
@@ -636,20 +638,29 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
   }
 
   public void flushDeferredText() {
+    flushDeferredText(Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return true if only a part of the deferred text was flushed and the rest is to be flushed later
+   */
+  private boolean flushDeferredText(int maxLength) {
     ApplicationManager.getApplication().assertIsDispatchThread();
-    if (isDisposed()) return;
+    if (isDisposed()) return false;
     final boolean shouldStickToEnd = !myCancelStickToEnd && isStickingToEnd();
     myCancelStickToEnd = false; // Cancel only needs to last for one update. Next time, isStickingToEnd() will be false.
 
     Ref<CharSequence> addedTextRef = Ref.create();
     List<TokenBuffer.TokenInfo> deferredTokens;
+    boolean hasMore;
     final Document document = myEditor.getDocument();
 
     synchronized (LOCK) {
-      if (myOutputPaused) return;
+      if (myOutputPaused) return false;
 
-      deferredTokens = myDeferredBuffer.drain();
-      if (deferredTokens.isEmpty()) return;
+      deferredTokens = myDeferredBuffer.drain(maxLength);
+      hasMore = myDeferredBuffer.length() > 0;
+      if (deferredTokens.isEmpty()) return hasMore;
       cancelHeavyAlarm();
     }
 
@@ -727,6 +738,7 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
       scrollToEnd();
     }
     sendUserInput(addedTextRef.get());
+    return hasMore;
   }
 
   private static int evaluateBackspacesInTokens(@Nonnull List<? extends TokenBuffer.TokenInfo> source, int sourceStartIndex, @Nonnull List<? super TokenBuffer.TokenInfo> dest) {
@@ -1580,7 +1592,10 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
     }
 
     protected void doRun() {
-      flushDeferredText();
+      if (flushDeferredText(FLUSH_CHUNK_SIZE)) {
+        // let UI process other events before the next portion
+        addFlushRequest(0, FLUSH);
+      }
     }
   }
 
@@ -23,6 +23,7 @@ import consulo.util.collection.Queue;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -30,7 +31,7 @@ import java.util.List;
  * Stores list of tokens (a token is {@link TokenInfo} which is a text plus {@link ConsoleViewContentType} plus {@link HyperlinkInfo})
  * Tries to maintain the total token text length not more than {@link #maxCapacity}, trims tokens from the beginning on overflow.
  * Add token via {@link #print(String, ConsoleViewContentType, HyperlinkInfo)}
- * Get all tokens via {@link #drain()}
+ * Get all tokens via {@link #drain()} or tokens from the beginning via {@link #drain(int)}
  */
 class TokenBuffer {
   // special token which means that the deferred text starts with "\r" so it shouldn't be appended to the document end.
@@ -80,13 +81,18 @@ class TokenBuffer {
   // \r with other character c should be remove last line, c
   private void combineTrailingCRWith(@Nonnull String currentText) {
     if (StringUtil.startsWith(currentText, "\n")) {
-      TokenInfo last = tokens.removeLast();
+      TokenInfo last = tokens.peekLast();
+      int lastStartIndex = getStartIndex(last);
+      tokens.removeLast();
       String lastTextWithNoCR = last.getText().substring(0, last.length() - 1);
-      if (!lastTextWithNoCR.isEmpty()) {
+      if (lastTextWithNoCR.length() > lastStartIndex) {
         TokenInfo newLast = new TokenInfo(last.contentType, lastTextWithNoCR, last.getHyperlinkInfo());
         tokens.addLast(newLast);
         size--;
       }
+      else {
+        removedLast(last);
+      }
       return;
     }
     removeLastLine();
@@ -95,26 +101,41 @@ class TokenBuffer {
   private void removeLastLine() {
     // when \r happens, need to delete the last line
     while (!tokens.isEmpty() && tokens.peekLast() != CR_TOKEN) {
-      TokenInfo last = tokens.removeLast();
+      TokenInfo last = tokens.peekLast();
       String text = last.getText();
       int lfIndex = text.lastIndexOf('\n');
-      if (lfIndex != -1) {
+      if (lfIndex >= getStartIndex(last)) {
         // split token
+        tokens.removeLast();
         TokenInfo newToken = new TokenInfo(last.contentType, text.substring(0, lfIndex + 1), last.getHyperlinkInfo());
         tokens.addLast(newToken);
         size -= text.length() - newToken.length();
         return;
       }
       // remove the token entirely, move to the previous
-      size -= text.length();
+      tokens.removeLast();
+      removedLast(last);
     }
     if (tokens.isEmpty()) {
-      // \r at the very beginning. return CR_TOKEN to signal this
+      // \r at the very beginning, or the line started in the text which is already drained to the document.
+      // return CR_TOKEN to signal this
       tokens.addLast(CR_TOKEN);
       size++;
     }
   }
 
+  // the text of the first token before startIndex is drained or trimmed already
+  private int getStartIndex(@Nonnull TokenInfo token) {
+    return token == tokens.peekFirst() ? startIndex : 0;
+  }
+
+  private void removedLast(@Nonnull TokenInfo last) {
+    size -= last.length();
+    if (tokens.isEmpty()) {
+      startIndex = 0;
+    }
+  }
+
   private void trim() {
     // toss tokens from the beginning until size became < maxCapacity
     while (size - startIndex > maxCapacity) {
@@ -179,6 +200,37 @@ class TokenBuffer {
     }
   }
 
+  // takes tokens from the beginning which are at most maxLength long in total, the last token is sliced if it doesn't fit.
+  // the rest of the text stays in the buffer, it may still be changed by "\r" printed later
+  @Nonnull
+  List<TokenInfo> drain(int maxLength) {
+    if (length() <= maxLength) {
+      return drain();
+    }
+
+    List<TokenInfo> result = new ArrayList<>();
+    int taken = 0;
+    while (taken < maxLength) {
+      TokenInfo first = tokens.peekFirst();
+      String text = first.getText();
+      if (text.length() - startIndex <= maxLength - taken) {
+        tokens.pullFirst();
+        size -= text.length();
+        result.add(startIndex == 0 ? first : new TokenInfo(first.contentType, text.substring(startIndex), first.getHyperlinkInfo()));
+        taken += text.length() - startIndex;
+        startIndex = 0;
+        continue;
+      }
+
+      int end = startIndex + maxLength - taken;
+      if (end - 1 > startIndex && Character.isHighSurrogate(text.charAt(end - 1))) end--; // don't split a surrogate pair between flushes
+      result.add(new TokenInfo(first.contentType, text.substring(startIndex, end), first.getHyperlinkInfo()));
+      startIndex = end;
+      break;
+    }
+    return result;
+  }
+
   @Nonnull
   private List<TokenInfo> getInfos() {
     List<TokenInfo> list = tokens.toList();
@@ -3,7 +3,10 @@ package consulo.ide.impl.idea.find.impl;
 
 import consulo.ide.impl.idea.find.FindInProjectSearchEngine;
 import consulo.find.FindModel;
+import consulo.ide.impl.idea.find.ngrams.RegExpTrigramQueryBuilder;
 import consulo.ide.impl.idea.find.ngrams.TrigramIndex;
+import consulo.ide.impl.idea.find.ngrams.TrigramQuery;
+import consulo.application.util.registry.Registry;
 import consulo.language.psi.scope.GlobalSearchScopeUtil;
 import consulo.language.psi.scope.GlobalSearchScope;
 import consulo.language.psi.scope.LocalSearchScope;
@@ -22,6 +25,7 @@ import consulo.ide.impl.idea.util.containers.ContainerUtil;
 import consulo.language.psi.stub.DumbModeAccessType;
 import consulo.language.psi.stub.FileBasedIndex;
 import consulo.ide.impl.idea.util.indexing.FileBasedIndexImpl;
+import consulo.util.lang.ref.Ref;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
@@ -51,6 +55,8 @@ public class IdeaIndexBasedFindInProjectSearchEngine implements FindInProjectSea
 
     private final boolean myHasTrigrams;
     private final String myStringToFindInIndices;
+    @Nonnull
+    private final TrigramQuery myRegExpQuery;
 
     MyFindInProjectSearcher(@Nonnull Project project, @Nonnull FindModel findModel) {
       myProject = project;
@@ -65,19 +71,32 @@ public class IdeaIndexBasedFindInProjectSearchEngine implements FindInProjectSea
 
       myStringToFindInIndices = stringToFind;
 
-      myHasTrigrams = hasTrigrams(myStringToFindInIndices);
+      myRegExpQuery = findModel.isRegularExpressions() && Registry.is("idea.regexp.search.uses.indices")
+                      ? RegExpTrigramQueryBuilder.build(findModel.getStringToFind(), !findModel.isCaseSensitive())
+                      : TrigramQuery.ALL;
+
+      myHasTrigrams = !myRegExpQuery.isAll() || hasTrigrams(myStringToFindInIndices);
     }
 
     @Override
     public
     @Nonnull
     Collection<VirtualFile> searchForOccurrences() {
-      String stringToFind = getStringToFindInIndexes(myFindModel, myProject);
-
-      if (stringToFind.isEmpty() || (DumbService.getInstance(myProject).isDumb() && !FileBasedIndex.isIndexAccessDuringDumbModeEnabled())) {
+      if (DumbService.getInstance(myProject).isDumb() && !FileBasedIndex.isIndexAccessDuringDumbModeEnabled()) {
         return Collections.emptySet();
       }
 
+      if (!myRegExpQuery.isAll()) {
+        GlobalSearchScope scope = GlobalSearchScopeUtil.toGlobalSearchScope(FindInProjectUtil.getScopeFromModel(myProject, myFindModel), myProject);
+        Ref<Set<VirtualFile>> hits = Ref.create();
+        FileBasedIndex.getInstance().ignoreDumbMode(() -> hits.set(findFiles(myRegExpQuery, scope)), DumbModeAccessType.RAW_INDEX_DATA_ACCEPTABLE);
+        return Collections.unmodifiableCollection(hits.get());
+      }
+
+      String stringToFind = getStringToFindInIndexes(myFindModel, myProject);
+      if (stringToFind.isEmpty()) {
+        return Collections.emptySet();
+      }
 
       final GlobalSearchScope scope = GlobalSearchScopeUtil.toGlobalSearchScope(FindInProjectUtil.getScopeFromModel(myProject, myFindModel), myProject);
 
@@ -113,6 +132,40 @@ public class IdeaIndexBasedFindInProjectSearchEngine implements FindInProjectSea
       return Collections.unmodifiableCollection(Arrays.asList(filesWithWord));
     }
 
+    /**
+     * Files of the scope which satisfy the query, the query must not be {@link TrigramQuery#ALL}.
+     */
+    @Nonnull
+    private static Set<VirtualFile> findFiles(@Nonnull TrigramQuery query, @Nonnull GlobalSearchScope scope) {
+      switch (query.getKind()) {
+        case TRIGRAMS:
+          Set<VirtualFile> hits = new HashSet<>();
+          FileBasedIndex.getInstance().getFilesWithKey(TrigramIndex.INDEX_ID, query.getTrigrams(), Processors.cancelableCollectProcessor(hits), scope);
+          return hits;
+        case AND:
+          Set<VirtualFile> intersection = null;
+          for (TrigramQuery subQuery : query.getSubQueries()) {
+            Set<VirtualFile> files = findFiles(subQuery, scope);
+            if (intersection == null) {
+              intersection = files;
+            }
+            else {
+              intersection.retainAll(files);
+            }
+            if (intersection.isEmpty()) break;
+          }
+          return intersection;
+        case OR:
+          Set<VirtualFile> union = new HashSet<>();
+          for (TrigramQuery subQuery : query.getSubQueries()) {
+            union.addAll(findFiles(subQuery, scope));
+          }
+          return union;
+        default:
+          throw new IllegalArgumentException("Query " + query + " does not restrict files");
+      }
+    }
+
     @Override
     public boolean isReliable() {
       if (DumbService.isDumb(myProject)) return false;
@@ -0,0 +1,637 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.ide.impl.idea.find.ngrams;
+
+import consulo.ide.impl.idea.openapi.util.text.StringUtil;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Converts a {@link java.util.regex.Pattern} into a {@link TrigramQuery} which holds for every file containing a match of the pattern,
+ * the same way as Google Code Search does.
+ * <p>
+ * Every sub-expression is described by the set of strings it matches exactly (while the set is small) or otherwise by sets of
+ * possible prefixes and suffixes of its matches and by a query which must hold for any text containing a match.
+ * Constructs which cannot be analyzed (back references, wide character classes, repetitions without a lower bound) match
+ * any string, so the resulting query is always a necessary condition, but may be {@link TrigramQuery#ALL}.
+ */
+public final class RegExpTrigramQueryBuilder {
+  private static final int MAX_EXACT_SET = 16;
+  private static final int MAX_AFFIX_SET = 16;
+  private static final int MAX_CLASS_SIZE = 8;
+  private static final int MAX_REPEAT = 4;
+  private static final int MAX_DEPTH = 100;
+
+  private static final int ANY_CHAR = -1;
+  private static final int EMPTY = -2;
+  private static final int ANY_STRING = -3;
+
+  private static Map<Character, Set<String>> ourCaseVariants;
+
+  private final String myPattern;
+  private boolean myCaseInsensitive;
+  private int myOffset;
+  private int myDepth;
+
+  private RegExpTrigramQueryBuilder(@Nonnull String pattern, boolean caseInsensitive) {
+    myPattern = pattern;
+    myCaseInsensitive = caseInsensitive;
+  }
+
+  /**
+   * @param caseInsensitive whether the pattern is compiled with {@link java.util.regex.Pattern#CASE_INSENSITIVE} and
+   *                        {@link java.util.regex.Pattern#UNICODE_CASE} flags
+   * @return query over trigrams of files which may contain a match, {@link TrigramQuery#ALL} for invalid or unsupported patterns
+   */
+  @Nonnull
+  public static TrigramQuery build(@Nonnull String pattern, boolean caseInsensitive) {
+    RegExpTrigramQueryBuilder builder = new RegExpTrigramQueryBuilder(pattern, caseInsensitive);
+    try {
+      Info info = builder.parseAlternation();
+      if (builder.myOffset != pattern.length()) return TrigramQuery.ALL;
+      return info.toQuery();
+    }
+    catch (UnsupportedPatternException e) {
+      return TrigramQuery.ALL;
+    }
+  }
+
+  private static final class UnsupportedPatternException extends Exception {
+    UnsupportedPatternException() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * Matches of an expression: either one of {@link #myExact} strings, or strings starting with one of {@link #myPrefixes} and ending with
+   * one of {@link #mySuffixes}. In both cases a text containing a match satisfies {@link #myMatch}.
+   */
+  private static final class Info {
+    final boolean myEmptyable;
+    @Nullable
+    final Set<String> myExact;
+    final Set<String> myPrefixes;
+    final Set<String> mySuffixes;
+    final TrigramQuery myMatch;
+
+    Info(boolean emptyable, @Nonnull Set<String> exact) {
+      this(emptyable, exact, Collections.emptySet(), Collections.emptySet(), TrigramQuery.ALL);
+    }
+
+    Info(boolean emptyable, @Nonnull Set<String> prefixes, @Nonnull Set<String> suffixes, @Nonnull TrigramQuery match) {
+      this(emptyable, null, prefixes, suffixes, match);
+    }
+
+    private Info(boolean emptyable, @Nullable Set<String> exact, @Nonnull Set<String> prefixes, @Nonnull Set<String> suffixes, @Nonnull TrigramQuery match) {
+      myEmptyable = emptyable;
+      myExact = exact;
+      myPrefixes = prefixes;
+      mySuffixes = suffixes;
+      myMatch = match;
+    }
+
+    @Nonnull
+    Set<String> prefixesOrExact() {
+      return myExact != null ? myExact : myPrefixes;
+    }
+
+    @Nonnull
+    Set<String> suffixesOrExact() {
+      return myExact != null ? myExact : mySuffixes;
+    }
+
+    @Nonnull
+    TrigramQuery toQuery() {
+      if (myExact != null) return TrigramQuery.and(myMatch, anyOf(myExact));
+      return TrigramQuery.and(myMatch, anyOf(myPrefixes), anyOf(mySuffixes));
+    }
+  }
+
+  @Nonnull
+  private static Info anyChar() {
+    return new Info(false, Collections.singleton(""), Collections.singleton(""), TrigramQuery.ALL);
+  }
+
+  @Nonnull
+  private static Info anyString() {
+    return new Info(true, Collections.singleton(""), Collections.singleton(""), TrigramQuery.ALL);
+  }
+
+  @Nonnull
+  private static Info empty() {
+    return new Info(true, Collections.singleton(""));
+  }
+
+  @Nonnull
+  private static TrigramQuery anyOf(@Nonnull Set<String> strings) {
+    List<TrigramQuery> queries = new ArrayList<>(strings.size());
+    for (String string : strings) {
+      queries.add(TrigramQuery.trigrams(string));
+    }
+    return TrigramQuery.or(queries);
+  }
+
+  @Nonnull
+  private static Info concat(@Nonnull Info first, @Nonnull Info second) {
+    boolean emptyable = first.myEmptyable && second.myEmptyable;
+    if (first.myExact != null && second.myExact != null && first.myExact.size() * second.myExact.size() <= MAX_EXACT_SET) {
+      return simplify(new Info(emptyable, cross(first.myExact, second.myExact), Collections.emptySet(), Collections.emptySet(),
+                               TrigramQuery.and(first.myMatch, second.myMatch)));
+    }
+
+    Set<String> prefixes;
+    if (first.myExact != null) {
+      prefixes = first.myExact.size() * second.prefixesOrExact().size() <= MAX_AFFIX_SET ? cross(first.myExact, second.prefixesOrExact()) : first.myExact;
+    }
+    else {
+      prefixes = first.myEmptyable ? union(first.myPrefixes, second.prefixesOrExact()) : first.myPrefixes;
+    }
+
+    Set<String> suffixes;
+    if (second.myExact != null) {
+      suffixes = first.suffixesOrExact().size() * second.myExact.size() <= MAX_AFFIX_SET ? cross(first.suffixesOrExact(), second.myExact) : second.myExact;
+    }
+    else {
+      suffixes = second.myEmptyable ? union(first.suffixesOrExact(), second.mySuffixes) : second.mySuffixes;
+    }
+
+    return simplify(new Info(emptyable, prefixes, suffixes, TrigramQuery.and(first.toQuery(), second.toQuery())));
+  }
+
+  @Nonnull
+  private static Info alternate(@Nonnull Info first, @Nonnull Info second) {
+    boolean emptyable = first.myEmptyable || second.myEmptyable;
+    if (first.myExact != null && second.myExact != null) {
+      return simplify(new Info(emptyable, union(first.myExact, second.myExact), Collections.emptySet(), Collections.emptySet(),
+                               TrigramQuery.or(Arrays.asList(first.myMatch, second.myMatch))));
+    }
+    return simplify(new Info(emptyable, union(first.prefixesOrExact(), second.prefixesOrExact()), union(first.suffixesOrExact(), second.suffixesOrExact()),
+                             TrigramQuery.or(Arrays.asList(first.toQuery(), second.toQuery()))));
+  }
+
+  @Nonnull
+  private static Info repeat(@Nonnull Info info, int min, int max) {
+    if (min == 0) {
+      return max == 1 ? alternate(info, empty()) : anyString();
+    }
+    if (min == max && min <= MAX_REPEAT) {
+      Info result = info;
+      for (int i = 1; i < min; i++) {
+        result = concat(result, info);
+      }
+      return result;
+    }
+    // x{n,m} starts and ends with x and contains it
+    return simplify(new Info(info.myEmptyable, info.prefixesOrExact(), info.suffixesOrExact(), info.toQuery()));
+  }
+
+  /**
+   * Keeps the sets small: an exact set which is too big turns into prefixes and suffixes, prefix and suffix sets which are too big
+   * are cut to trigrams after their information is saved in the match query.
+   */
+  @Nonnull
+  private static Info simplify(@Nonnull Info info) {
+    if (info.myExact != null) {
+      if (info.myExact.size() <= MAX_EXACT_SET) return info;
+      return simplify(new Info(info.myEmptyable, info.myExact, info.myExact, TrigramQuery.and(info.myMatch, anyOf(info.myExact))));
+    }
+
+    if (info.myPrefixes.size() <= MAX_AFFIX_SET && info.mySuffixes.size() <= MAX_AFFIX_SET) return info;
+
+    TrigramQuery match = info.myMatch;
+    Set<String> prefixes = info.myPrefixes;
+    if (prefixes.size() > MAX_AFFIX_SET) {
+      match = TrigramQuery.and(match, anyOf(prefixes));
+      prefixes = trim(prefixes, true);
+    }
+    Set<String> suffixes = info.mySuffixes;
+    if (suffixes.size() > MAX_AFFIX_SET) {
+      match = TrigramQuery.and(match, anyOf(suffixes));
+      suffixes = trim(suffixes, false);
+    }
+    return new Info(info.myEmptyable, prefixes, suffixes, match);
+  }
+
+  @Nonnull
+  private static Set<String> trim(@Nonnull Set<String> strings, boolean prefixes) {
+    Set<String> result = new HashSet<>();
+    for (String string : strings) {
+      result.add(string.length() <= 3 ? string : prefixes ? string.substring(0, 3) : string.substring(string.length() - 3));
+    }
+    return result.size() <= MAX_AFFIX_SET ? result : Collections.singleton("");
+  }
+
+  @Nonnull
+  private static Set<String> cross(@Nonnull Set<String> first, @Nonnull Set<String> second) {
+    Set<String> result = new HashSet<>();
+    for (String s1 : first) {
+      for (String s2 : second) {
+        result.add(s1 + s2);
+      }
+    }
+    return result;
+  }
+
+  @Nonnull
+  private static Set<String> union(@Nonnull Set<String> first, @Nonnull Set<String> second) {
+    Set<String> result = new HashSet<>(first);
+    result.addAll(second);
+    return result;
+  }
+
+  // parsing of java.util.regex syntax
+
+  @Nonnull
+  private Info parseAlternation() throws UnsupportedPatternException {
+    if (++myDepth > MAX_DEPTH) throw new UnsupportedPatternException();
+
+    Info result = parseConcatenation();
+    while (myOffset < myPattern.length() && myPattern.charAt(myOffset) == '|') {
+      myOffset++;
+      result = alternate(result, parseConcatenation());
+    }
+
+    myDepth--;
+    return result;
+  }
+
+  @Nonnull
+  private Info parseConcatenation() throws UnsupportedPatternException {
+    Info result = empty();
+    while (myOffset < myPattern.length()) {
+      char c = myPattern.charAt(myOffset);
+      if (c == '|' || c == ')') break;
+      result = concat(result, parseQuantifiers(parseAtom()));
+    }
+    return result;
+  }
+
+  @Nonnull
+  private Info parseQuantifiers(@Nonnull Info atom) throws UnsupportedPatternException {
+    Info result = atom;
+    while (myOffset < myPattern.length()) {
+      char c = myPattern.charAt(myOffset);
+      int min;
+      int max;
+      if (c == '*') {
+        min = 0;
+        max = Integer.MAX_VALUE;
+        myOffset++;
+      }
+      else if (c == '+') {
+        min = 1;
+        max = Integer.MAX_VALUE;
+        myOffset++;
+      }
+      else if (c == '?') {
+        min = 0;
+        max = 1;
+        myOffset++;
+      }
+      else if (c == '{') {
+        myOffset++;
+        min = parseNumber();
+        max = min;
+        if (myOffset < myPattern.length() && myPattern.charAt(myOffset) == ',') {
+          myOffset++;
+          max = myOffset < myPattern.length() && myPattern.charAt(myOffset) == '}' ? Integer.MAX_VALUE : parseNumber();
+        }
+        expect('}');
+        if (max < min) throw new UnsupportedPatternException();
+      }
+      else {
+        break;
+      }
+
+      // reluctant and possessive quantifiers match the same strings
+      if (myOffset < myPattern.length() && (myPattern.charAt(myOffset) == '?' || myPattern.charAt(myOffset) == '+')) {
+        myOffset++;
+      }
+      result = repeat(result, min, max);
+    }
+    return result;
+  }
+
+  private int parseNumber() throws UnsupportedPatternException {
+    int start = myOffset;
+    while (myOffset < myPattern.length() && Character.isDigit(myPattern.charAt(myOffset)) && myOffset - start < 9) {
+      myOffset++;
+    }
+    if (start == myOffset) throw new UnsupportedPatternException();
+    return Integer.parseInt(myPattern.substring(start, myOffset));
+  }
+
+  @Nonnull
+  private Info parseAtom() throws UnsupportedPatternException {
+    char c = myPattern.charAt(myOffset++);
+    switch (c) {
+      case '(':
+        return parseGroup();
+      case '[':
+        return parseClass();
+      case '.':
+        return anyChar();
+      case '^':
+      case '$':
+        return empty();
+      case '*':
+      case '+':
+      case '?':
+      case '{':
+        throw new UnsupportedPatternException();
+      case '\\':
+        if (myOffset < myPattern.length() && myPattern.charAt(myOffset) == 'Q') {
+          myOffset++;
+          return parseQuotation();
+        }
+        return charInfo(parseEscape(false));
+      default:
+        return charInfo(c);
+    }
+  }
+
+  @Nonnull
+  private Info parseQuotation() {
+    int end = myPattern.indexOf("\\E", myOffset);
+    if (end < 0) end = myPattern.length();
+    Info result = empty();
+    for (int i = myOffset; i < end; i++) {
+      result = concat(result, charInfo(myPattern.charAt(i)));
+    }
+    myOffset = Math.min(end + 2, myPattern.length());
+    return result;
+  }
+
+  @Nonnull
+  private Info parseGroup() throws UnsupportedPatternException {
+    boolean lookaround = false;
+    if (myOffset < myPattern.length() && myPattern.charAt(myOffset) == '?') {
+      myOffset++;
+      if (myOffset >= myPattern.length()) throw new UnsupportedPatternException();
+      char c = myPattern.charAt(myOffset);
+      if (c == ':' || c == '>' || c == '=' || c == '!') {
+        lookaround = c == '=' || c == '!';
+        myOffset++;
+      }
+      else if (c == '<') {
+        myOffset++;
+        if (myOffset < myPattern.length() && (myPattern.charAt(myOffset) == '=' || myPattern.charAt(myOffset) == '!')) {
+          lookaround = true;
+          myOffset++;
+        }
+        else {
+          int end = myPattern.indexOf('>', myOffset);
+          if (end < 0) throw new UnsupportedPatternException();
+          myOffset = end + 1;
+        }
+      }
+      else {
+        boolean on = true;
+        while (myOffset < myPattern.length() && myPattern.charAt(myOffset) != ')' && myPattern.charAt(myOffset) != ':') {
+          char flag = myPattern.charAt(myOffset++);
+          if (flag == '-') {
+            on = false;
+          }
+          // whitespace and comments in comments mode and literal text of other modes are not understood by the parser
+          else if (on && flag != 'i' && flag != 'u' && flag != 'm' && flag != 's' && flag != 'd' && flag != 'U') {
+            throw new UnsupportedPatternException();
+          }
+          else if (on && (flag == 'i' || flag == 'U')) {
+            myCaseInsensitive = true;
+          }
+        }
+        if (myOffset >= myPattern.length()) throw new UnsupportedPatternException();
+        if (myPattern.charAt(myOffset++) == ')') return empty();
+      }
+    }
+
+    Info result = parseAlternation();
+    expect(')');
+    // lookarounds do not consume text, what they assert is not required to be in a match
+    return lookaround ? empty() : result;
+  }
+
+  @Nonnull
+  private Info parseClass() throws UnsupportedPatternException {
+    boolean negated = false;
+    if (myOffset < myPattern.length() && myPattern.charAt(myOffset) == '^') {
+      negated = true;
+      myOffset++;
+    }
+
+    Set<Character> chars = new HashSet<>();
+    boolean complex = false;
+    int depth = 1;
+    boolean first = true;
+    while (depth > 0) {
+      if (myOffset >= myPattern.length()) throw new UnsupportedPatternException();
+      char c = myPattern.charAt(myOffset++);
+      int from;
+      if (c == '[') {
+        complex = true;
+        depth++;
+        continue;
+      }
+      else if (c == ']' && !first) {
+        depth--;
+        continue;
+      }
+      else if (c == '&' && myOffset < myPattern.length() && myPattern.charAt(myOffset) == '&') {
+        complex = true;
+        myOffset++;
+        continue;
+      }
+      else if (c == '\\') {
+        from = parseEscape(true);
+      }
+      else {
+        from = c;
+      }
+      first = false;
+
+      if (from < 0) {
+        complex = true;
+        continue;
+      }
+
+      int to = from;
+      if (myOffset + 1 < myPattern.length() && myPattern.charAt(myOffset) == '-' && myPattern.charAt(myOffset + 1) != ']' && myPattern.charAt(myOffset + 1) != '[') {
+        myOffset++;
+        char next = myPattern.charAt(myOffset++);
+        to = next == '\\' ? parseEscape(true) : next;
+        if (to < 0) {
+          complex = true;
+          continue;
+        }
+      }
+
+      if (complex || depth > 1) continue;
+      if (to - from >= MAX_CLASS_SIZE) {
+        complex = true;
+        continue;
+      }
+      for (int ch = from; ch <= to; ch++) {
+        chars.add((char)ch);
+      }
+    }
+
+    if (negated || complex || chars.isEmpty() || chars.size() > MAX_CLASS_SIZE) return anyChar();
+
+    Info result = null;
+    for (char c : chars) {
+      Info info = charInfo(c);
+      result = result == null ? info : alternate(result, info);
+    }
+    return result;
+  }
+
+  /**
+   * @return the escaped character or one of {@link #ANY_CHAR}, {@link #EMPTY} and {@link #ANY_STRING}
+   */
+  private int parseEscape(boolean inClass) throws UnsupportedPatternException {
+    if (myOffset >= myPattern.length()) throw new UnsupportedPatternException();
+    char c = myPattern.charAt(myOffset++);
+    switch (c) {
+      case 't':
+        return '\t';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 'f':
+        return '\f';
+      case 'a':
+        return '\u0007';
+      case 'e':
+        return '\u001B';
+      case '0': {
+        int value = 0;
+        for (int i = 0; i < 3 && myOffset < myPattern.length(); i++) {
+          char digit = myPattern.charAt(myOffset);
+          if (digit < '0' || digit > '7' || value * 8 + digit - '0' > 0377) break;
+          value = value * 8 + digit - '0';
+          myOffset++;
+        }
+        return value;
+      }
+      case 'x':
+        if (myOffset < myPattern.length() && myPattern.charAt(myOffset) == '{') {
+          int end = myPattern.indexOf('}', myOffset);
+          if (end < 0) throw new UnsupportedPatternException();
+          int value = parseHex(myOffset + 1, end);
+          myOffset = end + 1;
+          return value > Character.MAX_VALUE ? ANY_CHAR : value;
+        }
+        myOffset += 2;
+        return parseHex(myOffset - 2, myOffset);
+      case 'u':
+        myOffset += 4;
+        return parseHex(myOffset - 4, myOffset);
+      case 'c':
+        if (myOffset >= myPattern.length()) throw new UnsupportedPatternException();
+        return myPattern.charAt(myOffset++) ^ 64;
+      case 'p':
+      case 'P':
+      case 'N':
+        if (myOffset < myPattern.length() && myPattern.charAt(myOffset) == '{') {
+          int end = myPattern.indexOf('}', myOffset);
+          if (end < 0) throw new UnsupportedPatternException();
+          myOffset = end + 1;
+        }
+        else {
+          myOffset++;
+        }
+        return ANY_CHAR;
+      case 'd':
+      case 'D':
+      case 'w':
+      case 'W':
+      case 's':
+      case 'S':
+      case 'h':
+      case 'H':
+      case 'v':
+      case 'V':
+        return ANY_CHAR;
+      case 'R':
+      case 'X':
+        return inClass ? ANY_CHAR : ANY_STRING;
+      case 'b':
+      case 'B':
+      case 'A':
+      case 'G':
+      case 'Z':
+      case 'z':
+        return inClass ? ANY_CHAR : EMPTY;
+      case 'k':
+        if (inClass) throw new UnsupportedPatternException();
+        int end = myPattern.indexOf('>', myOffset);
+        if (end < 0) throw new UnsupportedPatternException();
+        myOffset = end + 1;
+        return ANY_STRING;
+      default:
+        if (c >= '1' && c <= '9') {
+          if (inClass) throw new UnsupportedPatternException();
+          while (myOffset < myPattern.length() && Character.isDigit(myPattern.charAt(myOffset))) myOffset++;
+          return ANY_STRING;
+        }
+        if (Character.isLetterOrDigit(c)) throw new UnsupportedPatternException();
+        return c;
+    }
+  }
+
+  private int parseHex(int start, int end) throws UnsupportedPatternException {
+    if (start >= end || end > myPattern.length() || end - start > 8) throw new UnsupportedPatternException();
+    try {
+      return Integer.parseInt(myPattern.substring(start, end), 16);
+    }
+    catch (NumberFormatException e) {
+      throw new UnsupportedPatternException();
+    }
+  }
+
+  private void expect(char c) throws UnsupportedPatternException {
+    if (myOffset >= myPattern.length() || myPattern.charAt(myOffset) != c) throw new UnsupportedPatternException();
+    myOffset++;
+  }
+
+  @Nonnull
+  private Info charInfo(int c) {
+    if (c == ANY_CHAR) return anyChar();
+    if (c == EMPTY) return empty();
+    if (c == ANY_STRING) return anyString();
+
+    char ch = (char)c;
+    if (myCaseInsensitive) {
+      Set<String> variants = getCaseVariants().get(StringUtil.toLowerCase(ch));
+      if (variants != null) return new Info(false, variants);
+    }
+    return new Info(false, Collections.singleton(String.valueOf(StringUtil.toLowerCase(ch))));
+  }
+
+  /**
+   * Unicode case insensitive matching treats characters as equal when their upper cases are equal, but the index keeps lower cases,
+   * which differ for some of such characters, e.g. for 's' and '\u017F'. The map contains all lower cases for each such character.
+   */
+  @Nonnull
+  private static synchronized Map<Character, Set<String>> getCaseVariants() {
+    if (ourCaseVariants == null) {
+      Map<Character, Set<String>> groups = new HashMap<>();
+      for (int c = 0; c <= Character.MAX_VALUE; c++) {
+        char key = Character.toLowerCase(Character.toUpperCase((char)c));
+        groups.computeIfAbsent(key, k -> new HashSet<>()).add(String.valueOf(StringUtil.toLowerCase((char)c)));
+      }
+
+      Map<Character, Set<String>> variants = new HashMap<>();
+      for (Set<String> group : groups.values()) {
+        if (group.size() < 2) continue;
+        for (String lowerCase : group) {
+          variants.put(lowerCase.charAt(0), group);
+        }
+      }
+      ourCaseVariants = variants;
+    }
+    return ourCaseVariants;
+  }
+}
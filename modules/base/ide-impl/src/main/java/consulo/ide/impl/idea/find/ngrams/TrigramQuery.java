@@ -0,0 +1,192 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.ide.impl.idea.find.ngrams;
+
+import consulo.ide.impl.idea.openapi.util.text.TrigramBuilder;
+
+import jakarta.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Boolean query over {@link TrigramIndex} keys: a file matches {@link Kind#TRIGRAMS} when it contains all of the trigrams,
+ * {@link Kind#AND} and {@link Kind#OR} combine sub-queries, {@link #ALL} matches every file.
+ * <p>
+ * Queries are normalized on construction: {@link #ALL} never appears inside of {@link Kind#AND} or {@link Kind#OR},
+ * nested queries of the same kind are flattened and trigram sets of an {@link Kind#AND} are merged into a single sub-query.
+ */
+public final class TrigramQuery {
+  public enum Kind {
+    ALL,
+    TRIGRAMS,
+    AND,
+    OR
+  }
+
+  public static final TrigramQuery ALL = new TrigramQuery(Kind.ALL, Collections.emptySet(), Collections.emptyList());
+
+  private final Kind myKind;
+  private final Set<Integer> myTrigrams;
+  private final List<TrigramQuery> mySubQueries;
+
+  private TrigramQuery(@Nonnull Kind kind, @Nonnull Set<Integer> trigrams, @Nonnull List<TrigramQuery> subQueries) {
+    myKind = kind;
+    myTrigrams = trigrams;
+    mySubQueries = subQueries;
+  }
+
+  /**
+   * Query for files containing all trigrams of the text, {@link #ALL} if the text has no trigrams.
+   */
+  @Nonnull
+  public static TrigramQuery trigrams(@Nonnull CharSequence text) {
+    Set<Integer> trigrams = new HashSet<>();
+    TrigramBuilder.processTrigrams(text, new TrigramBuilder.TrigramProcessor() {
+      @Override
+      public boolean test(int value) {
+        trigrams.add(value);
+        return true;
+      }
+    });
+    return trigrams.isEmpty() ? ALL : new TrigramQuery(Kind.TRIGRAMS, trigrams, Collections.emptyList());
+  }
+
+  @Nonnull
+  public static TrigramQuery and(@Nonnull TrigramQuery... queries) {
+    return and(Arrays.asList(queries));
+  }
+
+  @Nonnull
+  public static TrigramQuery and(@Nonnull Collection<TrigramQuery> queries) {
+    Set<Integer> trigrams = new HashSet<>();
+    Set<TrigramQuery> subQueries = new LinkedHashSet<>();
+    for (TrigramQuery query : queries) {
+      switch (query.myKind) {
+        case ALL:
+          break;
+        case TRIGRAMS:
+          trigrams.addAll(query.myTrigrams);
+          break;
+        case AND:
+          for (TrigramQuery subQuery : query.mySubQueries) {
+            if (subQuery.myKind == Kind.TRIGRAMS) {
+              trigrams.addAll(subQuery.myTrigrams);
+            }
+            else {
+              subQueries.add(subQuery);
+            }
+          }
+          break;
+        case OR:
+          subQueries.add(query);
+          break;
+      }
+    }
+
+    TrigramQuery trigramQuery = trigrams.isEmpty() ? null : new TrigramQuery(Kind.TRIGRAMS, trigrams, Collections.emptyList());
+    if (subQueries.isEmpty()) {
+      return trigramQuery != null ? trigramQuery : ALL;
+    }
+    if (trigramQuery == null && subQueries.size() == 1) {
+      return subQueries.iterator().next();
+    }
+
+    List<TrigramQuery> result = new ArrayList<>(subQueries.size() + 1);
+    // evaluate the cheapest and usually the most selective part first
+    if (trigramQuery != null) result.add(trigramQuery);
+    result.addAll(subQueries);
+    return new TrigramQuery(Kind.AND, Collections.emptySet(), result);
+  }
+
+  @Nonnull
+  public static TrigramQuery or(@Nonnull Collection<TrigramQuery> queries) {
+    Set<TrigramQuery> subQueries = new LinkedHashSet<>();
+    for (TrigramQuery query : queries) {
+      switch (query.myKind) {
+        case ALL:
+          return ALL;
+        case OR:
+          subQueries.addAll(query.mySubQueries);
+          break;
+        default:
+          subQueries.add(query);
+      }
+    }
+
+    // a file with all trigrams of a wider set has all trigrams of its subset too
+    List<TrigramQuery> result = new ArrayList<>(subQueries.size());
+    for (TrigramQuery query : subQueries) {
+      if (query.myKind != Kind.TRIGRAMS || !hasTrigramsSubset(subQueries, query)) result.add(query);
+    }
+
+    if (result.isEmpty()) return ALL;
+    if (result.size() == 1) return result.get(0);
+    return new TrigramQuery(Kind.OR, Collections.emptySet(), result);
+  }
+
+  private static boolean hasTrigramsSubset(@Nonnull Collection<TrigramQuery> queries, @Nonnull TrigramQuery query) {
+    for (TrigramQuery other : queries) {
+      if (other != query && other.myKind == Kind.TRIGRAMS && query.myTrigrams.containsAll(other.myTrigrams)) return true;
+    }
+    return false;
+  }
+
+  @Nonnull
+  public Kind getKind() {
+    return myKind;
+  }
+
+  public boolean isAll() {
+    return myKind == Kind.ALL;
+  }
+
+  /**
+   * Trigrams of a {@link Kind#TRIGRAMS} query, empty for other kinds.
+   */
+  @Nonnull
+  public Set<Integer> getTrigrams() {
+    return Collections.unmodifiableSet(myTrigrams);
+  }
+
+  /**
+   * Operands of {@link Kind#AND} and {@link Kind#OR} queries, empty for other kinds.
+   */
+  @Nonnull
+  public List<TrigramQuery> getSubQueries() {
+    return Collections.unmodifiableList(mySubQueries);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TrigramQuery query = (TrigramQuery)o;
+    return myKind == query.myKind && myTrigrams.equals(query.myTrigrams) && mySubQueries.equals(query.mySubQueries);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(myKind, myTrigrams, mySubQueries);
+  }
+
+  @Override
+  public String toString() {
+    switch (myKind) {
+      case ALL:
+        return "ALL";
+      case TRIGRAMS:
+        // trigrams are sums of shifted chars (see TrigramBuilder), which can't be split back into chars beyond ASCII
+        StringBuilder builder = new StringBuilder();
+        for (int trigram : new TreeSet<>(myTrigrams)) {
+          if (builder.length() > 0) builder.append(' ');
+          builder.append("0x").append(Integer.toHexString(trigram));
+        }
+        return builder.toString();
+      default:
+        StringBuilder result = new StringBuilder("(");
+        for (TrigramQuery query : mySubQueries) {
+          if (result.length() > 1) result.append(myKind == Kind.AND ? " AND " : " OR ");
+          result.append(query);
+        }
+        return result.append(')').toString();
+    }
+  }
+}
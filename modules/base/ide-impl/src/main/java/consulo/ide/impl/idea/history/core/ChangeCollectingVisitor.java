@@ -47,6 +47,13 @@ public class ChangeCollectingVisitor extends ChangeVisitor {
     return myPath;
   }
 
+  @Nullable
+  @Override
+  public String getPathOfInterest() {
+    // labels of the project are collected too, they affect any path for the filter
+    return myPath;
+  }
+
   @Override
   public void begin(ChangeSet c) throws StopVisitingException {
     myCurrentChangeSet = c;
@@ -24,6 +24,7 @@ import consulo.ide.impl.idea.history.utils.LocalHistoryLog;
 import consulo.util.collection.primitive.ints.IntSet;
 import consulo.util.collection.primitive.ints.IntSets;
 import consulo.util.lang.Clock;
+import jakarta.annotation.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.ArrayList;
@@ -133,21 +134,7 @@ public class ChangeList {
           }
 
           private ChangeSet fetchNext() {
-            if (currentBlock == null) {
-              synchronized (ChangeList.this) {
-                if (myCurrentChangeSet != null) {
-                  currentBlock = new ChangeSetHolder(-1, myCurrentChangeSet);
-                }
-                else {
-                  currentBlock = myStorage.readPrevious(-1, recursionGuard);
-                }
-              }
-            }
-            else {
-              synchronized (ChangeList.this) {
-                currentBlock = myStorage.readPrevious(currentBlock.id, recursionGuard);
-              }
-            }
+            currentBlock = readPrevious(currentBlock, recursionGuard, null);
             if (currentBlock == null) return null;
             return currentBlock.changeSet;
           }
@@ -160,10 +147,19 @@ public class ChangeList {
     };
   }
 
+  @Nullable
+  private synchronized ChangeSetHolder readPrevious(@Nullable ChangeSetHolder block, IntSet recursionGuard, @Nullable String affectedPath) {
+    if (block == null && myCurrentChangeSet != null) return new ChangeSetHolder(-1, myCurrentChangeSet);
+    return myStorage.readPrevious(block == null ? -1 : block.id, recursionGuard, affectedPath);
+  }
+
   public void accept(ChangeVisitor v) {
     try {
-      for (ChangeSet change : iterChanges()) {
-        change.accept(v);
+      // not iterChanges(): the path of interest of the visitor may change after each visited change set
+      IntSet recursionGuard = IntSets.newHashSet(1000);
+      ChangeSetHolder block = null;
+      while ((block = readPrevious(block, recursionGuard, v.getPathOfInterest())) != null) {
+        block.changeSet.accept(v);
       }
     }
     catch (ChangeVisitor.StopVisitingException e) {
@@ -27,8 +27,11 @@ public interface ChangeListStorage {
 
   long nextId();
 
+  /**
+   * @param affectedPath if not null, change sets which surely don't affect the path are skipped
+   */
   @Nullable
-  ChangeSetHolder readPrevious(int id, IntSet recursionGuard);
+  ChangeSetHolder readPrevious(int id, IntSet recursionGuard, @Nullable String affectedPath);
 
   void purge(long period, int intervalBetweenActivities, Consumer<ChangeSet> processor);
 
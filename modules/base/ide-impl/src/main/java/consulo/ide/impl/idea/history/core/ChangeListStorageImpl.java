@@ -18,6 +18,7 @@ package consulo.ide.impl.idea.history.core;
 
 import consulo.container.boot.ContainerPathManager;
 import consulo.ide.impl.idea.history.core.changes.ChangeSet;
+import consulo.ide.impl.idea.history.core.changes.ChangedPathsFilter;
 import consulo.ide.impl.idea.history.utils.LocalHistoryLog;
 import consulo.ide.impl.idea.ide.BrowserUtil;
 import consulo.ide.impl.idea.ide.actions.ShowFilePathAction;
@@ -43,7 +44,7 @@ import java.text.MessageFormat;
 import java.util.function.Consumer;
 
 public class ChangeListStorageImpl implements ChangeListStorage {
-  private static final int VERSION = 5;
+  private static final int VERSION = 6;
   private static final String STORAGE_FILE = "changes";
 
   private final File myStorageDir;
@@ -158,12 +159,18 @@ public class ChangeListStorageImpl implements ChangeListStorage {
   }
 
   @Nullable
-  public synchronized ChangeSetHolder readPrevious(int id, IntSet recursionGuard) {
+  public synchronized ChangeSetHolder readPrevious(int id, IntSet recursionGuard, @Nullable String affectedPath) {
     if (isCompletelyBroken) return null;
 
     int prevId = 0;
     try {
       prevId = id == -1 ? myStorage.getLastRecord() : doReadPrevSafely(id, recursionGuard);
+      if (affectedPath != null) {
+        // only the filter of a skipped change set is read, not the change set itself
+        while (prevId != 0 && !readPathsFilter(prevId).mayAffect(affectedPath)) {
+          prevId = doReadPrevSafely(prevId, recursionGuard);
+        }
+      }
       if (prevId == 0) return null;
 
       return doReadBlock(prevId);
@@ -207,10 +214,18 @@ public class ChangeListStorageImpl implements ChangeListStorage {
     }
   }
 
+  @Nonnull
+  private ChangedPathsFilter readPathsFilter(int id) throws IOException {
+    try (DataInputStream in = myStorage.readStreamHead(id, ChangedPathsFilter.SIZE_IN_BYTES)) {
+      return ChangedPathsFilter.read(in);
+    }
+  }
+
   @Nonnull
   private ChangeSetHolder doReadBlock(int id) throws IOException {
     DataInputStream in = myStorage.readStream(id);
     try {
+      ChangedPathsFilter.read(in);
       return new ChangeSetHolder(id, new ChangeSet(in));
     }
     finally {
@@ -224,6 +239,7 @@ public class ChangeListStorageImpl implements ChangeListStorage {
     try {
       AbstractStorage.StorageDataOutput out = myStorage.writeStream(myStorage.createNextRecord(), true);
       try {
+        ChangedPathsFilter.create(changeSet).write(out);
         changeSet.write(out);
       }
       finally {
@@ -16,6 +16,7 @@
 package consulo.ide.impl.idea.history.core;
 
 import consulo.ide.impl.idea.history.core.changes.ChangeSet;
+import consulo.ide.impl.idea.history.core.changes.ChangedPathsFilter;
 import java.util.function.Consumer;
 import consulo.util.collection.primitive.ints.IntSet;
 
@@ -38,10 +39,12 @@ public class InMemoryChangeListStorage implements ChangeListStorage {
 
   @Override
   @Nullable
-  public ChangeSetHolder readPrevious(int id, IntSet recursionGuard) {
-    if (mySets.isEmpty()) return null;
-    if (id == -1) return new ChangeSetHolder(mySets.size() - 1, mySets.get(mySets.size() - 1));
-    return id == 0 ? null : new ChangeSetHolder(id -1, mySets.get(id - 1));
+  public ChangeSetHolder readPrevious(int id, IntSet recursionGuard, @Nullable String affectedPath) {
+    int prevId = id == -1 ? mySets.size() - 1 : id - 1;
+    while (prevId >= 0 && affectedPath != null && !ChangedPathsFilter.create(mySets.get(prevId)).mayAffect(affectedPath)) {
+      prevId--;
+    }
+    return prevId < 0 ? null : new ChangeSetHolder(prevId, mySets.get(prevId));
   }
 
   @Override
@@ -18,9 +18,11 @@ package consulo.ide.impl.idea.history.core;
 import consulo.util.lang.Clock;
 import consulo.index.io.PagePool;
 import consulo.ide.impl.idea.util.io.storage.AbstractRecordsTable;
+import consulo.ide.impl.idea.util.io.UnsyncByteArrayInputStream;
 import consulo.ide.impl.idea.util.io.storage.AbstractStorage;
 import consulo.util.lang.Pair;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 
@@ -92,6 +94,13 @@ public class LocalHistoryStorage extends AbstractStorage {
     }
   }
 
+  /**
+   * Reads at most {@code length} first bytes of the record.
+   */
+  public DataInputStream readStreamHead(int record, int length) throws IOException {
+    return new DataInputStream(new UnsyncByteArrayInputStream(readBytes(record, length)));
+  }
+
   public Pair<Long, Integer> getOffsetAndSize(int id) {
     synchronized (myLock) {
       return Pair.create(myRecordsTable.getAddress(id), myRecordsTable.getSize(id));
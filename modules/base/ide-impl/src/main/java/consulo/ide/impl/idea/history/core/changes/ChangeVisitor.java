@@ -16,7 +16,20 @@
 
 package consulo.ide.impl.idea.history.core.changes;
 
+import jakarta.annotation.Nullable;
+
 public abstract class ChangeVisitor {
+  /**
+   * Asked before each change set is read.
+   *
+   * @return the path the visitor is interested in at the moment, change sets which don't affect it may be not visited,
+   * or null if all change sets have to be visited
+   */
+  @Nullable
+  public String getPathOfInterest() {
+    return null;
+  }
+
   public void finished() {
   }
 
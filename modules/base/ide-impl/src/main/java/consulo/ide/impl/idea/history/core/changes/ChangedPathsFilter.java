@@ -0,0 +1,154 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.ide.impl.idea.history.core.changes;
+
+import consulo.ide.impl.idea.history.core.Paths;
+
+import jakarta.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bloom filter of the paths affected by structural changes of a change set. It's stored before the change set, so a change set which
+ * surely doesn't affect the path of interest of a visitor (see {@link ChangeVisitor#getPathOfInterest()}) is skipped without reading it.
+ * <p>
+ * A change affects a path if one of them is a parent of the other (see {@link Paths#isParentOrChild}), so the filter contains the
+ * affected paths themselves and all their parents as two separate sets. Paths are case folded, which can only give false positives.
+ * A change set with labels, or with too many affected paths for the filter to be useful, affects any path.
+ */
+public class ChangedPathsFilter {
+  public static final int SIZE_IN_BYTES = 1 + 8 * 8;
+
+  private static final int BITS = 8 * 64;
+  private static final int MAX_AFFECTED_PATHS = 128;
+
+  private static final int AFFECTED_PATH = 0;
+  private static final int PARENT_OF_AFFECTED_PATH = 1;
+
+  // null if any path is affected
+  private final long[] myBits;
+
+  private ChangedPathsFilter(long[] bits) {
+    myBits = bits;
+  }
+
+  @Nonnull
+  public static ChangedPathsFilter create(@Nonnull ChangeSet changeSet) {
+    long[] bits = new long[BITS / 64];
+    int count = 0;
+    for (Change change : changeSet.getChanges()) {
+      if (!(change instanceof StructuralChange)) return new ChangedPathsFilter(null);
+
+      for (String path : ((StructuralChange)change).getAffectedPaths()) {
+        if (++count > MAX_AFFECTED_PATHS) return new ChangedPathsFilter(null);
+
+        add(bits, AFFECTED_PATH, hash(path));
+        forEachParentHash(path, hash -> add(bits, PARENT_OF_AFFECTED_PATH, hash));
+      }
+    }
+    return new ChangedPathsFilter(bits);
+  }
+
+  @Nonnull
+  public static ChangedPathsFilter read(@Nonnull DataInput in) throws IOException {
+    boolean anyPath = in.readBoolean();
+    long[] bits = new long[BITS / 64];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = in.readLong();
+    }
+    return new ChangedPathsFilter(anyPath ? null : bits);
+  }
+
+  public void write(@Nonnull DataOutput out) throws IOException {
+    out.writeBoolean(myBits == null);
+    for (int i = 0; i < BITS / 64; i++) {
+      out.writeLong(myBits == null ? 0 : myBits[i]);
+    }
+  }
+
+  /**
+   * @return false if no change of the change set affects the path
+   */
+  public boolean mayAffect(@Nonnull String path) {
+    if (myBits == null) return true;
+
+    // the path is a parent of an affected path, or an affected path is a parent of the path
+    if (contains(PARENT_OF_AFFECTED_PATH, hash(path))) return true;
+
+    boolean[] result = {false};
+    forEachParentHash(path, hash -> result[0] |= contains(AFFECTED_PATH, hash));
+    return result[0];
+  }
+
+  private interface HashConsumer {
+    void consume(int hash);
+  }
+
+  /**
+   * Hashes of all paths which are parents of the given one by {@link Paths#isParent}: the path itself, its prefixes up to a separator
+   * with and without the separator, and the empty path.
+   */
+  private static void forEachParentHash(@Nonnull String path, @Nonnull HashConsumer consumer) {
+    int hash = 0;
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == Paths.DELIM) consumer.consume(hash);
+      hash = 31 * hash + fold(c);
+      if (c == Paths.DELIM) consumer.consume(hash);
+    }
+    consumer.consume(hash);
+    if (!path.isEmpty()) consumer.consume(0);
+  }
+
+  private static int hash(@Nonnull String path) {
+    int hash = 0;
+    for (int i = 0; i < path.length(); i++) {
+      hash = 31 * hash + fold(path.charAt(i));
+    }
+    return hash;
+  }
+
+  // same folding as String.equalsIgnoreCase
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  private static void add(@Nonnull long[] bits, int set, int hash) {
+    long mixed = mix(hash, set);
+    setBit(bits, (int)(mixed & (BITS - 1)));
+    setBit(bits, (int)((mixed >>> 32) & (BITS - 1)));
+  }
+
+  private boolean contains(int set, int hash) {
+    long mixed = mix(hash, set);
+    return getBit(myBits, (int)(mixed & (BITS - 1))) && getBit(myBits, (int)((mixed >>> 32) & (BITS - 1)));
+  }
+
+  private static long mix(int hash, int set) {
+    long h = (hash & 0xFFFFFFFFL) | ((long)set << 32);
+    h *= 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 29);
+  }
+
+  private static void setBit(@Nonnull long[] bits, int bit) {
+    bits[bit >>> 6] |= 1L << bit;
+  }
+
+  private static boolean getBit(@Nonnull long[] bits, int bit) {
+    return (bits[bit >>> 6] & (1L << bit)) != 0;
+  }
+}
@@ -18,6 +18,7 @@ import consulo.disposer.Disposable;
 import consulo.disposer.Disposer;
 import consulo.ide.impl.idea.ide.caches.FileContent;
 import consulo.ide.impl.idea.util.ConcurrencyUtil;
+import consulo.ide.impl.idea.util.indexing.IndexingStageStatistics;
 import consulo.logging.Logger;
 import consulo.project.Project;
 import consulo.util.dataholder.Key;
@@ -222,7 +223,9 @@ public class CacheUpdateRunner {
         try {
           mySuspendableIndicator.checkCanceled();
 
+          long waitingStarted = System.nanoTime();
           final FileContent fileContent = myQueue.take(myInnerIndicator);
+          IndexingStageStatistics.addContentWaiting(System.nanoTime() - waitingStarted);
           if (fileContent == null) {
             myFinished.set(true);
             return;
@@ -2,6 +2,7 @@
 package consulo.ide.impl.idea.openapi.project;
 
 import consulo.ide.impl.idea.ide.caches.FileContent;
+import consulo.ide.impl.idea.util.indexing.IndexingStageStatistics;
 import consulo.logging.Logger;
 import consulo.component.ProcessCanceledException;
 import consulo.application.progress.ProgressIndicator;
@@ -138,9 +139,11 @@ public class FileContentQueue {
     try {
       myLoadedBytesInQueue.addAndGet(contentLength);
 
+      long started = System.nanoTime();
       // Reads the content bytes and caches them.
       // hint at the current project to avoid expensive read action in ProjectLocatorImpl
       ProjectLocator.computeWithPreferredProject(content.getVirtualFile(), myProject, () -> content.getBytes());
+      IndexingStageStatistics.addContentLoading(contentLength, System.nanoTime() - started);
 
       return true;
     }
@@ -46,6 +46,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -1205,6 +1206,7 @@ public class FSRecords {
   }
 
   static void setFlags(int id, int flags, final boolean markAsChange) {
+    if (!markAsChange && getFlags(id) == flags) return;
     writeAndHandleErrors(() -> {
       if (markAsChange) {
         incModCount(id);
@@ -1218,6 +1220,8 @@ public class FSRecords {
   }
 
   static void setLength(int id, long len) {
+    // refresh mostly confirms what is already stored, do not make readers wait for the write lock in that case
+    if (getLength(id) == len) return;
     writeAndHandleErrors(() -> {
       ResizeableMappedFile records = getRecords();
       int lengthOffset = getOffset(id, LENGTH_OFFSET);
@@ -1233,6 +1237,7 @@ public class FSRecords {
   }
 
   static void setTimestamp(int id, long value) {
+    if (getTimestamp(id) == value) return;
     writeAndHandleErrors(() -> {
       int timeStampOffset = getOffset(id, TIMESTAMP_OFFSET);
       ResizeableMappedFile records = getRecords();
@@ -1494,18 +1499,17 @@ public class FSRecords {
     return new ContentOutputStream(fileId, readOnly);
   }
 
-  private static final MessageDigest myDigest = ContentHashesUtil.createHashDigest();
-
   static void writeContent(int fileId, ByteArraySequence bytes, boolean readOnly) {
     //noinspection IOResourceOpenedButNotSafelyClosed
     new ContentOutputStream(fileId, readOnly).writeBytes(bytes);
   }
 
   static int storeUnlinkedContent(byte[] bytes) {
+    byte[] contentHash = WE_HAVE_CONTENT_HASHES ? calculateContentHash(bytes, 0, bytes.length) : null;
     return writeAndHandleErrors(() -> {
       int recordId;
       if (WE_HAVE_CONTENT_HASHES) {
-        recordId = findOrCreateContentRecord(bytes, 0, bytes.length);
+        recordId = findOrCreateContentRecord(contentHash, bytes.length);
         if (recordId > 0) return recordId;
         recordId = -recordId;
       }
@@ -1552,6 +1556,8 @@ public class FSRecords {
     }
 
     private void writeBytes(ByteArraySequence bytes) {
+      // hashing is the most expensive part of storing content and needs no lock
+      byte[] contentHash = WE_HAVE_CONTENT_HASHES ? calculateContentHash(bytes.getBytes(), bytes.getOffset(), bytes.getLength()) : null;
       writeAndHandleErrors(() -> {
         RefCountingStorage contentStorage = getContentStorage();
         checkFileIsValid(myFileId);
@@ -1559,7 +1565,7 @@ public class FSRecords {
         int page;
         final boolean fixedSize;
         if (WE_HAVE_CONTENT_HASHES) {
-          page = findOrCreateContentRecord(bytes.getBytes(), bytes.getOffset(), bytes.getLength());
+          page = findOrCreateContentRecord(contentHash, bytes.getLength());
 
           if (page < 0 || getContentId(myFileId) != page) {
             incModCount(myFileId);
@@ -1601,27 +1607,33 @@ public class FSRecords {
   private static final boolean DUMP_STATISTICS = WE_HAVE_CONTENT_HASHES;  // TODO: remove once not needed
   private static long totalContents;
   private static long totalReuses;
-  private static long time;
+  private static final LongAdder ourHashingTime = new LongAdder();
   private static int contents;
   private static int reuses;
 
-  private static int findOrCreateContentRecord(byte[] bytes, int offset, int length) throws IOException {
-    assert WE_HAVE_CONTENT_HASHES;
-
+  @Nonnull
+  private static byte[] calculateContentHash(byte[] bytes, int offset, int length) {
     long started = DUMP_STATISTICS ? System.nanoTime() : 0;
-    myDigest.reset();
-    myDigest.update(String.valueOf(length - offset).getBytes(Charset.defaultCharset()));
-    myDigest.update("\0".getBytes(Charset.defaultCharset()));
-    myDigest.update(bytes, offset, length);
-    byte[] digest = myDigest.digest();
-    long done = DUMP_STATISTICS ? System.nanoTime() - started : 0;
-    time += done;
+    MessageDigest digest = ContentHashesUtil.HASHER_CACHE.getValue();
+    digest.update(String.valueOf(length - offset).getBytes(Charset.defaultCharset()));
+    digest.update("\0".getBytes(Charset.defaultCharset()));
+    digest.update(bytes, offset, length);
+    byte[] hash = digest.digest();
+    if (DUMP_STATISTICS) {
+      ourHashingTime.add(System.nanoTime() - started);
+    }
+    return hash;
+  }
+
+  // must be called under w lock, the hash is calculated by calculateContentHash beforehand
+  private static int findOrCreateContentRecord(@Nonnull byte[] digest, int length) throws IOException {
+    assert WE_HAVE_CONTENT_HASHES;
 
     ++contents;
     totalContents += length;
 
     if (DUMP_STATISTICS && (contents & 0x3FFF) == 0) {
-      LOG.info("Contents:" + contents + " of " + totalContents + ", reuses:" + reuses + " of " + totalReuses + " for " + time / 1000000);
+      LOG.info("Contents:" + contents + " of " + totalContents + ", reuses:" + reuses + " of " + totalReuses + " for " + ourHashingTime.sum() / 1000000);
     }
     PersistentBTreeEnumerator<byte[]> hashesEnumerator = getContentHashesEnumerator();
     final int largestId = hashesEnumerator.getLargestId();
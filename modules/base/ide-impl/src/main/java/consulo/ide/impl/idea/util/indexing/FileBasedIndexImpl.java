@@ -141,6 +141,8 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
   private static final ThreadLocal<VirtualFile> ourFileToBeIndexed = new ThreadLocal<>();
   static final Logger LOG = Logger.getInstance(FileBasedIndexImpl.class);
   private static final String CORRUPTION_MARKER_NAME = "corruption.marker";
+  // while indexing is in progress, storages are made durable at least this often, see checkpointAllIndices()
+  private static final int CHECKPOINT_INTERVAL_MS = SystemProperties.getIntProperty("idea.indices.checkpoint.interval.ms", 30000);
   private static final ThreadLocal<Stack<DumbModeAccessType>> ourDumbModeAccessTypeStack = ThreadLocal.withInitial(() -> new Stack<>());
 
   private final List<ID<?, ?>> myIndicesForDirectories = new SmartList<>();
@@ -640,21 +642,61 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
       if (HeavyProcessLatch.INSTANCE.isRunning() || modCount != myLocalModCount.get()) {
         return; // do not interfere with 'main' jobs
       }
-      try {
-        final UpdatableIndex<?, ?, FileContent> index = state.getIndex(indexId);
-        if (index != null) {
-          index.flush();
-        }
-      }
-      catch (Throwable e) {
-        requestRebuild(indexId, e);
-      }
+      flushIndex(state, indexId);
     }
 
     ContentHashesSupport.flushContentHashes();
     SharedIndicesData.flushData();
   }
 
+  /**
+   * Unlike {@link #flushAllIndices(long)}, which waits for indexing to calm down, flushes everything while indexing is running.
+   * Commits are paused for that time, so each storage is either clean and consistent with indexed stamps of files, or dirty.
+   * When the process is killed, only dirty storages (written after the last checkpoint) are rebuilt on the next start,
+   * files keep indexed stamps of the other indices and are not indexed by them again.
+   * <p>
+   * Commits take the checkpoint lock while they may hold other indexing locks, so the checkpoint never waits for it:
+   * a queued writer would block new readers and could close a cycle with them. The round is skipped if a commit is running.
+   *
+   * @return false if the checkpoint was skipped
+   */
+  private boolean checkpointAllIndices() {
+    long started = System.currentTimeMillis();
+    Lock lock = myCheckpointLock.writeLock();
+    if (!lock.tryLock()) {
+      LOG.debug("Indices checkpoint skipped, commit is in progress");
+      return false;
+    }
+    try {
+      SerializationManagerEx.getInstanceEx().flushNameStorage();
+      IndexingStamp.flushCaches();
+      IndexConfiguration state = getState();
+      for (ID<?, ?> indexId : new ArrayList<>(state.getIndexIDs())) {
+        flushIndex(state, indexId);
+      }
+
+      ContentHashesSupport.flushContentHashes();
+      SharedIndicesData.flushData();
+    }
+    finally {
+      lock.unlock();
+    }
+    LOG.debug("Indices checkpoint took " + (System.currentTimeMillis() - started) + " ms");
+    return true;
+  }
+
+  private void flushIndex(@Nonnull IndexConfiguration state, @Nonnull ID<?, ?> indexId) {
+    try {
+      final UpdatableIndex<?, ?, FileContent> index = state.getIndex(indexId);
+      if (index != null) {
+        index.flush();
+      }
+    }
+    catch (Throwable e) {
+      requestRebuild(indexId, e);
+    }
+  }
+
   @Override
   @Nonnull
   public <K> Collection<K> getAllKeys(@Nonnull final ID<K, ?> indexId, @Nonnull Project project) {
@@ -1400,6 +1442,8 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
   }
 
   private final StorageGuard myStorageLock = new StorageGuard();
+  // commits hold the read lock, checkpointAllIndices() holds the write one, but only takes it with tryLock()
+  private final ReadWriteLock myCheckpointLock = new ReentrantReadWriteLock();
   private volatile boolean myPreviousDataBufferingState;
   private final Object myBufferingStateUpdateLock = new Object();
 
@@ -1409,8 +1453,10 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
       cleanupAction.run();
       return true;
     };
-    runUpdate(false, updateComputable);
-    runUpdate(true, updateComputable);
+    ConcurrencyUtil.withLock(myCheckpointLock.readLock(), () -> {
+      runUpdate(false, updateComputable);
+      runUpdate(true, updateComputable);
+    });
   }
 
   private boolean runUpdate(boolean transientInMemoryIndices, Computable<Boolean> update) {
@@ -1596,6 +1642,8 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
       FileContentImpl fc = null;
       int inputId = Math.abs(getFileId(file));
       Set<ID<?, ?>> currentIndexedStates = new HashSet<>(IndexingStamp.getNontrivialFileIndexedStates(inputId));
+      // all indices map the content before any of them touches storages, then updates are committed in one storage session
+      List<PreparedIndexUpdate> updates = new ArrayList<>();
 
       final List<ID<?, ?>> affectedIndexCandidates = getAffectedIndexCandidates(file);
       //noinspection ForLoopReplaceableByForEach
@@ -1624,7 +1672,11 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
 
           try {
             ProgressManager.checkCanceled();
-            if (!updateSingleIndex(indexId, file, inputId, fc)) {
+            PreparedIndexUpdate update = prepareIndexUpdate(indexId, file, inputId, fc);
+            if (update != null) {
+              updates.add(update);
+            }
+            else {
               setIndexedStatus.set(Boolean.FALSE);
             }
             currentIndexedStates.remove(indexId);
@@ -1643,11 +1695,19 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
       for (ID<?, ?> indexId : currentIndexedStates) {
         if (!getIndex(indexId).isIndexedStateForFile(inputId, file)) {
           ProgressManager.checkCanceled();
-          if (!updateSingleIndex(indexId, file, inputId, null)) {
+          PreparedIndexUpdate update = prepareIndexUpdate(indexId, file, inputId, null);
+          if (update != null) {
+            updates.add(update);
+          }
+          else {
             setIndexedStatus.set(Boolean.FALSE);
           }
         }
       }
+
+      if (!commitIndexUpdates(updates)) {
+        setIndexedStatus.set(Boolean.FALSE);
+      }
     });
     return setIndexedStatus.get();
   }
@@ -1687,37 +1747,111 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
   }
 
   private boolean updateSingleIndex(@Nonnull ID<?, ?> indexId, @Nullable VirtualFile file, int inputId, @Nullable FileContent currentFC) {
+    PreparedIndexUpdate update = prepareIndexUpdate(indexId, file, inputId, currentFC);
+    return update != null && commitIndexUpdates(Collections.singletonList(update));
+  }
+
+  private static final class PreparedIndexUpdate {
+    final ID<?, ?> myIndexId;
+    @Nullable
+    final VirtualFile myFile;
+    final int myInputId;
+    final Computable<Boolean> myUpdate;
+
+    PreparedIndexUpdate(@Nonnull ID<?, ?> indexId, @Nullable VirtualFile file, int inputId, @Nonnull Computable<Boolean> update) {
+      myIndexId = indexId;
+      myFile = file;
+      myInputId = inputId;
+      myUpdate = update;
+    }
+  }
+
+  /**
+   * Maps content by the index without touching its storages.
+   *
+   * @return update to pass to {@link #commitIndexUpdates(List)} or null if the index is going to be rebuilt
+   */
+  @Nullable
+  private PreparedIndexUpdate prepareIndexUpdate(@Nonnull ID<?, ?> indexId, @Nullable VirtualFile file, int inputId, @Nullable FileContent currentFC) {
     if (!myExtensionsRelatedDataWasLoaded) reportUnexpectedAsyncInitState();
     if (!RebuildStatus.isOk(indexId) && !myIsUnitTestMode) {
-      return false; // the index is scheduled for rebuild, no need to update
+      return null; // the index is scheduled for rebuild, no need to update
     }
     myLocalModCount.incrementAndGet();
 
     final UpdatableIndex<?, ?, FileContent> index = getIndex(indexId);
     assert index != null;
 
+    long started = System.nanoTime();
     markFileIndexed(file);
-    boolean updateCalculated = false;
     try {
       // important: no hard referencing currentFC to avoid OOME, the methods introduced for this purpose!
       // important: update is called out of try since possible indexer extension is HANDLED as single file fail / restart indexing policy
-      final Computable<Boolean> update = index.update(inputId, currentFC);
-      updateCalculated = true;
-
-      runIndexUpdate(indexId, update, file, inputId);
+      return new PreparedIndexUpdate(indexId, file, inputId, index.update(inputId, currentFC));
     }
     catch (RuntimeException exception) {
-      Throwable causeToRebuildIndex = getCauseToRebuildIndex(exception);
-      if (causeToRebuildIndex != null && (updateCalculated || causeToRebuildIndex instanceof IOException)) {
+      if (getCauseToRebuildIndex(exception) instanceof IOException) {
         requestRebuild(indexId, exception);
-        return false;
+        return null;
       }
       throw exception;
     }
     finally {
       unmarkBeingIndexed();
+      IndexingStageStatistics.addMapping(indexId, System.nanoTime() - started);
     }
-    return true;
+  }
+
+  /**
+   * Writes prepared updates to index storages within single storage session and marks inputs as indexed by successfully updated indices
+   *
+   * @return false if some index failed and is going to be rebuilt
+   */
+  private boolean commitIndexUpdates(@Nonnull List<PreparedIndexUpdate> updates) {
+    if (updates.isEmpty()) return true;
+
+    boolean[] committed = new boolean[updates.size()];
+    boolean[] failed = new boolean[1];
+    ConcurrencyUtil.withLock(myCheckpointLock.readLock(), () -> {
+      try {
+        runUpdate(false, () -> {
+          for (int i = 0; i < updates.size(); i++) {
+            PreparedIndexUpdate update = updates.get(i);
+            long started = System.nanoTime();
+            markFileIndexed(update.myFile);
+            try {
+              committed[i] = update.myUpdate.compute();
+            }
+            catch (RuntimeException exception) {
+              if (getCauseToRebuildIndex(exception) == null) throw exception;
+              requestRebuild(update.myIndexId, exception);
+              failed[0] = true;
+            }
+            finally {
+              unmarkBeingIndexed();
+              IndexingStageStatistics.addCommit(update.myIndexId, System.nanoTime() - started);
+            }
+          }
+          return true;
+        });
+      }
+      finally {
+        ConcurrencyUtil.withLock(myReadLock, () -> {
+          for (int i = 0; i < updates.size(); i++) {
+            if (!committed[i]) continue;
+            PreparedIndexUpdate update = updates.get(i);
+            UpdatableIndex<?, ?, FileContent> index = getIndex(update.myIndexId);
+            if (update.myFile != null) {
+              index.setIndexedStateForFile(update.myInputId, update.myFile);
+            }
+            else {
+              index.resetIndexedStateForFile(update.myInputId);
+            }
+          }
+        });
+      }
+    });
+    return !failed[0];
   }
 
   private static void markFileIndexed(@Nullable VirtualFile file) {
@@ -1778,20 +1912,6 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
     myWriteLock = lock.writeLock();
   }
 
-  private void runIndexUpdate(@Nonnull ID<?, ?> indexId, @Nonnull Computable<Boolean> update, @Nullable VirtualFile file, int inputId) {
-    if (runUpdate(false, update)) {
-      ConcurrencyUtil.withLock(myReadLock, () -> {
-        UpdatableIndex<?, ?, FileContent> index = getIndex(indexId);
-        if (file != null) {
-          index.setIndexedStateForFile(inputId, file);
-        }
-        else {
-          index.resetIndexedStateForFile(inputId);
-        }
-      });
-    }
-  }
-
   private boolean needsFileContentLoading(@Nonnull ID<?, ?> indexId) {
     return !myNotRequiringContentIndices.contains(indexId);
   }
@@ -2331,14 +2451,23 @@ public final class FileBasedIndexImpl extends FileBasedIndex {
         myFlushingFuture = FlushingDaemon.everyFiveSeconds(new Runnable() {
           private final SerializationManagerEx mySerializationManager = SerializationManagerEx.getInstanceEx();
           private int lastModCount;
+          private long lastFlush = System.currentTimeMillis();
 
           @Override
           public void run() {
             mySerializationManager.flushNameStorage();
 
             int currentModCount = myLocalModCount.get();
+            long now = System.currentTimeMillis();
             if (lastModCount == currentModCount) {
               flushAllIndices(lastModCount);
+              lastFlush = now;
+            }
+            else if (now - lastFlush >= CHECKPOINT_INTERVAL_MS) {
+              // a skipped checkpoint is retried on the next run
+              if (checkpointAllIndices()) {
+                lastFlush = now;
+              }
             }
             lastModCount = currentModCount;
           }
@@ -0,0 +1,102 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.ide.impl.idea.util.indexing;
+
+import consulo.index.io.ID;
+
+import jakarta.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Time spent by indexing in its stages: content loading, waiting of indexing threads for loaded content,
+ * mapping of content by indexers and commit of mapped data to index storages.
+ * <p>
+ * Counters are global and cumulative, {@link #reset()} and {@link #dump(Consumer, int)} are called around an indexing session by
+ * {@link UnindexedFilesUpdater}. Concurrent indexing in several projects is counted together.
+ */
+public final class IndexingStageStatistics {
+  private static final class IndexTimes {
+    final LongAdder myMappingNanos = new LongAdder();
+    final LongAdder myCommitNanos = new LongAdder();
+    final LongAdder myCommits = new LongAdder();
+
+    long total() {
+      return myMappingNanos.sum() + myCommitNanos.sum();
+    }
+  }
+
+  private static final LongAdder ourLoadedFiles = new LongAdder();
+  private static final LongAdder ourLoadedBytes = new LongAdder();
+  private static final LongAdder ourLoadingNanos = new LongAdder();
+  private static final LongAdder ourContentWaitingNanos = new LongAdder();
+  private static final Map<ID<?, ?>, IndexTimes> ourIndexTimes = new ConcurrentHashMap<>();
+
+  private IndexingStageStatistics() {
+  }
+
+  public static void addContentLoading(long bytes, long nanos) {
+    ourLoadedFiles.increment();
+    ourLoadedBytes.add(bytes);
+    ourLoadingNanos.add(nanos);
+  }
+
+  public static void addContentWaiting(long nanos) {
+    ourContentWaitingNanos.add(nanos);
+  }
+
+  static void addMapping(@Nonnull ID<?, ?> indexId, long nanos) {
+    getTimes(indexId).myMappingNanos.add(nanos);
+  }
+
+  static void addCommit(@Nonnull ID<?, ?> indexId, long nanos) {
+    IndexTimes times = getTimes(indexId);
+    times.myCommitNanos.add(nanos);
+    times.myCommits.increment();
+  }
+
+  @Nonnull
+  private static IndexTimes getTimes(@Nonnull ID<?, ?> indexId) {
+    return ourIndexTimes.computeIfAbsent(indexId, id -> new IndexTimes());
+  }
+
+  public static void reset() {
+    ourLoadedFiles.reset();
+    ourLoadedBytes.reset();
+    ourLoadingNanos.reset();
+    ourContentWaitingNanos.reset();
+    ourIndexTimes.clear();
+  }
+
+  public static void dump(@Nonnull Consumer<String> logInfo, int limit) {
+    long loadingMs = toMillis(ourLoadingNanos.sum());
+    long loadedBytes = ourLoadedBytes.sum();
+    logInfo.accept("Content loading: " + ourLoadedFiles.sum() + " files, " + (loadedBytes >> 10) + " KB in " + loadingMs + " ms" +
+                   (loadingMs > 0 ? " (" + (loadedBytes >> 10) * 1000 / loadingMs + " KB/s)" : "") +
+                   ", indexing threads waited for content " + toMillis(ourContentWaitingNanos.sum()) + " ms");
+
+    long mappingNanos = 0;
+    long commitNanos = 0;
+    List<Map.Entry<ID<?, ?>, IndexTimes>> entries = new ArrayList<>(ourIndexTimes.entrySet());
+    for (Map.Entry<ID<?, ?>, IndexTimes> entry : entries) {
+      mappingNanos += entry.getValue().myMappingNanos.sum();
+      commitNanos += entry.getValue().myCommitNanos.sum();
+    }
+    logInfo.accept("Mapping: " + toMillis(mappingNanos) + " ms, storage commit: " + toMillis(commitNanos) + " ms (thread time)");
+
+    entries.sort((o1, o2) -> Long.compare(o2.getValue().total(), o1.getValue().total()));
+    for (Map.Entry<ID<?, ?>, IndexTimes> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+      IndexTimes times = entry.getValue();
+      logInfo.accept("  " + entry.getKey().getName() + ": mapping " + toMillis(times.myMappingNanos.sum()) + " ms, commit " +
+                     toMillis(times.myCommitNanos.sum()) + " ms for " + times.myCommits.sum() + " files");
+    }
+  }
+
+  private static long toMillis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package consulo.ide.impl.idea.util.indexing;
 
+import consulo.index.io.CompressedIdSet;
 import consulo.index.io.StorageException;
 import consulo.index.io.ValueContainer;
 import consulo.util.collection.primitive.ints.IntSet;
@@ -32,12 +33,15 @@ public class InvertedIndexUtil {
                                                                   @Nullable Predicate<? super K> keyChecker,
                                                                   @Nullable Predicate<? super V> valueChecker,
                                                                   @Nullable ValueContainer.IntPredicate idChecker) throws StorageException {
-    IntSet mainIntersection = null;
+    CompressedIdSet mainIntersection = null;
 
     for (K dataKey : dataKeys) {
       if (keyChecker != null && !keyChecker.test(dataKey)) continue;
 
-      final IntSet copy = IntSets.newHashSet();
+      // ids of all values of the key, intersected with ids of previous keys chunk by chunk afterwards
+      final CompressedIdSet keyIds = new CompressedIdSet();
+      // ids of previous keys filtered by value predicates, already a subset of the intersection
+      CompressedIdSet filtered = null;
       final ValueContainer<V> container = index.getData(dataKey);
 
       for (ValueContainer.ValueIterator<V> valueIt = container.getValueIterator(); valueIt.hasNext(); ) {
@@ -52,24 +56,40 @@ public class InvertedIndexUtil {
         if (mainIntersection == null || iterator.size() < mainIntersection.size() || (predicate = valueIt.getValueAssociationPredicate()) == null) {
           while (iterator.hasNext()) {
             final int id = iterator.next();
-            if (mainIntersection == null && (idChecker == null || idChecker.contains(id)) || mainIntersection != null && mainIntersection.contains(id)) {
-              copy.add(id);
+            if (mainIntersection != null || idChecker == null || idChecker.contains(id)) {
+              keyIds.add(id);
             }
           }
         }
         else {
-          mainIntersection.forEach(id -> {
-            if (predicate.contains(id)) copy.add(id);
-          });
+          if (filtered == null) filtered = new CompressedIdSet();
+          for (ValueContainer.IntIterator mainIt = mainIntersection.intIterator(); mainIt.hasNext(); ) {
+            final int id = mainIt.next();
+            if (predicate.contains(id)) filtered.add(id);
+          }
         }
       }
 
-      mainIntersection = copy;
+      if (mainIntersection != null) {
+        CompressedIdSet intersection = mainIntersection.and(keyIds);
+        if (filtered != null) intersection.or(filtered);
+        mainIntersection = intersection;
+      }
+      else {
+        mainIntersection = keyIds;
+      }
       if (mainIntersection.isEmpty()) {
         return IntSet.of();
       }
     }
 
-    return mainIntersection == null ? IntSet.of() : mainIntersection;
+    if (mainIntersection == null) {
+      return IntSet.of();
+    }
+    IntSet result = IntSets.newHashSet(mainIntersection.size());
+    for (ValueContainer.IntIterator iterator = mainIntersection.intIterator(); iterator.hasNext(); ) {
+      result.add(iterator.next());
+    }
+    return result;
   }
 }
@@ -88,9 +88,13 @@ public class UnindexedFilesUpdater extends DumbModeTask {
     indicator.setIndeterminate(false);
     indicator.setText(IdeBundle.message("progress.indexing.updating"));
 
+    IndexingStageStatistics.reset();
     indexFiles(indicator, files);
 
-    if (trackResponsiveness) snapshot.logResponsivenessSinceCreation("Unindexed files update");
+    if (trackResponsiveness) {
+      snapshot.logResponsivenessSinceCreation("Unindexed files update");
+      IndexingStageStatistics.dump(LOG::info, 10);
+    }
   }
 
   private void scheduleInitialVfsRefresh() {
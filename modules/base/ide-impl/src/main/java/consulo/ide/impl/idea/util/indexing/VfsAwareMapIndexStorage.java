@@ -153,7 +153,7 @@ public final class VfsAwareMapIndexStorage<Key, Value> extends MapIndexStorage<K
   public boolean processKeys(@Nonnull final Predicate<? super Key> processor, SearchScope scope, final IdFilter idFilter) throws StorageException {
     l.lock();
     try {
-      myCache.clear(); // this will ensure that all new keys are made into the map
+      clearCache(); // this will ensure that all new keys are made into the map
 
       if (myBuildKeyHashToVirtualFileMapping && idFilter != null) {
         TIntHashSet hashMaskSet = null;
@@ -253,8 +253,15 @@ public abstract class AbstractStorage implements Disposable, Forceable {
   }
 
   protected byte[] readBytes(int record) throws IOException {
+    return readBytes(record, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Reads at most {@code maxLength} first bytes of the record as they are stored, so it's not for storages which transform records.
+   */
+  protected byte[] readBytes(int record, int maxLength) throws IOException {
     synchronized (myLock) {
-      final int length = myRecordsTable.getSize(record);
+      final int length = Math.min(myRecordsTable.getSize(record), maxLength);
       if (length == 0) return ArrayUtil.EMPTY_BYTE_ARRAY;
       assert length > 0;
 
@@ -15,6 +15,8 @@
  */
 package consulo.ide.impl.idea.vcs.log.data.index;
 
+import consulo.ide.impl.idea.find.ngrams.RegExpTrigramQueryBuilder;
+import consulo.ide.impl.idea.find.ngrams.TrigramQuery;
 import consulo.ide.impl.idea.openapi.util.text.TrigramBuilder;
 import consulo.index.io.DataIndexer;
 import consulo.index.io.StorageException;
@@ -23,6 +25,7 @@ import consulo.versionControlSystem.log.VcsFullCommitDetails;
 import consulo.ide.impl.idea.vcs.log.impl.FatalErrorHandler;
 import consulo.disposer.Disposable;
 import consulo.util.collection.primitive.ints.IntSet;
+import consulo.util.collection.primitive.ints.IntSets;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
@@ -52,6 +55,51 @@ public class VcsLogMessagesTrigramIndex extends VcsLogFullDetailsIndex<Void> {
     return getCommitsWithAllKeys(trigramProcessor.map.keySet());
   }
 
+  /**
+   * Narrows the search by a regular expression to commits which messages satisfy the trigram query planned for the expression.
+   * The result is a superset of matching commits, messages should be checked by the pattern.
+   *
+   * @param caseInsensitive whether the pattern ignores case; the planner assumes unicode case folding,
+   *                        which matches a superset of what ascii-only case folding matches
+   * @return null if the expression does not restrict commits by the index
+   */
+  @Nullable
+  public IntSet getCommitsForRegexp(@Nonnull String regexp, boolean caseInsensitive) throws StorageException {
+    TrigramQuery query = RegExpTrigramQueryBuilder.build(regexp, caseInsensitive);
+    if (query.isAll()) return null;
+
+    return getCommits(query);
+  }
+
+  @Nonnull
+  private IntSet getCommits(@Nonnull TrigramQuery query) throws StorageException {
+    switch (query.getKind()) {
+      case TRIGRAMS:
+        return getCommitsWithAllKeys(query.getTrigrams());
+      case AND:
+        IntSet intersection = null;
+        for (TrigramQuery subQuery : query.getSubQueries()) {
+          IntSet commits = getCommits(subQuery);
+          if (intersection == null) {
+            intersection = commits;
+          }
+          else {
+            intersection.retainAll(commits);
+          }
+          if (intersection.isEmpty()) break;
+        }
+        return intersection;
+      case OR:
+        IntSet union = IntSets.newHashSet();
+        for (TrigramQuery subQuery : query.getSubQueries()) {
+          union.addAll(getCommits(subQuery));
+        }
+        return union;
+      default:
+        throw new IllegalArgumentException("Query " + query + " does not restrict commits");
+    }
+  }
+
   public static class TrigramMessageIndexer implements DataIndexer<Integer, Void, VcsFullCommitDetails> {
     @Nonnull
     @Override
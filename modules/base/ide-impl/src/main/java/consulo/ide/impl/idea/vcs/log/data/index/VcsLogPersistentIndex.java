@@ -59,7 +59,7 @@ import static consulo.ide.impl.idea.vcs.log.util.PersistentUtil.*;
 
 public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
   private static final Logger LOG = Logger.getInstance(VcsLogPersistentIndex.class);
-  private static final int VERSION = 0;
+  private static final int VERSION = 1;
 
   @Nonnull
   private final Project myProject;
@@ -150,6 +150,7 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
       int index = myHashMap.getCommitIndex(detail.getId(), detail.getRoot());
 
       myIndexStorage.messages.put(index, detail.getFullMessage());
+      myIndexStorage.timestamps.put(index, detail.getCommitTime());
       myIndexStorage.trigrams.update(index, detail);
       myIndexStorage.users.update(index, detail);
       myIndexStorage.paths.update(index, detail);
@@ -165,6 +166,7 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
     try {
       if (myIndexStorage != null) {
         myIndexStorage.messages.force();
+        myIndexStorage.timestamps.force();
         myIndexStorage.trigrams.flush();
         myIndexStorage.users.flush();
         myIndexStorage.paths.flush();
@@ -227,11 +229,11 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
         }
         return true;
       };
-      if (myIndexStorage.messages instanceof PersistentHashMap) {
-        ((PersistentHashMap<Integer, T>)myIndexStorage.messages).processKeysWithExistingMapping(processor);
+      if (map instanceof PersistentHashMap) {
+        ((PersistentHashMap<Integer, T>)map).processKeysWithExistingMapping(processor);
       }
       else {
-        myIndexStorage.messages.processKeys(processor);
+        map.processKeys(processor);
       }
     }
     catch (IOException e) {
@@ -241,6 +243,27 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
     return result;
   }
 
+  // checks only the given commits instead of iterating over all keys of the map
+  @Nonnull
+  private <T> IntSet filter(@Nonnull PersistentMap<Integer, T> map, @Nonnull IntSet candidates, @Nonnull Condition<T> condition) {
+    IntSet result = IntSets.newHashSet();
+    PrimitiveIterator.OfInt iterator = candidates.iterator();
+    while (iterator.hasNext()) {
+      int commit = iterator.nextInt();
+      try {
+        T value = map.get(commit);
+        if (value != null && condition.value(value)) {
+          result.add(commit);
+        }
+      }
+      catch (IOException e) {
+        myFatalErrorsConsumer.consume(this, e);
+        break;
+      }
+    }
+    return result;
+  }
+
   @Nonnull
   private IntSet filterUsers(@Nonnull Set<VcsUser> users) {
     if (myIndexStorage != null) {
@@ -275,33 +298,20 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
 
   @Nonnull
   public IntSet filterMessages(@Nonnull VcsLogTextFilter filter) {
+    return filterMessages(filter, null);
+  }
+
+  /**
+   * @param candidates commits matching other filters, null if there are no other filters
+   */
+  @Nonnull
+  private IntSet filterMessages(@Nonnull VcsLogTextFilter filter, @Nullable IntSet candidates) {
     if (myIndexStorage != null) {
       try {
-        if (!filter.isRegex()) {
-          IntSet commitsForSearch = myIndexStorage.trigrams.getCommitsForSubstring(filter.getText());
-          if (commitsForSearch != null) {
-            IntSet result = IntSets.newHashSet();
-
-            PrimitiveIterator.OfInt iterator = commitsForSearch.iterator();
-            while (iterator.hasNext()) {
-              int commit = iterator.nextInt();
-
-              try {
-                String value = myIndexStorage.messages.get(commit);
-                if (value != null) {
-                  if (VcsLogTextFilterImpl.matches(filter, value)) {
-                    result.add(commit);
-                  }
-                }
-              }
-              catch (IOException e) {
-                myFatalErrorsConsumer.consume(this, e);
-                break;
-              }
-            }
-            return result;
-          }
-        }
+        IntSet commitsForSearch = filter.isRegex()
+                                  ? myIndexStorage.trigrams.getCommitsForRegexp(filter.getText(), !filter.matchesCase())
+                                  : myIndexStorage.trigrams.getCommitsForSubstring(filter.getText());
+        candidates = TroveUtil.intersect(candidates, commitsForSearch);
       }
       catch (StorageException e) {
         myFatalErrorsConsumer.consume(this, e);
@@ -310,12 +320,32 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
         processRuntimeException(e);
       }
 
+      if (candidates != null) {
+        return filter(myIndexStorage.messages, candidates, message -> VcsLogTextFilterImpl.matches(filter, message));
+      }
       return filter(myIndexStorage.messages, message -> VcsLogTextFilterImpl.matches(filter, message));
     }
 
     return IntSet.of();
   }
 
+  /**
+   * @param candidates commits matching other filters, null if there are no other filters
+   */
+  @Nonnull
+  private IntSet filterByDate(@Nonnull VcsLogDateFilter filter, @Nullable IntSet candidates) {
+    if (myIndexStorage == null) return IntSet.of();
+
+    Date after = filter.getAfter();
+    Date before = filter.getBefore();
+    // same as VcsLogDateFilterImpl: commit time, bounds excluded
+    Condition<Long> condition = time -> (after == null || time > after.getTime()) && (before == null || time < before.getTime());
+    if (candidates != null) {
+      return filter(myIndexStorage.timestamps, candidates, condition);
+    }
+    return filter(myIndexStorage.timestamps, condition);
+  }
+
   private void processRuntimeException(@Nonnull RuntimeException e) {
     if (myIndexStorage != null) myIndexStorage.markCorrupted();
     if (e.getCause() instanceof IOException || e.getCause() instanceof StorageException) {
@@ -332,7 +362,8 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
     for (VcsLogDetailsFilter filter : filters) {
       if (filter instanceof VcsLogTextFilter ||
           filter instanceof VcsLogUserFilter ||
-          filter instanceof VcsLogStructureFilter) {
+          filter instanceof VcsLogStructureFilter ||
+          filter instanceof VcsLogDateFilter) {
         continue;
       }
       return false;
@@ -340,34 +371,43 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
     return true;
   }
 
+  // Filters which are answered by inverted indexes go first, messages and timestamps are then checked only for the commits
+  // matching them instead of iterating over all indexed commits.
   @Override
   @Nonnull
   public Set<Integer> filter(@Nonnull List<VcsLogDetailsFilter> detailsFilters) {
     VcsLogTextFilter textFilter = ContainerUtil.findInstance(detailsFilters, VcsLogTextFilter.class);
     VcsLogUserFilter userFilter = ContainerUtil.findInstance(detailsFilters, VcsLogUserFilter.class);
     VcsLogStructureFilter pathFilter = ContainerUtil.findInstance(detailsFilters, VcsLogStructureFilter.class);
+    VcsLogDateFilter dateFilter = ContainerUtil.findInstance(detailsFilters, VcsLogDateFilter.class);
 
-    IntSet filteredByMessage = null;
-    if (textFilter != null) {
-      filteredByMessage = filterMessages(textFilter);
-    }
-
-    IntSet filteredByUser = null;
+    IntSet candidates = null;
     if (userFilter != null) {
       Set<VcsUser> users = ContainerUtil.newHashSet();
       for (VirtualFile root : myRoots) {
         users.addAll(userFilter.getUsers(root));
       }
 
-      filteredByUser = filterUsers(users);
+      candidates = filterUsers(users);
+    }
+
+    if (pathFilter != null && !matchesNothing(candidates)) {
+      candidates = TroveUtil.intersect(candidates, filterPaths(pathFilter.getFiles()));
+    }
+
+    if (textFilter != null && !matchesNothing(candidates)) {
+      candidates = filterMessages(textFilter, candidates);
     }
 
-    IntSet filteredByPath = null;
-    if (pathFilter != null) {
-      filteredByPath = filterPaths(pathFilter.getFiles());
+    if (dateFilter != null && !matchesNothing(candidates)) {
+      candidates = filterByDate(dateFilter, candidates);
     }
 
-    return TroveUtil.intersect(filteredByMessage, filteredByPath, filteredByUser);
+    return TroveUtil.intersect(candidates);
+  }
+
+  private static boolean matchesNothing(@Nullable IntSet candidates) {
+    return candidates != null && candidates.isEmpty();
   }
 
   @Nullable
@@ -392,11 +432,14 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
     private static final String COMMITS = "commits";
     private static final String MESSAGES = "messages";
     private static final int MESSAGES_VERSION = 0;
+    private static final String TIMESTAMPS = "timestamps";
     @Nonnull
     private final PersistentSet<Integer> commits;
     @Nonnull
     private final PersistentMap<Integer, String> messages;
     @Nonnull
+    private final PersistentMap<Integer, Long> timestamps;
+    @Nonnull
     private final VcsLogMessagesTrigramIndex trigrams;
     @Nonnull
     private final VcsLogUserIndex users;
@@ -425,6 +468,10 @@ public class VcsLogPersistentIndex implements VcsLogIndex, Disposable {
                                            Page.PAGE_SIZE);
         Disposer.register(disposable, () -> catchAndWarn(messages::close));
 
+        File timestampsStorage = getStorageFile(INDEX, TIMESTAMPS, logId, version, true);
+        timestamps = new PersistentHashMap<>(timestampsStorage, new IntInlineKeyDescriptor(), new LongKeyDescriptor(), Page.PAGE_SIZE);
+        Disposer.register(disposable, () -> catchAndWarn(timestamps::close));
+
         trigrams = new VcsLogMessagesTrigramIndex(logId, fatalErrorHandler, disposable);
         users = new VcsLogUserIndex(logId, userRegistry, fatalErrorHandler, disposable);
         paths = new VcsLogPathsIndex(logId, roots, fatalErrorHandler, disposable);
@@ -41,7 +41,7 @@ public class BranchFilterController extends CascadeController {
 
   private void updateCollapsedGraph() {
     UnsignedBitSet initVisibility =
-      ReachableNodes.getReachableNodes(myPermanentGraphInfo.getLinearGraph(), myIdsOfVisibleBranches);
+      ReachableNodes.getReachableNodes(myPermanentGraphInfo, myIdsOfVisibleBranches);
     myCollapsedGraph = CollapsedGraph.newInstance(getDelegateController().getCompiledGraph(), initVisibility);
   }
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.ide.impl.idea.vcs.log.graph.impl.facade;
+
+import consulo.ide.impl.idea.vcs.log.graph.api.LiteLinearGraph;
+import consulo.ide.impl.idea.vcs.log.graph.utils.UnsignedBitSet;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Branches containing each node of a permanent graph, so that "which branches contain the commit" and "is the commit contained
+ * in the branch" are answered without walking the graph.
+ * <p>
+ * Every branch node gets a bit, and the label of a node is the set of bits of branch nodes it is reachable from. Nodes of a permanent
+ * graph are sorted topologically (children before parents), so labels are computed in one pass: the label of a node is the union of the
+ * labels of its up nodes plus its own bit. Labels are shared: a node with a single child has the label of the child, equal merged labels
+ * are interned, so the number of distinct labels is about the number of branch points and merges rather than the number of nodes.
+ * <p>
+ * The index is immutable and is built once for a permanent graph, a refresh of the log builds a new graph with its own index.
+ */
+public class BranchReachabilityIndex {
+  private static final BitSet EMPTY = new BitSet();
+
+  // branch node by bit, sorted
+  @Nonnull
+  private final int[] myBranchNodes;
+  // label by node
+  @Nonnull
+  private final BitSet[] myLabels;
+
+  private BranchReachabilityIndex(@Nonnull int[] branchNodes, @Nonnull BitSet[] labels) {
+    myBranchNodes = branchNodes;
+    myLabels = labels;
+  }
+
+  /**
+   * @return null if nodes of the graph are not sorted topologically
+   */
+  @Nullable
+  public static BranchReachabilityIndex build(@Nonnull LiteLinearGraph graph, @Nonnull Collection<Integer> branchNodeIds) {
+    int nodesCount = graph.nodesCount();
+    int[] branchNodes = branchNodeIds.stream().filter(node -> node >= 0 && node < nodesCount).mapToInt(Integer::intValue).sorted().toArray();
+
+    BitSet[] labels = new BitSet[nodesCount];
+    Map<BitSet, BitSet> internedLabels = new HashMap<>();
+    internedLabels.put(EMPTY, EMPTY);
+
+    int nextBranch = 0;
+    for (int node = 0; node < nodesCount; node++) {
+      BitSet label = null;
+      boolean isCopy = false;
+      for (int upNode : graph.getNodes(node, LiteLinearGraph.NodeFilter.UP)) {
+        if (upNode >= node) return null;
+
+        BitSet upLabel = labels[upNode];
+        if (label == null || label == upLabel) {
+          label = upLabel;
+        }
+        else {
+          if (!isCopy) {
+            label = (BitSet)label.clone();
+            isCopy = true;
+          }
+          label.or(upLabel);
+        }
+      }
+
+      if (nextBranch < branchNodes.length && branchNodes[nextBranch] == node) {
+        label = label == null ? new BitSet() : isCopy ? label : (BitSet)label.clone();
+        label.set(nextBranch++);
+        isCopy = true;
+      }
+
+      if (label == null) {
+        label = EMPTY;
+      }
+      else if (isCopy) {
+        BitSet interned = internedLabels.putIfAbsent(label, label);
+        if (interned != null) label = interned;
+      }
+      labels[node] = label;
+    }
+
+    return new BranchReachabilityIndex(branchNodes, labels);
+  }
+
+  @Nonnull
+  public Set<Integer> getContainingBranches(int nodeIndex) {
+    if (nodeIndex < 0 || nodeIndex >= myLabels.length) return Collections.emptySet();
+
+    BitSet label = myLabels[nodeIndex];
+    Set<Integer> result = new HashSet<>(label.cardinality());
+    for (int bit = label.nextSetBit(0); bit >= 0; bit = label.nextSetBit(bit + 1)) {
+      result.add(myBranchNodes[bit]);
+    }
+    return result;
+  }
+
+  /**
+   * @return bits of the given heads, or null if some of them is not a branch node, so reachability from them is not indexed
+   */
+  @Nullable
+  public BitSet getHeadsMask(@Nonnull Collection<Integer> headNodeIndexes) {
+    BitSet mask = new BitSet();
+    for (int head : headNodeIndexes) {
+      if (head < 0) continue;
+      int bit = Arrays.binarySearch(myBranchNodes, head);
+      if (bit < 0) return null;
+      mask.set(bit);
+    }
+    return mask;
+  }
+
+  public boolean isReachable(int nodeIndex, @Nonnull BitSet headsMask) {
+    return nodeIndex >= 0 && nodeIndex < myLabels.length && myLabels[nodeIndex].intersects(headsMask);
+  }
+
+  @Nonnull
+  public UnsignedBitSet getReachableNodes(@Nonnull BitSet headsMask) {
+    UnsignedBitSet result = new UnsignedBitSet();
+    for (int node = 0; node < myLabels.length; node++) {
+      if (myLabels[node].intersects(headsMask)) result.set(node, true);
+    }
+    return result;
+  }
+}
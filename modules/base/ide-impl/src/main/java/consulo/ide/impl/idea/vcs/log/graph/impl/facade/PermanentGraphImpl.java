@@ -33,6 +33,7 @@ import consulo.ide.impl.idea.vcs.log.graph.impl.facade.bek.BekSorter;
 import consulo.ide.impl.idea.vcs.log.graph.impl.permanent.*;
 import consulo.ide.impl.idea.vcs.log.graph.linearBek.LinearBekController;
 import consulo.ide.impl.idea.vcs.log.graph.utils.LinearGraphUtils;
+import consulo.ide.impl.idea.vcs.log.graph.utils.UnsignedBitSet;
 import consulo.util.collection.primitive.ints.IntSet;
 import consulo.util.collection.primitive.ints.IntSets;
 import consulo.util.lang.function.Condition;
@@ -40,10 +41,8 @@ import consulo.versionControlSystem.log.graph.GraphCommit;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Consumer;
 
 public class PermanentGraphImpl<CommitId> implements PermanentGraph<CommitId>, PermanentGraphInfo<CommitId> {
 
@@ -82,6 +81,8 @@ public class PermanentGraphImpl<CommitId> implements PermanentGraph<CommitId>, P
   private final ReachableNodes myReachableNodes;
   @Nonnull
   private final Supplier<BekIntMap> myBekIntMap;
+  @Nonnull
+  private final Supplier<BranchReachabilityIndex> myBranchReachabilityIndex;
 
   public PermanentGraphImpl(@Nonnull PermanentLinearGraphImpl permanentLinearGraph,
                             @Nonnull GraphLayoutImpl permanentGraphLayout,
@@ -95,6 +96,8 @@ public class PermanentGraphImpl<CommitId> implements PermanentGraph<CommitId>, P
     myBranchNodeIds = permanentCommitsInfo.convertToNodeIds(branchesCommitId);
     myReachableNodes = new ReachableNodes(LinearGraphUtils.asLiteLinearGraph(permanentLinearGraph));
     myBekIntMap = Suppliers.memoize(() -> BekSorter.createBekMap(myPermanentLinearGraph, myPermanentGraphLayout, myPermanentCommitsInfo.getTimestampGetter()));
+    myBranchReachabilityIndex =
+      Suppliers.memoize(() -> BranchReachabilityIndex.build(LinearGraphUtils.asLiteLinearGraph(myPermanentLinearGraph), myBranchNodeIds));
   }
 
   @Nonnull
@@ -163,6 +166,10 @@ public class PermanentGraphImpl<CommitId> implements PermanentGraph<CommitId>, P
   @Override
   public Set<CommitId> getContainingBranches(@Nonnull CommitId commit) {
     int commitIndex = myPermanentCommitsInfo.getNodeId(commit);
+    BranchReachabilityIndex index = myBranchReachabilityIndex.get();
+    if (index != null) {
+      return myPermanentCommitsInfo.convertToCommitIdSet(index.getContainingBranches(commitIndex));
+    }
     return myPermanentCommitsInfo.convertToCommitIdSet(myReachableNodes.getContainingBranches(commitIndex, myBranchNodeIds));
   }
 
@@ -172,16 +179,38 @@ public class PermanentGraphImpl<CommitId> implements PermanentGraph<CommitId>, P
     List<Integer> headIds = ContainerUtil.map(heads, head -> myPermanentCommitsInfo.getNodeId(head));
     if (!heads.isEmpty() && ContainerUtil.getFirstItem(heads) instanceof Integer) {
       final IntSet branchNodes = IntSets.newHashSet();
-      myReachableNodes.walk(headIds, node -> branchNodes.add((Integer)myPermanentCommitsInfo.getCommitId(node)));
+      walkReachableNodes(headIds, node -> branchNodes.add((Integer)myPermanentCommitsInfo.getCommitId(node)));
       return new IntContainedInBranchCondition<>(branchNodes);
     }
     else {
       final Set<CommitId> branchNodes = ContainerUtil.newHashSet();
-      myReachableNodes.walk(headIds, node -> branchNodes.add(myPermanentCommitsInfo.getCommitId(node)));
+      walkReachableNodes(headIds, node -> branchNodes.add(myPermanentCommitsInfo.getCommitId(node)));
       return new ContainedInBranchCondition<>(branchNodes);
     }
   }
 
+  private void walkReachableNodes(@Nonnull List<Integer> headIds, @Nonnull Consumer<Integer> consumer) {
+    BranchReachabilityIndex index = myBranchReachabilityIndex.get();
+    BitSet headsMask = index == null ? null : index.getHeadsMask(headIds);
+    if (headsMask == null) {
+      myReachableNodes.walk(headIds, consumer);
+      return;
+    }
+    for (int node = 0; node < myPermanentLinearGraph.nodesCount(); node++) {
+      if (index.isReachable(node, headsMask)) consumer.accept(node);
+    }
+  }
+
+  /**
+   * @return null if reachability from the given heads is not indexed
+   */
+  @Nullable
+  public UnsignedBitSet getReachableNodes(@Nonnull Set<Integer> headNodeIndexes) {
+    BranchReachabilityIndex index = myBranchReachabilityIndex.get();
+    BitSet headsMask = index == null ? null : index.getHeadsMask(headNodeIndexes);
+    return headsMask == null ? null : index.getReachableNodes(headsMask);
+  }
+
   @Override
   @Nonnull
   public PermanentCommitsInfoImpl<CommitId> getPermanentCommitsInfo() {
@@ -18,6 +18,7 @@ package consulo.ide.impl.idea.vcs.log.graph.impl.facade;
 
 import consulo.ide.impl.idea.vcs.log.graph.api.LinearGraph;
 import consulo.ide.impl.idea.vcs.log.graph.api.LiteLinearGraph;
+import consulo.ide.impl.idea.vcs.log.graph.api.permanent.PermanentGraphInfo;
 import consulo.ide.impl.idea.vcs.log.graph.utils.DfsUtil;
 import consulo.ide.impl.idea.vcs.log.graph.utils.Flags;
 import consulo.ide.impl.idea.vcs.log.graph.utils.LinearGraphUtils;
@@ -60,6 +61,15 @@ public class ReachableNodes {
     return result;
   }
 
+  @Nonnull
+  public static UnsignedBitSet getReachableNodes(@Nonnull PermanentGraphInfo<?> permanentGraphInfo, @Nullable Set<Integer> headNodeIndexes) {
+    if (headNodeIndexes != null && permanentGraphInfo instanceof PermanentGraphImpl) {
+      UnsignedBitSet indexed = ((PermanentGraphImpl<?>)permanentGraphInfo).getReachableNodes(headNodeIndexes);
+      if (indexed != null) return indexed;
+    }
+    return getReachableNodes(permanentGraphInfo.getLinearGraph(), headNodeIndexes);
+  }
+
   public Set<Integer> getContainingBranches(int nodeIndex, @Nonnull final Collection<Integer> branchNodeIndexes) {
     final Set<Integer> result = new HashSet<>();
 
@@ -78,7 +78,7 @@ public class TroveUtil {
   }
 
   @Nullable
-  private static IntSet intersect(@Nullable IntSet set1, @Nullable IntSet set2) {
+  public static IntSet intersect(@Nullable IntSet set1, @Nullable IntSet set2) {
     if (set1 == null) return set2;
     if (set2 == null) return set1;
 
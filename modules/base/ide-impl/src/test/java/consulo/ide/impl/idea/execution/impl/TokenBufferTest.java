@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.ide.impl.idea.execution.impl;
+
+import consulo.execution.ui.console.ConsoleViewContentType;
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class TokenBufferTest extends TestCase {
+  private final StringBuilder myDocument = new StringBuilder();
+
+  public void testCarriageReturnAfterPartialDrain() {
+    TokenBuffer buffer = new TokenBuffer(1000);
+    print(buffer, "progress 10%");
+    drain(buffer, 5);
+    assertEquals("progr", myDocument.toString());
+
+    print(buffer, "\rprogress 20%");
+    drain(buffer, 5);
+    drain(buffer, Integer.MAX_VALUE);
+    assertEquals("progress 20%", myDocument.toString());
+    assertEquals(0, buffer.length());
+  }
+
+  public void testCarriageReturnAfterPartialDrainOfSecondLine() {
+    TokenBuffer buffer = new TokenBuffer(1000);
+    print(buffer, "line1\nabcdef");
+    drain(buffer, 8);
+    assertEquals("line1\nab", myDocument.toString());
+
+    print(buffer, "\rX");
+    drain(buffer, 8);
+    assertEquals("line1\nX", myDocument.toString());
+  }
+
+  public void testCarriageReturnKeepsDrainedLines() {
+    TokenBuffer buffer = new TokenBuffer(1000);
+    print(buffer, "line1\nline2\nabc");
+    drain(buffer, 8);
+
+    print(buffer, "\rX");
+    assertEquals("ne2\nX", buffer.getText().toString());
+    drain(buffer, Integer.MAX_VALUE);
+    assertEquals("line1\nline2\nX", myDocument.toString());
+  }
+
+  public void testCarriageReturnLineFeedAfterPartialDrain() {
+    TokenBuffer buffer = new TokenBuffer(1000);
+    print(buffer, "abc\r");
+    drain(buffer, 3);
+
+    print(buffer, "\ndef");
+    assertEquals(4, buffer.length());
+    drain(buffer, Integer.MAX_VALUE);
+    assertEquals("abc\ndef", myDocument.toString());
+  }
+
+  private static void print(TokenBuffer buffer, String text) {
+    buffer.print(text, ConsoleViewContentType.NORMAL_OUTPUT, null);
+  }
+
+  // applies drained tokens the way ConsoleViewImpl does
+  private void drain(TokenBuffer buffer, int maxLength) {
+    List<TokenBuffer.TokenInfo> tokens = buffer.drain(maxLength);
+    for (int i = 0; i < tokens.size(); i++) {
+      TokenBuffer.TokenInfo token = tokens.get(i);
+      if (i == 0 && token == TokenBuffer.CR_TOKEN) {
+        myDocument.setLength(myDocument.lastIndexOf("\n") + 1);
+        continue;
+      }
+      myDocument.append(token.getText());
+    }
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.ide.impl.idea.find.ngrams;
+
+import consulo.ide.impl.idea.openapi.util.text.TrigramBuilder;
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The planned query must hold for every text which contains a match of the pattern, otherwise find in path loses results.
+ */
+public class RegExpTrigramQueryBuilderTest extends TestCase {
+  // includes characters whose case folding differs from their lower case: Kelvin sign, long s, dotless i and dotted I
+  private static final String TEXT_CHARS = "abcabcxyABCK_1 .\nKſıİsSkKiIéÉ";
+  // also used as pieces of random texts
+  private static final String[] WORDS = {"ab", "abc", "bca", "xy", "Kab", "ſk", "ıi", "éÉ", "a_1", "sKy"};
+  private static final String[] ATOMS = {
+    "ab", "abc", "bca", "xy", "Kab", "ſk", "ıi", "éÉ", "a_1", "sKy",
+    "a", "b", "c", "x", "y", "A", "B", "C", "K", "1", "_", " ", "s", "k", "i", "é", "K", "ſ", "İ",
+    ".", "\\.", "\\d", "\\w", "\\s", "\\W", "\\b", "\\B", "^", "$", "\\x61", "\\u0062", "\\0143", "\\t", "\\Qa.b\\E",
+    "[abc]", "[a-c]", "[^a]", "[ab[c]]", "[a&&b]", "[\\w]", "[A-C]", "[sS]", "[kK]", "\\p{L}", "\\p{Lu}", "(?i)", "(?-i)",
+  };
+  private static final String[] QUANTIFIERS = {"*", "+", "?", "{2}", "{1,3}", "{2,}", "{0,2}", "*?", "+?", "??", "*+", "{3}"};
+
+  public void testQueryHoldsForEveryMatchingText() {
+    Random random = new Random(42);
+    int checkedMatches = 0;
+    int checkedSelectiveMatches = 0;
+    for (int i = 0; i < 20000; i++) {
+      String pattern = randomPattern(random, 3);
+      boolean caseInsensitive = random.nextBoolean();
+      Pattern compiled;
+      try {
+        compiled = Pattern.compile(pattern, caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+      }
+      catch (PatternSyntaxException e) {
+        continue;
+      }
+
+      TrigramQuery query = RegExpTrigramQueryBuilder.build(pattern, caseInsensitive);
+      for (int j = 0; j < 30; j++) {
+        String text = randomText(random, pattern);
+        if (compiled.matcher(text).find()) {
+          checkedMatches++;
+          if (!query.isAll()) checkedSelectiveMatches++;
+          assertTrue("pattern '" + pattern + "', case insensitive " + caseInsensitive + ", text '" + text + "', query " + query,
+                     matches(query, trigrams(text)));
+        }
+      }
+    }
+    assertTrue(checkedMatches > 10000);
+    assertTrue(checkedSelectiveMatches > 1000);
+  }
+
+  public void testSelectiveQueries() {
+    assertFalse(RegExpTrigramQueryBuilder.build("foobar", false).isAll());
+    assertFalse(RegExpTrigramQueryBuilder.build("(foo|bar)baz", false).isAll());
+    assertFalse(RegExpTrigramQueryBuilder.build("abc.*xyz", true).isAll());
+    assertTrue(RegExpTrigramQueryBuilder.build("a.*b", false).isAll());
+    assertTrue(RegExpTrigramQueryBuilder.build("(foo)*", false).isAll());
+    assertTrue(RegExpTrigramQueryBuilder.build("foo|b", false).isAll());
+    assertTrue(RegExpTrigramQueryBuilder.build("(foo", false).isAll());
+  }
+
+  private static String randomPattern(Random random, int depth) {
+    StringBuilder builder = new StringBuilder();
+    int length = 1 + random.nextInt(6);
+    for (int i = 0; i < length; i++) {
+      int kind = random.nextInt(12);
+      if (kind < 2 && depth > 0) {
+        String[] groups = {"(", "(?:", "(?>", "(?=", "(?!", "(?<name>", "(?i:"};
+        builder.append(groups[random.nextInt(groups.length)]).append(randomPattern(random, depth - 1));
+        if (random.nextBoolean()) builder.append('|').append(randomPattern(random, depth - 1));
+        builder.append(')');
+      }
+      else if (kind == 2 && depth > 0) {
+        builder.append('|');
+      }
+      else if (kind == 3 && random.nextBoolean()) {
+        builder.append("\\1");
+      }
+      else {
+        builder.append(ATOMS[random.nextInt(ATOMS.length)]);
+      }
+      if (random.nextInt(4) == 0) {
+        builder.append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Random text of words, pieces of the pattern and single characters, so that many texts match.
+   */
+  private static String randomText(Random random, String pattern) {
+    StringBuilder builder = new StringBuilder();
+    int length = random.nextInt(12);
+    for (int i = 0; i < length; i++) {
+      int kind = random.nextInt(4);
+      if (kind == 0) {
+        builder.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      else if (kind == 1) {
+        builder.append(TEXT_CHARS.charAt(random.nextInt(TEXT_CHARS.length())));
+      }
+      else {
+        int start = random.nextInt(pattern.length());
+        builder.append(pattern, start, Math.min(pattern.length(), start + 1 + random.nextInt(4)));
+      }
+    }
+    return builder.toString();
+  }
+
+  private static Set<Integer> trigrams(String text) {
+    Set<Integer> trigrams = new HashSet<>();
+    TrigramBuilder.processTrigrams(text, new TrigramBuilder.TrigramProcessor() {
+      @Override
+      public boolean test(int value) {
+        trigrams.add(value);
+        return true;
+      }
+    });
+    return trigrams;
+  }
+
+  private static boolean matches(TrigramQuery query, Set<Integer> trigrams) {
+    switch (query.getKind()) {
+      case ALL:
+        return true;
+      case TRIGRAMS:
+        return trigrams.containsAll(query.getTrigrams());
+      case AND:
+        for (TrigramQuery subQuery : query.getSubQueries()) {
+          if (!matches(subQuery, trigrams)) return false;
+        }
+        return true;
+      default:
+        for (TrigramQuery subQuery : query.getSubQueries()) {
+          if (matches(subQuery, trigrams)) return true;
+        }
+        return false;
+    }
+  }
+}
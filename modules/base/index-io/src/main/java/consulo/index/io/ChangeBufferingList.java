@@ -41,23 +41,13 @@ public class ChangeBufferingList implements Cloneable {
 
   public ChangeBufferingList(int length) {
     if (length > MAX_FILES) {
-      randomAccessContainer = new IdBitSet(length);
+      randomAccessContainer = new CompressedIdSet();
     }
     else {
       changes = new int[length];
     }
   }
 
-  static int[] calcMinMax(int[] set, int length) {
-    int max = Integer.MIN_VALUE;
-    int min = Integer.MAX_VALUE;
-    for (int i = 0; i < length; ++i) {
-      max = Math.max(max, set[i]);
-      min = Math.min(min, set[i]);
-    }
-    return new int[]{min, max};
-  }
-
   public void add(int value) {
     ensureCapacity(1);
     RandomAccessIntContainer intContainer = randomAccessContainer;
@@ -119,10 +109,6 @@ public class ChangeBufferingList implements Cloneable {
       if (randomAccessContainer == null) {
         int someElementsNumberEstimation = length;
 
-        // todo we can check these lengths instead of only relying upon reaching MAX_FILES
-        //int lengthOfBitSet = IdBitSet.sizeInBytes(minMax[1], minMax[0]);
-        //int lengthOfIntSet = 4 * length;
-
         if (someElementsNumberEstimation < MAX_FILES) {
           if (!hasRemovals) {
             if (mayHaveDupes) {
@@ -137,11 +123,11 @@ public class ChangeBufferingList implements Cloneable {
           }
         }
         else if (!hasRemovals) {
-          idSet = new IdBitSet(changes, length, 0);
+          idSet = new CompressedIdSet(changes, length);
           copyChanges = false;
         }
         else {
-          idSet = new IdBitSet(calcMinMax(changes, length), 0);
+          idSet = new CompressedIdSet();
         }
       }
       else {
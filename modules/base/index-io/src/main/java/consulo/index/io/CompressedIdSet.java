@@ -0,0 +1,471 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.index.io;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ids, partitioned by high 16 bits into chunks (the layout of Roaring bitmaps).
+ * A chunk with at most {@link #ARRAY_CHUNK_MAX} ids is a sorted {@code char[]} of low bits, denser chunks are 8K bitmaps.
+ * <p>
+ * Compared to a plain bit set, memory is proportional to the number of ids rather than to the range between min and max id,
+ * and {@link #and(CompressedIdSet)} / {@link #or(CompressedIdSet)} work chunk by chunk instead of id by id.
+ * Not thread safe, like other {@link RandomAccessIntContainer}s it is guarded by the owning value container.
+ */
+public class CompressedIdSet implements Cloneable, RandomAccessIntContainer {
+  static final int ARRAY_CHUNK_MAX = 4096;
+  private static final int BITMAP_WORDS = 1 << 10;
+
+  private int[] myKeys;
+  // char[] for sparse chunks, long[BITMAP_WORDS] for dense ones
+  private Object[] myChunks;
+  private int[] myCardinalities;
+  private int myChunkCount;
+  private int mySize;
+
+  public CompressedIdSet() {
+    myKeys = new int[2];
+    myChunks = new Object[2];
+    myCardinalities = new int[2];
+  }
+
+  public CompressedIdSet(int[] set, int count) {
+    this();
+    for (int i = 0; i < count; i++) {
+      add(set[i]);
+    }
+  }
+
+  public CompressedIdSet(RandomAccessIntContainer set) {
+    this();
+    ValueContainer.IntIterator iterator = set.intIterator();
+    while (iterator.hasNext()) {
+      add(iterator.next());
+    }
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  private int findChunk(int key) {
+    // ids are mostly added in ascending order
+    if (myChunkCount > 0 && myKeys[myChunkCount - 1] == key) return myChunkCount - 1;
+    return Arrays.binarySearch(myKeys, 0, myChunkCount, key);
+  }
+
+  private void insertChunk(int index, int key, Object chunk, int cardinality) {
+    if (myChunkCount == myKeys.length) {
+      int newLength = myKeys.length * 2;
+      myKeys = Arrays.copyOf(myKeys, newLength);
+      myChunks = Arrays.copyOf(myChunks, newLength);
+      myCardinalities = Arrays.copyOf(myCardinalities, newLength);
+    }
+    int tail = myChunkCount - index;
+    System.arraycopy(myKeys, index, myKeys, index + 1, tail);
+    System.arraycopy(myChunks, index, myChunks, index + 1, tail);
+    System.arraycopy(myCardinalities, index, myCardinalities, index + 1, tail);
+    myKeys[index] = key;
+    myChunks[index] = chunk;
+    myCardinalities[index] = cardinality;
+    myChunkCount++;
+    mySize += cardinality;
+  }
+
+  private void removeChunk(int index) {
+    int tail = myChunkCount - index - 1;
+    System.arraycopy(myKeys, index + 1, myKeys, index, tail);
+    System.arraycopy(myChunks, index + 1, myChunks, index, tail);
+    System.arraycopy(myCardinalities, index + 1, myCardinalities, index, tail);
+    myChunkCount--;
+    myChunks[myChunkCount] = null;
+  }
+
+  @Override
+  public boolean add(int value) {
+    assert value >= 0;
+    int key = value >>> 16;
+    char low = (char)value;
+
+    int index = findChunk(key);
+    if (index < 0) {
+      insertChunk(-index - 1, key, new char[]{low}, 1);
+      return true;
+    }
+
+    Object chunk = myChunks[index];
+    int cardinality = myCardinalities[index];
+    if (chunk instanceof long[]) {
+      long[] bitmap = (long[])chunk;
+      long mask = 1L << low;
+      if ((bitmap[low >>> 6] & mask) != 0) return false;
+      bitmap[low >>> 6] |= mask;
+    }
+    else {
+      char[] array = (char[])chunk;
+      int position = cardinality > 0 && array[cardinality - 1] < low ? -cardinality - 1 : Arrays.binarySearch(array, 0, cardinality, low);
+      if (position >= 0) return false;
+      position = -position - 1;
+
+      if (cardinality == ARRAY_CHUNK_MAX) {
+        long[] bitmap = toBitmap(array, cardinality);
+        bitmap[low >>> 6] |= 1L << low;
+        myChunks[index] = bitmap;
+      }
+      else {
+        if (cardinality == array.length) {
+          array = Arrays.copyOf(array, Math.min(ARRAY_CHUNK_MAX, cardinality < 64 ? cardinality * 2 : cardinality + cardinality / 2));
+          myChunks[index] = array;
+        }
+        System.arraycopy(array, position, array, position + 1, cardinality - position);
+        array[position] = low;
+      }
+    }
+    myCardinalities[index] = cardinality + 1;
+    mySize++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(int value) {
+    if (value < 0) return false;
+    int index = findChunk(value >>> 16);
+    if (index < 0) return false;
+
+    char low = (char)value;
+    Object chunk = myChunks[index];
+    int cardinality = myCardinalities[index];
+    if (chunk instanceof long[]) {
+      long[] bitmap = (long[])chunk;
+      long mask = 1L << low;
+      if ((bitmap[low >>> 6] & mask) == 0) return false;
+      bitmap[low >>> 6] &= ~mask;
+    }
+    else {
+      char[] array = (char[])chunk;
+      int position = Arrays.binarySearch(array, 0, cardinality, low);
+      if (position < 0) return false;
+      System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+    }
+
+    mySize--;
+    if (cardinality == 1) {
+      removeChunk(index);
+    }
+    else {
+      myCardinalities[index] = cardinality - 1;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(int value) {
+    if (value < 0) return false;
+    int index = findChunk(value >>> 16);
+    if (index < 0) return false;
+
+    char low = (char)value;
+    Object chunk = myChunks[index];
+    if (chunk instanceof long[]) {
+      return (((long[])chunk)[low >>> 6] & (1L << low)) != 0;
+    }
+    return Arrays.binarySearch((char[])chunk, 0, myCardinalities[index], low) >= 0;
+  }
+
+  @Override
+  public ValueContainer.IntPredicate intPredicate() {
+    return this::contains;
+  }
+
+  @Override
+  public IntIdsIterator intIterator() {
+    return new Iterator();
+  }
+
+  /**
+   * Trims sparse chunks and turns bitmaps which became sparse after removals back into arrays.
+   * Thresholds are halved so that alternating add / remove near a boundary does not convert a chunk back and forth.
+   */
+  @Override
+  public void compact() {
+    for (int i = 0; i < myChunkCount; i++) {
+      Object chunk = myChunks[i];
+      int cardinality = myCardinalities[i];
+      if (chunk instanceof long[]) {
+        if (cardinality <= ARRAY_CHUNK_MAX / 2) {
+          myChunks[i] = toArray((long[])chunk, cardinality);
+        }
+      }
+      else if (((char[])chunk).length > 16 && ((char[])chunk).length >= 2 * cardinality) {
+        myChunks[i] = Arrays.copyOf((char[])chunk, cardinality);
+      }
+    }
+  }
+
+  @Override
+  public RandomAccessIntContainer ensureContainerCapacity(int diff) {
+    return this;
+  }
+
+  @Override
+  public CompressedIdSet clone() {
+    try {
+      CompressedIdSet clone = (CompressedIdSet)super.clone();
+      clone.myKeys = Arrays.copyOf(myKeys, Math.max(2, myChunkCount));
+      clone.myCardinalities = Arrays.copyOf(myCardinalities, clone.myKeys.length);
+      clone.myChunks = new Object[clone.myKeys.length];
+      for (int i = 0; i < myChunkCount; i++) {
+        Object chunk = myChunks[i];
+        clone.myChunks[i] = chunk instanceof long[] ? ((long[])chunk).clone() : Arrays.copyOf((char[])chunk, myCardinalities[i]);
+      }
+      return clone;
+    }
+    catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return new set with ids contained in both sets
+   */
+  public CompressedIdSet and(CompressedIdSet other) {
+    CompressedIdSet result = new CompressedIdSet();
+    int i = 0, j = 0;
+    while (i < myChunkCount && j < other.myChunkCount) {
+      int key = myKeys[i];
+      int otherKey = other.myKeys[j];
+      if (key < otherKey) {
+        i++;
+      }
+      else if (key > otherKey) {
+        j++;
+      }
+      else {
+        Object chunk = and(myChunks[i], myCardinalities[i], other.myChunks[j], other.myCardinalities[j]);
+        int cardinality = cardinality(chunk);
+        if (cardinality > 0) {
+          result.insertChunk(result.myChunkCount, key, chunk, cardinality);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds all ids of other set to this one
+   */
+  public void or(CompressedIdSet other) {
+    int i = 0;
+    for (int j = 0; j < other.myChunkCount; j++) {
+      int otherKey = other.myKeys[j];
+      while (i < myChunkCount && myKeys[i] < otherKey) i++;
+
+      Object otherChunk = other.myChunks[j];
+      int otherCardinality = other.myCardinalities[j];
+      if (i == myChunkCount || myKeys[i] != otherKey) {
+        Object copy = otherChunk instanceof long[] ? ((long[])otherChunk).clone() : Arrays.copyOf((char[])otherChunk, otherCardinality);
+        insertChunk(i, otherKey, copy, otherCardinality);
+      }
+      else {
+        Object chunk = or(myChunks[i], myCardinalities[i], otherChunk, otherCardinality);
+        int cardinality = cardinality(chunk);
+        mySize += cardinality - myCardinalities[i];
+        myChunks[i] = chunk;
+        myCardinalities[i] = cardinality;
+      }
+      i++;
+    }
+  }
+
+  private static Object and(Object chunk, int cardinality, Object otherChunk, int otherCardinality) {
+    if (chunk instanceof long[] && otherChunk instanceof long[]) {
+      long[] bitmap = (long[])chunk;
+      long[] otherBitmap = (long[])otherChunk;
+      long[] result = new long[BITMAP_WORDS];
+      int resultCardinality = 0;
+      for (int w = 0; w < BITMAP_WORDS; w++) {
+        result[w] = bitmap[w] & otherBitmap[w];
+        resultCardinality += Long.bitCount(result[w]);
+      }
+      return resultCardinality > ARRAY_CHUNK_MAX ? result : toArray(result, resultCardinality);
+    }
+
+    if (chunk instanceof long[] || otherChunk instanceof long[]) {
+      long[] bitmap = (long[])(chunk instanceof long[] ? chunk : otherChunk);
+      char[] array = (char[])(chunk instanceof long[] ? otherChunk : chunk);
+      int arrayCardinality = chunk instanceof long[] ? otherCardinality : cardinality;
+      char[] result = new char[arrayCardinality];
+      int resultCardinality = 0;
+      for (int k = 0; k < arrayCardinality; k++) {
+        char low = array[k];
+        if ((bitmap[low >>> 6] & (1L << low)) != 0) result[resultCardinality++] = low;
+      }
+      return Arrays.copyOf(result, resultCardinality);
+    }
+
+    char[] array = (char[])chunk;
+    char[] otherArray = (char[])otherChunk;
+    char[] result = new char[Math.min(cardinality, otherCardinality)];
+    int resultCardinality = 0;
+    int a = 0, b = 0;
+    while (a < cardinality && b < otherCardinality) {
+      if (array[a] < otherArray[b]) {
+        a++;
+      }
+      else if (array[a] > otherArray[b]) {
+        b++;
+      }
+      else {
+        result[resultCardinality++] = array[a];
+        a++;
+        b++;
+      }
+    }
+    return Arrays.copyOf(result, resultCardinality);
+  }
+
+  private static Object or(Object chunk, int cardinality, Object otherChunk, int otherCardinality) {
+    if (chunk instanceof long[] || otherChunk instanceof long[]) {
+      long[] result = chunk instanceof long[] ? (long[])chunk : toBitmap((char[])chunk, cardinality);
+      if (otherChunk instanceof long[]) {
+        long[] otherBitmap = (long[])otherChunk;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+          result[w] |= otherBitmap[w];
+        }
+      }
+      else {
+        char[] otherArray = (char[])otherChunk;
+        for (int k = 0; k < otherCardinality; k++) {
+          result[otherArray[k] >>> 6] |= 1L << otherArray[k];
+        }
+      }
+      return result;
+    }
+
+    char[] array = (char[])chunk;
+    char[] otherArray = (char[])otherChunk;
+    char[] result = new char[cardinality + otherCardinality];
+    int resultCardinality = 0;
+    int a = 0, b = 0;
+    while (a < cardinality || b < otherCardinality) {
+      if (b == otherCardinality || a < cardinality && array[a] < otherArray[b]) {
+        result[resultCardinality++] = array[a++];
+      }
+      else if (a == cardinality || array[a] > otherArray[b]) {
+        result[resultCardinality++] = otherArray[b++];
+      }
+      else {
+        result[resultCardinality++] = array[a];
+        a++;
+        b++;
+      }
+    }
+    return resultCardinality > ARRAY_CHUNK_MAX ? toBitmap(result, resultCardinality) : Arrays.copyOf(result, resultCardinality);
+  }
+
+  private static int cardinality(Object chunk) {
+    if (chunk instanceof char[]) return ((char[])chunk).length;
+
+    int cardinality = 0;
+    for (long word : (long[])chunk) {
+      cardinality += Long.bitCount(word);
+    }
+    return cardinality;
+  }
+
+  private static long[] toBitmap(char[] array, int cardinality) {
+    long[] bitmap = new long[BITMAP_WORDS];
+    for (int k = 0; k < cardinality; k++) {
+      bitmap[array[k] >>> 6] |= 1L << array[k];
+    }
+    return bitmap;
+  }
+
+  private static char[] toArray(long[] bitmap, int cardinality) {
+    char[] array = new char[cardinality];
+    int k = 0;
+    for (int w = 0; w < BITMAP_WORDS; w++) {
+      long word = bitmap[w];
+      while (word != 0) {
+        array[k++] = (char)((w << 6) + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    return array;
+  }
+
+  private class Iterator implements IntIdsIterator {
+    private int myChunk;
+    // position in array chunk or bit index in bitmap chunk
+    private int myPosition;
+    private int myNext = -1;
+
+    Iterator() {
+      advance();
+    }
+
+    private void advance() {
+      while (myChunk < myChunkCount) {
+        Object chunk = myChunks[myChunk];
+        int high = myKeys[myChunk] << 16;
+        if (chunk instanceof long[]) {
+          long[] bitmap = (long[])chunk;
+          int word = myPosition >>> 6;
+          if (word < BITMAP_WORDS) {
+            long bits = bitmap[word] & (-1L << myPosition);
+            while (true) {
+              if (bits != 0) {
+                int low = (word << 6) + Long.numberOfTrailingZeros(bits);
+                myPosition = low + 1;
+                myNext = high | low;
+                return;
+              }
+              if (++word == BITMAP_WORDS) break;
+              bits = bitmap[word];
+            }
+          }
+        }
+        else if (myPosition < myCardinalities[myChunk]) {
+          myNext = high | ((char[])chunk)[myPosition++];
+          return;
+        }
+        myChunk++;
+        myPosition = 0;
+      }
+      myNext = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return myNext != -1;
+    }
+
+    @Override
+    public int next() {
+      int result = myNext;
+      advance();
+      return result;
+    }
+
+    @Override
+    public int size() {
+      return CompressedIdSet.this.size();
+    }
+
+    @Override
+    public boolean hasAscendingOrder() {
+      return true;
+    }
+
+    @Override
+    public IntIdsIterator createCopyInInitialState() {
+      return new Iterator();
+    }
+  }
+}
@@ -12,4 +12,10 @@ class IOStatistics {
   static void dump(String msg) {
     LOG.info(msg);
   }
+
+  static void dumpCacheStatistics(String owner, long hits, long misses, long evictions) {
+    long requests = hits + misses;
+    dump("Buffer cache of " + owner + ": requests:" + requests + ", hits:" + hits + ", misses:" + misses + ", evictions:" + evictions +
+         (requests > 0 ? ", hit rate:" + (hits * 100 / requests) + "%" : ""));
+  }
 }
@@ -20,6 +20,7 @@ import consulo.index.io.data.IOUtil;
 import consulo.index.io.internal.ValueContainerImpl;
 import consulo.util.collection.SLRUCache;
 import consulo.util.lang.LoggerAssert;
+import consulo.util.lang.SystemProperties;
 import org.jetbrains.annotations.TestOnly;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,12 +37,17 @@ import java.util.function.Predicate;
 
 public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, Value> {
   private static final Logger LOG = LoggerFactory.getLogger(MapIndexStorage.class);
+  // a fixed number rather than one derived from the machine, since changing it rebuilds the storage
+  private static final int DEFAULT_SHARD_COUNT = Math.max(1, SystemProperties.getIntProperty("idea.index.storage.shards", 4));
   protected PersistentMap<Key, UpdatableValueContainer<Value>> myMap;
-  protected SLRUCache<Key, ChangeTrackingValueContainer<Value>> myCache;
+  private ShardedPersistentHashMap<Key, UpdatableValueContainer<Value>> myShardedMap;
+  // a cache per shard of the map, each guarded by its own lock, so that lookups of keys of different shards don't contend
+  private CacheShard<Key, Value>[] myCacheShards;
   protected final File myBaseStorageFile;
   protected final KeyDescriptor<Key> myKeyDescriptor;
   private final int myCacheSize;
 
+  // guards operations on the whole storage, lookups take only the lock of the cache shard of their key
   protected final Lock l = new ReentrantLock();
   private final DataExternalizer<Value> myDataExternalizer;
   private final boolean myKeyIsUniqueForIndexedFile;
@@ -82,19 +88,19 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
   }
 
   protected void initMapAndCache() throws IOException {
-    final ValueContainerMap<Key, Value> map;
+    final ShardedPersistentHashMap<Key, UpdatableValueContainer<Value>> map;
     PersistentHashMapValueStorage.CreationTimeOptions.EXCEPTIONAL_IO_CANCELLATION.set(() -> checkCanceled());
     PersistentHashMapValueStorage.CreationTimeOptions.COMPACT_CHUNKS_WITH_VALUE_DESERIALIZATION.set(Boolean.TRUE);
     if (myKeyIsUniqueForIndexedFile) {
       PersistentHashMapValueStorage.CreationTimeOptions.HAS_NO_CHUNKS.set(Boolean.TRUE);
     }
     try {
-      map = new ValueContainerMap<Key, Value>(getStorageFile(), myKeyDescriptor, myDataExternalizer, myKeyIsUniqueForIndexedFile, myInputRemapping) {
+      map = new ShardedPersistentHashMap<>(getStorageFile(), myKeyDescriptor, getShardCount(), shardFile -> new ValueContainerMap<Key, Value>(shardFile, myKeyDescriptor, myDataExternalizer, myKeyIsUniqueForIndexedFile, myInputRemapping) {
         @Override
         protected boolean isReadOnly() {
           return myReadOnly;
         }
-      };
+      });
     }
     finally {
       PersistentHashMapValueStorage.CreationTimeOptions.EXCEPTIONAL_IO_CANCELLATION.set(null);
@@ -103,7 +109,22 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
         PersistentHashMapValueStorage.CreationTimeOptions.HAS_NO_CHUNKS.set(Boolean.FALSE);
       }
     }
-    myCache = new SLRUCache<Key, ChangeTrackingValueContainer<Value>>(myCacheSize, (int)(Math.ceil(myCacheSize * 0.25)) /* 25% from the main cache size*/, myKeyDescriptor) {
+    @SuppressWarnings("unchecked")
+    CacheShard<Key, Value>[] cacheShards = new CacheShard[map.getShardCount()];
+    int shardCacheSize = Math.max(1, (myCacheSize + cacheShards.length - 1) / cacheShards.length);
+    for (int i = 0; i < cacheShards.length; i++) {
+      cacheShards[i] = new CacheShard<>(createCache(map, shardCacheSize));
+    }
+
+    myShardedMap = map;
+    myCacheShards = cacheShards;
+    myMap = map;
+  }
+
+  @Nonnull
+  private SLRUCache<Key, ChangeTrackingValueContainer<Value>> createCache(@Nonnull ShardedPersistentHashMap<Key, UpdatableValueContainer<Value>> map,
+                                                                          int cacheSize) {
+    return new SLRUCache<Key, ChangeTrackingValueContainer<Value>>(cacheSize, (int)(Math.ceil(cacheSize * 0.25)) /* 25% from the main cache size*/, myKeyDescriptor) {
       @Override
       @Nonnull
       public ChangeTrackingValueContainer<Value> createValue(final Key key) {
@@ -111,7 +132,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
           @Nonnull
           @Override
           public Object getLock() {
-            return map.getDataAccessLock();
+            return ((ValueContainerMap<Key, Value>)map.getShard(key)).getDataAccessLock();
           }
 
           @Nonnull
@@ -144,12 +165,48 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
         }
       }
     };
+  }
 
-    myMap = map;
+  private static final class CacheShard<Key, Value> {
+    final Lock myLock = new ReentrantLock();
+    final SLRUCache<Key, ChangeTrackingValueContainer<Value>> myCache;
+
+    CacheShard(@Nonnull SLRUCache<Key, ChangeTrackingValueContainer<Value>> cache) {
+      myCache = cache;
+    }
+  }
+
+  @Nonnull
+  private CacheShard<Key, Value> getCacheShard(Key key) {
+    CacheShard<Key, Value>[] cacheShards = myCacheShards;
+    return cacheShards.length == 1 ? cacheShards[0] : cacheShards[myShardedMap.getShardIndex(key)];
+  }
+
+  /**
+   * Writes dirty cached values to the map and empties the cache, so that the map has all keys.
+   */
+  protected void clearCache() {
+    for (CacheShard<Key, Value> cacheShard : myCacheShards) {
+      cacheShard.myLock.lock();
+      try {
+        cacheShard.myCache.clear();
+      }
+      finally {
+        cacheShard.myLock.unlock();
+      }
+    }
   }
 
   protected abstract void checkCanceled();
 
+  /**
+   * Number of independently locked {@link PersistentHashMap}s the keys of this storage are partitioned between.
+   * Changing the value for an existing storage makes it report corruption on open, so that it gets rebuilt.
+   */
+  protected int getShardCount() {
+    return DEFAULT_SHARD_COUNT;
+  }
+
   @Nonnull
   private File getStorageFile() {
     return getIndexStorageFile(myBaseStorageFile);
@@ -160,7 +217,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
     l.lock();
     try {
       if (!myMap.isClosed()) {
-        myCache.clear();
+        clearCache();
         if (myMap.isDirty()) myMap.force();
       }
     }
@@ -206,15 +263,16 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
   @Override
   @Nonnull
   public ChangeTrackingValueContainer<Value> read(final Key key) throws StorageException {
-    l.lock();
+    CacheShard<Key, Value> cacheShard = getCacheShard(key);
+    cacheShard.myLock.lock();
     try {
-      return myCache.get(key);
+      return cacheShard.myCache.get(key);
     }
     catch (RuntimeException e) {
       return unwrapCauseAndRethrow(e);
     }
     finally {
-      l.unlock();
+      cacheShard.myLock.unlock();
     }
   }
 
@@ -224,19 +282,20 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
       throw new UnsupportedOperationException("Index storage is read-only");
     }
     try {
-      myMap.markDirty();
+      myShardedMap.getShard(key).markDirty();
       if (!myKeyIsUniqueForIndexedFile) {
         read(key).addValue(inputId, value);
         return;
       }
 
       ChangeTrackingValueContainer<Value> cached;
+      CacheShard<Key, Value> cacheShard = getCacheShard(key);
+      cacheShard.myLock.lock();
       try {
-        l.lock();
-        cached = myCache.getIfCached(key);
+        cached = cacheShard.myCache.getIfCached(key);
       }
       finally {
-        l.unlock();
+        cacheShard.myLock.unlock();
       }
 
       if (cached != null) {
@@ -256,7 +315,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
   @Override
   public void removeAllValues(@Nonnull Key key, int inputId) throws StorageException {
     try {
-      myMap.markDirty();
+      myShardedMap.getShard(key).markDirty();
       // important: assuming the key exists in the index
       read(key).removeAssociatedValue(inputId);
     }
@@ -267,14 +326,16 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
 
   @Override
   public void clearCaches() {
-    l.lock();
-    try {
-      for (Map.Entry<Key, ChangeTrackingValueContainer<Value>> entry : myCache.entrySet()) {
-        entry.getValue().dropMergedData();
+    for (CacheShard<Key, Value> cacheShard : myCacheShards) {
+      cacheShard.myLock.lock();
+      try {
+        for (Map.Entry<Key, ChangeTrackingValueContainer<Value>> entry : cacheShard.myCache.entrySet()) {
+          entry.getValue().dropMergedData();
+        }
+      }
+      finally {
+        cacheShard.myLock.unlock();
       }
-    }
-    finally {
-      l.unlock();
     }
   }
 
@@ -293,7 +354,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
   public boolean processKeys(@Nonnull Predicate<? super Key> processor) throws StorageException {
     l.lock();
     try {
-      myCache.clear(); // this will ensure that all new keys are made into the map
+      clearCache(); // this will ensure that all new keys are made into the map
       return myMap.processKeys(processor);
     }
     catch (IOException e) {
@@ -1,7 +1,6 @@
 // Copyright 2000-2019 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package consulo.index.io;
 
-import consulo.util.collection.impl.map.LinkedHashMap;
 import consulo.util.collection.primitive.ints.ConcurrentIntObjectMap;
 import consulo.util.collection.primitive.ints.IntMaps;
 import consulo.util.lang.StringUtil;
@@ -20,6 +19,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -33,6 +33,8 @@ public class PagedFileStorage implements Forceable {
 
   private static final int LOWER_LIMIT;
   private static final int UPPER_LIMIT;
+  // share of the mapped buffers cache kept for pages which were accessed at least twice, see StorageLock
+  private static final int PROTECTED_SEGMENT_PERCENT = Math.min(95, Math.max(0, SystemProperties.getIntProperty("idea.paged.storage.protected.percent", 80)));
 
   static {
     final int lower = 100;
@@ -78,17 +80,13 @@ public class PagedFileStorage implements Forceable {
 
   private final StorageLockContext myStorageLockContext;
   private final boolean myNativeBytesOrder;
-  private int myLastPage = UNKNOWN_PAGE;
-  private int myLastPage2 = UNKNOWN_PAGE;
-  private int myLastPage3 = UNKNOWN_PAGE;
-  private ByteBufferWrapper myLastBuffer;
-  private ByteBufferWrapper myLastBuffer2;
-  private ByteBufferWrapper myLastBuffer3;
-  private int myLastChangeCount;
-  private int myLastChangeCount2;
-  private int myLastChangeCount3;
+  // immutable, replaced as a whole so that the hit path needs neither locking nor allocation
+  private volatile LastAccessedBuffers myLastAccessedBuffers = LastAccessedBuffers.EMPTY;
   private int myStorageIndex;
-  private final Object myLastAccessedBufferCacheLock = new Object();
+
+  private final LongAdder myCacheHits = new LongAdder();
+  private final LongAdder myCacheMisses = new LongAdder();
+  private final LongAdder myCacheEvictions = new LongAdder();
 
   private final byte[] myTypedIOBuffer;
   private volatile boolean isDirty;
@@ -297,6 +295,9 @@ public class PagedFileStorage implements Forceable {
   public void close() {
     try {
       force();
+      if (IOStatistics.DEBUG) {
+        IOStatistics.dumpCacheStatistics(myFile.getPath(), getCacheHits(), getCacheMisses(), getCacheEvictions());
+      }
     }
     finally {
       unmapAll();
@@ -308,14 +309,7 @@ public class PagedFileStorage implements Forceable {
   private void unmapAll() {
     myStorageLockContext.myStorageLock.unmapBuffersForOwner(myStorageIndex, myStorageLockContext);
 
-    synchronized (myLastAccessedBufferCacheLock) {
-      myLastPage = UNKNOWN_PAGE;
-      myLastPage2 = UNKNOWN_PAGE;
-      myLastPage3 = UNKNOWN_PAGE;
-      myLastBuffer = null;
-      myLastBuffer2 = null;
-      myLastBuffer3 = null;
-    }
+    myLastAccessedBuffers = LastAccessedBuffers.EMPTY;
   }
 
   public void resize(long newSize) throws IOException {
@@ -380,28 +374,13 @@ public class PagedFileStorage implements Forceable {
   }
 
   private ByteBufferWrapper getBufferWrapper(long page, boolean modify) {
-    synchronized (myLastAccessedBufferCacheLock) {
-      if (myLastPage == page) {
-        ByteBuffer buf = myLastBuffer.getCachedBuffer();
-        if (buf != null && myLastChangeCount == myStorageLockContext.myStorageLock.myMappingChangeCount) {
-          if (modify) markDirty(myLastBuffer);
-          return myLastBuffer;
-        }
-      }
-      else if (myLastPage2 == page) {
-        ByteBuffer buf = myLastBuffer2.getCachedBuffer();
-        if (buf != null && myLastChangeCount2 == myStorageLockContext.myStorageLock.myMappingChangeCount) {
-          if (modify) markDirty(myLastBuffer2);
-          return myLastBuffer2;
-        }
-      }
-      else if (myLastPage3 == page) {
-        ByteBuffer buf = myLastBuffer3.getCachedBuffer();
-        if (buf != null && myLastChangeCount3 == myStorageLockContext.myStorageLock.myMappingChangeCount) {
-          if (modify) markDirty(myLastBuffer3);
-          return myLastBuffer3;
-        }
-      }
+    int changeCount = myStorageLockContext.myStorageLock.myMappingChangeCount;
+    LastAccessedBuffers lastAccessed = myLastAccessedBuffers;
+    ByteBufferWrapper lastBuffer = lastAccessed.find((int)page, changeCount);
+    if (lastBuffer != null) {
+      myCacheHits.increment();
+      if (modify) markDirty(lastBuffer);
+      return lastBuffer;
     }
 
     try {
@@ -410,32 +389,15 @@ public class PagedFileStorage implements Forceable {
       if (myStorageIndex == -1) {
         myStorageIndex = myStorageLockContext.myStorageLock.registerPagedFileStorage(this);
       }
-      ByteBufferWrapper byteBufferWrapper = myStorageLockContext.myStorageLock.get(myStorageIndex | (int)page); // TODO: long page
+      ByteBufferWrapper byteBufferWrapper = myStorageLockContext.myStorageLock.get(myStorageIndex | (int)page, this); // TODO: long page
       if (modify) markDirty(byteBufferWrapper);
       ByteBuffer buf = byteBufferWrapper.getBuffer();
       if (myNativeBytesOrder && buf.order() != ourNativeByteOrder) {
         buf.order(ourNativeByteOrder);
       }
 
-      synchronized (myLastAccessedBufferCacheLock) {
-        if (myLastPage != page) {
-          myLastPage3 = myLastPage2;
-          myLastBuffer3 = myLastBuffer2;
-          myLastChangeCount3 = myLastChangeCount2;
-
-          myLastPage2 = myLastPage;
-          myLastBuffer2 = myLastBuffer;
-          myLastChangeCount2 = myLastChangeCount;
-
-          myLastBuffer = byteBufferWrapper;
-          myLastPage = (int)page; // TODO long page
-        }
-        else {
-          myLastBuffer = byteBufferWrapper;
-        }
-
-        myLastChangeCount = myStorageLockContext.myStorageLock.myMappingChangeCount;
-      }
+      // a concurrent update may be lost here, that only costs another lookup in the shared cache
+      myLastAccessedBuffers = myLastAccessedBuffers.push((int)page, byteBufferWrapper, myStorageLockContext.myStorageLock.myMappingChangeCount); // TODO long page
 
       return byteBufferWrapper;
     }
@@ -470,19 +432,89 @@ public class PagedFileStorage implements Forceable {
     return isDirty;
   }
 
+  public long getCacheHits() {
+    return myCacheHits.sum();
+  }
+
+  public long getCacheMisses() {
+    return myCacheMisses.sum();
+  }
+
+  public long getCacheEvictions() {
+    return myCacheEvictions.sum();
+  }
+
+  /**
+   * Up to three most recently used buffers of the storage, the newest first.
+   */
+  private static final class LastAccessedBuffers {
+    static final LastAccessedBuffers EMPTY = new LastAccessedBuffers(UNKNOWN_PAGE, null, 0, null);
+
+    final int myPage;
+    final ByteBufferWrapper myBuffer;
+    final int myChangeCount;
+    @Nullable
+    final LastAccessedBuffers myNext;
+
+    private LastAccessedBuffers(int page, ByteBufferWrapper buffer, int changeCount, @Nullable LastAccessedBuffers next) {
+      myPage = page;
+      myBuffer = buffer;
+      myChangeCount = changeCount;
+      myNext = next;
+    }
+
+    @Nullable
+    ByteBufferWrapper find(int page, int changeCount) {
+      for (LastAccessedBuffers buffers = this; buffers != null; buffers = buffers.myNext) {
+        if (buffers.myPage == page) {
+          return buffers.myChangeCount == changeCount && buffers.myBuffer.getCachedBuffer() != null ? buffers.myBuffer : null;
+        }
+      }
+      return null;
+    }
+
+    @Nonnull
+    LastAccessedBuffers push(int page, @Nonnull ByteBufferWrapper buffer, int changeCount) {
+      LastAccessedBuffers second = skip(this, page);
+      LastAccessedBuffers third = second != null ? skip(second.myNext, page) : null;
+      return new LastAccessedBuffers(page, buffer, changeCount, second == null ? null : new LastAccessedBuffers(
+        second.myPage, second.myBuffer, second.myChangeCount,
+        third == null ? null : new LastAccessedBuffers(third.myPage, third.myBuffer, third.myChangeCount, null)));
+    }
+
+    @Nullable
+    private static LastAccessedBuffers skip(@Nullable LastAccessedBuffers buffers, int page) {
+      while (buffers != null && (buffers.myPage == page || buffers.myPage == UNKNOWN_PAGE)) {
+        buffers = buffers.myNext;
+      }
+      return buffers;
+    }
+  }
+
+  /**
+   * Cache of mapped buffers shared by all storages registered in it.
+   * <p>
+   * Buffers are kept in a segmented LRU: a newly mapped buffer is put into the probationary segment and is moved to the protected
+   * segment only when it is requested again. Eviction always starts from the probationary segment, so a single pass over
+   * a lot of pages (e.g. by full reindex) does not push out buffers that are repeatedly used by queries.
+   */
   public static class StorageLock {
     private static final int FILE_INDEX_MASK = 0xFFFF0000;
     private static final int FILE_INDEX_SHIFT = 16;
     public final StorageLockContext myDefaultStorageLockContext;
     private final ConcurrentIntObjectMap<PagedFileStorage> myIndex2Storage = IntMaps.newConcurrentIntObjectHashMap();
 
-    private final LinkedHashMap<Integer, ByteBufferWrapper> mySegments;
-    private final ReentrantLock mySegmentsAccessLock = new ReentrantLock(); // protects map operations of mySegments, needed for LRU order, mySize and myMappingChangeCount
+    // both segments are in access order, eldest entries go first
+    private final LinkedHashMap<Integer, ByteBufferWrapper> myProbationarySegments = new LinkedHashMap<>(10, 0.75f, true);
+    private final LinkedHashMap<Integer, ByteBufferWrapper> myProtectedSegments = new LinkedHashMap<>(10, 0.75f, true);
+    // protects map operations of segments, needed for LRU order, mySize, myProtectedSize and myMappingChangeCount
+    private final ReentrantLock mySegmentsAccessLock = new ReentrantLock();
     // todo avoid locking for access
 
     private final ReentrantLock mySegmentsAllocationLock = new ReentrantLock();
     private final ConcurrentLinkedQueue<ByteBufferWrapper> mySegmentsToRemove = new ConcurrentLinkedQueue<>();
     private volatile long mySize;
+    private long myProtectedSize;
     private volatile long mySizeLimit;
     private volatile int myMappingChangeCount;
 
@@ -492,27 +524,7 @@ public class PagedFileStorage implements Forceable {
 
     public StorageLock(boolean checkThreadAccess) {
       myDefaultStorageLockContext = new StorageLockContext(this, checkThreadAccess);
-
       mySizeLimit = UPPER_LIMIT;
-      mySegments = new consulo.util.collection.impl.map.LinkedHashMap<Integer, ByteBufferWrapper>(10, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Integer, ByteBufferWrapper> eldest) {
-          return mySize > mySizeLimit;
-        }
-
-        @Nullable
-        @Override
-        public ByteBufferWrapper remove(Object key) {
-          // this method can be called after removeEldestEntry
-          ByteBufferWrapper wrapper = super.remove(key);
-          if (wrapper != null) {
-            ++myMappingChangeCount;
-            mySegmentsToRemove.offer(wrapper);
-            mySize -= wrapper.myLength;
-          }
-          return wrapper;
-        }
-      };
     }
 
     public void lock() {
@@ -523,6 +535,24 @@ public class PagedFileStorage implements Forceable {
       myDefaultStorageLockContext.unlock();
     }
 
+    public long getSizeLimit() {
+      return mySizeLimit;
+    }
+
+    /**
+     * Changes the memory budget of the mapped buffers cache, the value is clamped to the limits derived from direct memory size.
+     */
+    public void setSizeLimit(long sizeLimit) {
+      mySegmentsAllocationLock.lock();
+      try {
+        mySizeLimit = Math.max(LOWER_LIMIT, Math.min(UPPER_LIMIT, sizeLimit));
+        ensureSize(mySizeLimit);
+      }
+      finally {
+        mySegmentsAllocationLock.unlock();
+      }
+    }
+
     private int registerPagedFileStorage(@Nonnull PagedFileStorage storage) {
       int registered = myIndex2Storage.size();
       assert registered <= MAX_LIVE_STORAGES_COUNT;
@@ -539,12 +569,15 @@ public class PagedFileStorage implements Forceable {
       return myIndex2Storage.get(index);
     }
 
-    private ByteBufferWrapper get(Integer key) {
+    private ByteBufferWrapper get(Integer key, @Nonnull PagedFileStorage owner) {
       ByteBufferWrapper wrapper;
       try {         // fast path
         mySegmentsAccessLock.lock();
-        wrapper = mySegments.get(key);
-        if (wrapper != null) return wrapper;
+        wrapper = getCached(key);
+        if (wrapper != null) {
+          owner.myCacheHits.increment();
+          return wrapper;
+        }
       }
       finally {
         mySegmentsAccessLock.unlock();
@@ -555,13 +588,17 @@ public class PagedFileStorage implements Forceable {
         // check if anybody cared about our segment
         mySegmentsAccessLock.lock();
         try {
-          wrapper = mySegments.get(key);
-          if (wrapper != null) return wrapper;
+          wrapper = getCached(key);
+          if (wrapper != null) {
+            owner.myCacheHits.increment();
+            return wrapper;
+          }
         }
         finally {
           mySegmentsAccessLock.unlock();
         }
 
+        owner.myCacheMisses.increment();
         long started = IOStatistics.DEBUG ? System.currentTimeMillis() : 0;
         wrapper = createValue(key);
 
@@ -574,7 +611,7 @@ public class PagedFileStorage implements Forceable {
 
         mySegmentsAccessLock.lock();
         try {
-          mySegments.put(key, wrapper);
+          myProbationarySegments.put(key, wrapper);
           mySize += wrapper.myLength;
         }
         finally {
@@ -590,6 +627,56 @@ public class PagedFileStorage implements Forceable {
       }
     }
 
+    @Nullable
+    private ByteBufferWrapper getCached(Integer key) {
+      assert mySegmentsAccessLock.isHeldByCurrentThread();
+
+      ByteBufferWrapper wrapper = myProtectedSegments.get(key);
+      if (wrapper != null) return wrapper;
+
+      wrapper = myProbationarySegments.remove(key);
+      if (wrapper != null) {
+        // second access: the page is worth keeping, promote it and demote the least recently used protected pages instead
+        myProtectedSegments.put(key, wrapper);
+        myProtectedSize += wrapper.myLength;
+
+        long protectedLimit = mySizeLimit / 100 * PROTECTED_SEGMENT_PERCENT;
+        while (myProtectedSize > protectedLimit && myProtectedSegments.size() > 1) {
+          Iterator<Map.Entry<Integer, ByteBufferWrapper>> iterator = myProtectedSegments.entrySet().iterator();
+          Map.Entry<Integer, ByteBufferWrapper> eldest = iterator.next();
+          iterator.remove();
+          myProtectedSize -= eldest.getValue().myLength;
+          myProbationarySegments.put(eldest.getKey(), eldest.getValue());
+        }
+      }
+      return wrapper;
+    }
+
+    private void removeSegment(Integer key, boolean evicted) {
+      assert mySegmentsAccessLock.isHeldByCurrentThread();
+
+      ByteBufferWrapper wrapper = myProbationarySegments.remove(key);
+      if (wrapper == null) {
+        wrapper = myProtectedSegments.remove(key);
+        if (wrapper == null) return;
+        myProtectedSize -= wrapper.myLength;
+      }
+
+      ++myMappingChangeCount;
+      mySegmentsToRemove.offer(wrapper);
+      mySize -= wrapper.myLength;
+
+      if (evicted) {
+        PagedFileStorage owner = getRegisteredPagedFileStorageByIndex(key & FILE_INDEX_MASK);
+        if (owner != null) owner.myCacheEvictions.increment();
+      }
+    }
+
+    private void removeEldestSegment() {
+      LinkedHashMap<Integer, ByteBufferWrapper> segments = myProbationarySegments.isEmpty() ? myProtectedSegments : myProbationarySegments;
+      removeSegment(segments.keySet().iterator().next(), true);
+    }
+
     private void disposeRemovedSegments() {
       if (mySegmentsToRemove.isEmpty()) return;
 
@@ -608,7 +695,7 @@ public class PagedFileStorage implements Forceable {
         mySegmentsAccessLock.lock();
         while (mySize > sizeLimit) {
           // we still have to drop something
-          mySegments.doRemoveEldestEntry();
+          removeEldestSegment();
         }
       }
       finally {
@@ -655,7 +742,7 @@ public class PagedFileStorage implements Forceable {
           long newSize = mySize - owner.myPageSize;
           if (newSize < 0) {
             LOG.info("Currently allocated:" + mySize);
-            LOG.info("Mapping failed due to OOME. Current buffers: " + mySegments);
+            LOG.info("Mapping failed due to OOME. Current buffers: " + myProtectedSegments + ", " + myProbationarySegments);
             LOG.info(oome.getMessage(), oome);
             try {
               Class<?> aClass = Class.forName("java.nio.Bits");
@@ -700,12 +787,14 @@ public class PagedFileStorage implements Forceable {
       try {
         checkThreadAccess(storageLockContext);
         Map<Integer, ByteBufferWrapper> mineBuffers = null;
-        for (Map.Entry<Integer, ByteBufferWrapper> entry : mySegments.entrySet()) {
-          if ((entry.getKey() & FILE_INDEX_MASK) == index) {
-            if (mineBuffers == null) {
-              mineBuffers = new TreeMap<>(Comparator.comparingInt(o -> o));
+        for (LinkedHashMap<Integer, ByteBufferWrapper> segments : Arrays.asList(myProtectedSegments, myProbationarySegments)) {
+          for (Map.Entry<Integer, ByteBufferWrapper> entry : segments.entrySet()) {
+            if ((entry.getKey() & FILE_INDEX_MASK) == index) {
+              if (mineBuffers == null) {
+                mineBuffers = new TreeMap<>(Comparator.comparingInt(o -> o));
+              }
+              mineBuffers.put(entry.getKey(), entry.getValue());
             }
-            mineBuffers.put(entry.getKey(), entry.getValue());
           }
         }
         return mineBuffers;
@@ -722,7 +811,7 @@ public class PagedFileStorage implements Forceable {
         mySegmentsAccessLock.lock();
         try {
           for (Integer key : buffers.keySet()) {
-            mySegments.remove(key);
+            removeSegment(key, false);
           }
         }
         finally {
@@ -767,7 +856,7 @@ public class PagedFileStorage implements Forceable {
     public void invalidateBuffer(int page) {
       mySegmentsAccessLock.lock();
       try {
-        mySegments.remove(page);
+        removeSegment(page, false);
       }
       finally {
         mySegmentsAccessLock.unlock();
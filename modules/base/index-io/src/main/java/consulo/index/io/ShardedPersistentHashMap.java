@@ -0,0 +1,233 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.index.io;
+
+import consulo.util.io.FileUtil;
+import org.jetbrains.annotations.NonNls;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.Nonnull;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Predicate;
+
+/**
+ * {@link PersistentMap} which partitions keys by {@link KeyDescriptor#hashCode(Object)} between several independent
+ * {@link PersistentHashMap}s. Every shard has its own enumerator, value storage and monitor, so lookups and updates of keys
+ * living in different shards run in parallel, and compaction of one shard does not block readers of the others.
+ * <p>
+ * With a single shard the on-disk layout is exactly the one of a plain {@link PersistentHashMap} stored in {@code file}.
+ * Additional shards are stored next to it in files named {@code file.shardN}, the number of shards is recorded in {@code file.shards}.
+ * Opening a storage with a different number of shards than it was created with fails with {@link PersistentEnumeratorBase.CorruptedException},
+ * so that the owner rebuilds it.
+ */
+public class ShardedPersistentHashMap<Key, Value> implements PersistentMap<Key, Value> {
+  private static final Logger LOG = LoggerFactory.getLogger(ShardedPersistentHashMap.class);
+
+  @NonNls
+  private static final String SHARD_SUFFIX = ".shard";
+  @NonNls
+  private static final String SHARD_COUNT_SUFFIX = ".shards";
+
+  @FunctionalInterface
+  public interface ShardFactory<Key, Value> {
+    @Nonnull
+    PersistentHashMap<Key, Value> create(@Nonnull File shardFile) throws IOException;
+  }
+
+  private final File myFile;
+  private final KeyDescriptor<Key> myKeyDescriptor;
+  private final PersistentHashMap<Key, Value>[] myShards;
+
+  @SuppressWarnings("unchecked")
+  public ShardedPersistentHashMap(@Nonnull File file, @Nonnull KeyDescriptor<Key> keyDescriptor, int shardCount, @Nonnull ShardFactory<Key, Value> factory)
+          throws IOException {
+    if (shardCount < 1) throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+    myFile = file;
+    myKeyDescriptor = keyDescriptor;
+    checkShardCount(file, shardCount);
+
+    myShards = new PersistentHashMap[shardCount];
+    try {
+      for (int i = 0; i < shardCount; i++) {
+        myShards[i] = factory.create(getShardFile(file, i));
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      for (PersistentHashMap<Key, Value> shard : myShards) {
+        if (shard == null) break;
+        try {
+          shard.close();
+        }
+        catch (Throwable ignored) {
+        }
+      }
+      throw e;
+    }
+  }
+
+  @Nonnull
+  private static File getShardFile(@Nonnull File file, int shard) {
+    return shard == 0 ? file : new File(file.getPath() + SHARD_SUFFIX + shard);
+  }
+
+  private static void checkShardCount(@Nonnull File file, int shardCount) throws IOException {
+    File countFile = new File(file.getPath() + SHARD_COUNT_SUFFIX);
+    int storedCount;
+    if (countFile.exists()) {
+      try (DataInputStream in = new DataInputStream(new FileInputStream(countFile))) {
+        storedCount = in.readInt();
+      }
+      catch (EOFException e) {
+        LOG.info("Shard count of " + file.getPath() + " is truncated");
+        throw new PersistentEnumeratorBase.CorruptedException(file);
+      }
+    }
+    else {
+      storedCount = file.exists() ? 1 : shardCount;
+    }
+
+    if (storedCount != shardCount) {
+      LOG.info("Shard count of " + file.getPath() + " changed from " + storedCount + " to " + shardCount);
+      throw new PersistentEnumeratorBase.CorruptedException(file);
+    }
+
+    if (shardCount > 1 && !countFile.exists()) {
+      // written to a temp file and moved, so that a crash doesn't leave a truncated count
+      FileUtil.createParentDirs(countFile);
+      Path tempFile = Files.createTempFile(countFile.getParentFile().toPath(), countFile.getName(), ".tmp");
+      try {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+          out.writeInt(shardCount);
+        }
+        try {
+          Files.move(tempFile, countFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+          Files.move(tempFile, countFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      finally {
+        Files.deleteIfExists(tempFile);
+      }
+    }
+  }
+
+  @Nonnull
+  public PersistentHashMap<Key, Value> getShard(Key key) {
+    return myShards[getShardIndex(key)];
+  }
+
+  public int getShardIndex(Key key) {
+    if (myShards.length == 1) return 0;
+    int hash = myKeyDescriptor.hashCode(key);
+    return Math.floorMod(hash ^ (hash >>> 16), myShards.length);
+  }
+
+  public int getShardCount() {
+    return myShards.length;
+  }
+
+  @Override
+  public Value get(Key key) throws IOException {
+    return getShard(key).get(key);
+  }
+
+  @Override
+  public void put(Key key, Value value) throws IOException {
+    getShard(key).put(key, value);
+  }
+
+  public void appendData(Key key, @Nonnull PersistentHashMap.ValueDataAppender appender) throws IOException {
+    getShard(key).appendData(key, appender);
+  }
+
+  public boolean containsMapping(Key key) throws IOException {
+    return getShard(key).containsMapping(key);
+  }
+
+  public void remove(Key key) throws IOException {
+    getShard(key).remove(key);
+  }
+
+  @Override
+  public boolean processKeys(@Nonnull Predicate<? super Key> processor) throws IOException {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      if (!shard.processKeys(processor)) return false;
+    }
+    return true;
+  }
+
+  public boolean processKeysWithExistingMapping(@Nonnull Predicate<? super Key> processor) throws IOException {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      if (!shard.processKeysWithExistingMapping(processor)) return false;
+    }
+    return true;
+  }
+
+  public int getSize() {
+    int size = 0;
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      size += shard.getSize();
+    }
+    return size;
+  }
+
+  public void dropMemoryCaches() {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      shard.dropMemoryCaches();
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      if (shard.isClosed()) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isDirty() {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      if (shard.isDirty()) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void markDirty() throws IOException {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      shard.markDirty();
+    }
+  }
+
+  @Override
+  public void force() {
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      if (shard.isDirty()) shard.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException exception = null;
+    for (PersistentHashMap<Key, Value> shard : myShards) {
+      try {
+        shard.close();
+      }
+      catch (IOException e) {
+        if (exception == null) exception = e;
+      }
+    }
+    if (exception != null) throw exception;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ": " + myFile + " (" + myShards.length + " shards)";
+  }
+}
@@ -0,0 +1,189 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.index.io;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Compares {@link CompressedIdSet} with a {@link BitSet} on random operations.
+ */
+public class CompressedIdSetTest extends TestCase {
+  private static final int CHUNK = 1 << 16;
+
+  public void testRandomOperations() {
+    for (int seed = 0; seed < 40; seed++) {
+      Random random = new Random(seed);
+      IdGenerator ids = IdGenerator.values()[seed % IdGenerator.values().length];
+
+      CompressedIdSet set = new CompressedIdSet();
+      BitSet expected = new BitSet();
+      for (int step = 0; step < 30000; step++) {
+        int id = ids.next(random);
+        int action = random.nextInt(10);
+        if (action < 6) {
+          assertEquals("seed " + seed, !expected.get(id), set.add(id));
+          expected.set(id);
+        }
+        else if (action < 9) {
+          assertEquals("seed " + seed, expected.get(id), set.remove(id));
+          expected.clear(id);
+        }
+        else {
+          assertEquals("seed " + seed, expected.get(id), set.contains(id));
+        }
+
+        if (step % 5000 == 0) {
+          set.compact();
+          assertSameIds(seed, expected, set);
+        }
+      }
+      assertSameIds(seed, expected, set);
+      set.compact();
+      assertSameIds(seed, expected, set);
+    }
+  }
+
+  public void testArrayAndBitmapChunks() {
+    CompressedIdSet set = new CompressedIdSet();
+    BitSet expected = new BitSet();
+
+    // fill one chunk past the array limit, so it turns into a bitmap, and empty it again
+    int base = 3 * CHUNK;
+    for (int i = 0; i <= CompressedIdSet.ARRAY_CHUNK_MAX + 10; i++) {
+      int id = base + i * 7 % CHUNK;
+      set.add(id);
+      expected.set(id);
+    }
+    assertSameIds(0, expected, set);
+
+    for (int id = expected.nextSetBit(0); id >= 0; id = expected.nextSetBit(id + 1)) {
+      if (id % 3 != 0) {
+        assertTrue(set.remove(id));
+        expected.clear(id);
+      }
+    }
+    set.compact();
+    assertSameIds(0, expected, set);
+
+    // ids on both sides of chunk borders
+    for (int chunk = 1; chunk < 5; chunk++) {
+      for (int delta = -2; delta <= 1; delta++) {
+        set.add(chunk * CHUNK + delta);
+        expected.set(chunk * CHUNK + delta);
+      }
+    }
+    assertSameIds(0, expected, set);
+    assertFalse(set.contains(-1));
+    assertFalse(set.remove(-1));
+  }
+
+  public void testCloneAndConstructors() {
+    Random random = new Random(1);
+    CompressedIdSet set = new CompressedIdSet();
+    BitSet expected = new BitSet();
+    for (int i = 0; i < 20000; i++) {
+      int id = IdGenerator.CLUSTERED.next(random);
+      set.add(id);
+      expected.set(id);
+    }
+
+    CompressedIdSet clone = set.clone();
+    BitSet cloneExpected = (BitSet)expected.clone();
+    for (int i = 0; i < 20000; i++) {
+      int id = IdGenerator.CLUSTERED.next(random);
+      if (random.nextBoolean()) {
+        set.add(id);
+        expected.set(id);
+      }
+      else {
+        set.remove(id);
+        expected.clear(id);
+      }
+    }
+    assertSameIds(0, expected, set);
+    assertSameIds(0, cloneExpected, clone);
+
+    assertSameIds(0, expected, new CompressedIdSet(set));
+    int[] array = expected.stream().toArray();
+    assertSameIds(0, expected, new CompressedIdSet(array, array.length));
+  }
+
+  public void testAndOr() {
+    for (int seed = 0; seed < 20; seed++) {
+      Random random = new Random(seed);
+      IdGenerator ids = IdGenerator.values()[seed % IdGenerator.values().length];
+      CompressedIdSet first = new CompressedIdSet();
+      CompressedIdSet second = new CompressedIdSet();
+      BitSet firstExpected = new BitSet();
+      BitSet secondExpected = new BitSet();
+      for (int i = random.nextInt(20000); i >= 0; i--) {
+        int id = ids.next(random);
+        first.add(id);
+        firstExpected.set(id);
+      }
+      for (int i = random.nextInt(20000); i >= 0; i--) {
+        int id = ids.next(random);
+        second.add(id);
+        secondExpected.set(id);
+      }
+
+      BitSet and = (BitSet)firstExpected.clone();
+      and.and(secondExpected);
+      assertSameIds(seed, and, first.and(second));
+
+      first.or(second);
+      firstExpected.or(secondExpected);
+      assertSameIds(seed, firstExpected, first);
+      assertSameIds(seed, secondExpected, second);
+    }
+  }
+
+  private static void assertSameIds(int seed, BitSet expected, CompressedIdSet set) {
+    String message = "seed " + seed;
+    assertEquals(message, expected.cardinality(), set.size());
+    assertEquals(message, expected.isEmpty(), set.isEmpty());
+
+    IntIdsIterator iterator = set.intIterator();
+    assertTrue(iterator.hasAscendingOrder());
+    assertEquals(message, expected.cardinality(), iterator.size());
+    IntIdsIterator copy = iterator.createCopyInInitialState();
+    for (int id = expected.nextSetBit(0); id >= 0; id = expected.nextSetBit(id + 1)) {
+      assertTrue(message, iterator.hasNext());
+      assertEquals(message, id, iterator.next());
+      assertTrue(message, copy.hasNext());
+      assertEquals(message, id, copy.next());
+      assertTrue(message, set.contains(id));
+    }
+    assertFalse(message, iterator.hasNext());
+    assertFalse(message, copy.hasNext());
+  }
+
+  private enum IdGenerator {
+    // a few dense chunks, arrays turn into bitmaps
+    DENSE {
+      @Override
+      int next(Random random) {
+        return random.nextInt(3 * CHUNK);
+      }
+    },
+    // many sparse chunks
+    SPARSE {
+      @Override
+      int next(Random random) {
+        return random.nextInt(1 << 26);
+      }
+    },
+    // ids near chunk borders and around the array limit of a chunk
+    CLUSTERED {
+      @Override
+      int next(Random random) {
+        int chunk = 1 + random.nextInt(3);
+        return random.nextBoolean() ? chunk * CHUNK - 1 - random.nextInt(64) : chunk * CHUNK + random.nextInt(3 * CompressedIdSet.ARRAY_CHUNK_MAX);
+      }
+    };
+
+    abstract int next(Random random);
+  }
+}
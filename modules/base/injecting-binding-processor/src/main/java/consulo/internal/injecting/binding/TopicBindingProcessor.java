@@ -41,7 +41,7 @@ import java.util.*;
 public class TopicBindingProcessor extends BindingProcessor {
   public static final String TOPIC_API = "consulo.annotation.component.TopicAPI";
 
-  private record TopicMethodInfo(String name, AppendTypeResult types) {
+  private record TopicMethodInfo(String name, AppendTypeResult types, ExecutableElement element) {
   }
 
   @Override
@@ -61,6 +61,7 @@ public class TopicBindingProcessor extends BindingProcessor {
     ClassName topicBindingClass = ClassName.bestGuess(topicBindingClassName);
 
     ClassName topicMethod = ClassName.bestGuess("consulo.component.bind.TopicMethod");
+    ClassName topicDispatcher = ClassName.bestGuess("consulo.component.bind.TopicDispatcher");
 
     for (TypeElement annotation : annotations) {
       Set<? extends Element> elementsAnnotatedWith = roundEnv.getElementsAnnotatedWith(annotation);
@@ -109,7 +110,7 @@ public class TopicBindingProcessor extends BindingProcessor {
 
               AppendTypeResult types = appendTypes(executableElement.getParameters(), paramTypes, "", "", false);
 
-              methods.add(new TopicMethodInfo(member.getSimpleName().toString(), types));
+              methods.add(new TopicMethodInfo(member.getSimpleName().toString(), types, executableElement));
             }
           }
 
@@ -173,6 +174,19 @@ public class TopicBindingProcessor extends BindingProcessor {
                   MethodSpec.methodBuilder("methods").addModifiers(Modifier.PUBLIC).returns(ArrayTypeName.of(topicMethod)).addCode(CodeBlock.of(methodsBuilder.toString(), methodsArgs.toArray()))
                           .build());
 
+          // generic topics are published via proxy
+          if (typeElement.getTypeParameters().isEmpty()) {
+            bindBuilder.addType(generatePublisher(typeElement, methods, topicMethod, topicDispatcher));
+
+            bindBuilder.addMethod(MethodSpec.methodBuilder("createPublisher")
+                                          .addAnnotation(Override.class)
+                                          .addModifiers(Modifier.PUBLIC)
+                                          .returns(Object.class)
+                                          .addParameter(topicDispatcher, "dispatcher")
+                                          .addCode("return new Publisher(dispatcher, methods());\n")
+                                          .build());
+          }
+
           TypeSpec bindClass = bindBuilder.build();
 
           PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(typeElement);
@@ -194,6 +208,61 @@ public class TopicBindingProcessor extends BindingProcessor {
     return true;
   }
 
+  /**
+   * Generates implementation of topic which calls subscribers directly, without {@link java.lang.reflect.Proxy} and message allocation
+   */
+  private static TypeSpec generatePublisher(TypeElement typeElement, List<TopicMethodInfo> methods, ClassName topicMethod, ClassName topicDispatcher) {
+    ClassName topicClass = ClassName.get(typeElement);
+
+    TypeSpec.Builder builder = TypeSpec.classBuilder("Publisher");
+    builder.addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+    builder.addSuperinterface(topicClass);
+    builder.addField(topicDispatcher, "myDispatcher", Modifier.PRIVATE, Modifier.FINAL);
+    builder.addField(ArrayTypeName.of(topicMethod), "myMethods", Modifier.PRIVATE, Modifier.FINAL);
+
+    builder.addMethod(MethodSpec.constructorBuilder()
+                              .addParameter(topicDispatcher, "dispatcher")
+                              .addParameter(ArrayTypeName.of(topicMethod), "methods")
+                              .addCode("myDispatcher = dispatcher;\nmyMethods = methods;\n")
+                              .build());
+
+    for (int i = 0; i < methods.size(); i++) {
+      ExecutableElement element = methods.get(i).element();
+
+      MethodSpec.Builder methodBuilder = MethodSpec.overriding(element);
+
+      StringJoiner args = new StringJoiner(", ");
+      for (VariableElement parameter : element.getParameters()) {
+        args.add(parameter.getSimpleName());
+      }
+
+      String name = element.getSimpleName().toString();
+
+      CodeBlock.Builder code = CodeBlock.builder();
+      code.addStatement("Object $$handlers = myDispatcher.getDirectHandlers()");
+      code.beginControlFlow("if ($$handlers == null)");
+      code.addStatement("myDispatcher.post(myMethods[$L], new Object[]{$L})", i, args.toString());
+      code.addStatement("return");
+      code.endControlFlow();
+      code.beginControlFlow("try");
+      code.beginControlFlow("if ($$handlers instanceof $T)", List.class);
+      code.addStatement("$T<?> $$list = ($T<?>)$$handlers", List.class, List.class);
+      code.beginControlFlow("for (int $$i = 0; $$i < $$list.size(); $$i++)");
+      code.addStatement("(($T)$$list.get($$i)).$L($L)", topicClass, name, args.toString());
+      code.endControlFlow();
+      code.nextControlFlow("else");
+      code.addStatement("(($T)$$handlers).$L($L)", topicClass, name, args.toString());
+      code.endControlFlow();
+      code.nextControlFlow("catch ($T $$e)", Throwable.class);
+      code.addStatement("myDispatcher.handleException($$e)");
+      code.endControlFlow();
+
+      methodBuilder.addCode(code.build());
+      builder.addMethod(methodBuilder.build());
+    }
+    return builder.build();
+  }
+
   private static boolean isVoid(TypeMirror mirror) {
     if (mirror instanceof NoType) {
       return mirror.getKind() == TypeKind.VOID;
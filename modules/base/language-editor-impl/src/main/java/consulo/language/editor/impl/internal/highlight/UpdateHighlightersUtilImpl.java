@@ -158,8 +158,9 @@ public class UpdateHighlightersUtilImpl {
       }
       return true;
     });
-    for (RangeHighlighter highlighter : infosToRemove.forAllInGarbageBin()) {
-      highlighter.dispose();
+    Collection<? extends RangeHighlighter> garbage = infosToRemove.forAllInGarbageBin();
+    if (!garbage.isEmpty()) {
+      markup.removeHighlighters(garbage);
       changed[0] = true;
     }
 
@@ -401,7 +402,7 @@ public class UpdateHighlightersUtilImpl {
       codeAnalyzer.cleanFileLevelHighlights(project, group, psiFile);
     }
 
-    final MarkupModel markup = DocumentMarkupModel.forDocument(document, project, true);
+    final MarkupModelEx markup = (MarkupModelEx)DocumentMarkupModel.forDocument(document, project, true);
     assertMarkupConsistent(markup, project);
 
     final SeverityRegistrar severityRegistrar = SeverityRegistrar.getSeverityRegistrar(project);
@@ -448,13 +449,14 @@ public class UpdateHighlightersUtilImpl {
         return true;
       }
       if (info.getStartOffset() < priorityRange.getStartOffset() || info.getEndOffset() > priorityRange.getEndOffset()) {
-        createOrReuseHighlighterFor(info, colorsScheme, document, group, psiFile, (MarkupModelEx)markup, infosToRemove, ranges2markersCache, severityRegistrar);
+        createOrReuseHighlighterFor(info, colorsScheme, document, group, psiFile, markup, infosToRemove, ranges2markersCache, severityRegistrar);
         changed[0] = true;
       }
       return true;
     });
-    for (RangeHighlighter highlighter : infosToRemove.forAllInGarbageBin()) {
-      highlighter.dispose();
+    Collection<? extends RangeHighlighter> garbage = infosToRemove.forAllInGarbageBin();
+    if (!garbage.isEmpty()) {
+      markup.removeHighlighters(garbage);
       changed[0] = true;
     }
 
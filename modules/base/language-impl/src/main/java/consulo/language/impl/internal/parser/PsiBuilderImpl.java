@@ -15,6 +15,7 @@
  */
 package consulo.language.impl.internal.parser;
 
+import consulo.application.ApplicationManager;
 import consulo.application.progress.EmptyProgressIndicator;
 import consulo.application.progress.ProgressIndicator;
 import consulo.application.progress.ProgressIndicatorProvider;
@@ -24,6 +25,8 @@ import consulo.language.impl.internal.psi.diff.*;
 import consulo.language.impl.psi.ForeignLeafPsiElement;
 import consulo.language.impl.psi.PsiWhiteSpaceImpl;
 import consulo.language.lexer.Lexer;
+import consulo.language.lexer.RestartableLexer;
+import consulo.language.lexer.TokenIterator;
 import consulo.language.parser.*;
 import consulo.language.psi.PsiErrorElement;
 import consulo.language.psi.PsiFile;
@@ -43,11 +46,13 @@ import consulo.util.dataholder.Key;
 import consulo.util.dataholder.UnprotectedUserDataHolder;
 import consulo.util.lang.*;
 import consulo.util.lang.ref.SimpleReference;
+import consulo.util.lang.ref.SoftReference;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
@@ -59,6 +64,10 @@ public class PsiBuilderImpl extends UnprotectedUserDataHolder implements PsiBuil
   private static final Logger LOG = Logger.getInstance(PsiBuilderImpl.class);
 
   private static final Key<LazyParseableTokensCache> LAZY_PARSEABLE_TOKENS = Key.create("LAZY_PARSEABLE_TOKENS");
+  private static final Key<SoftReference<ReparseLexemesCache>> REPARSE_LEXEMES = Key.create("REPARSE_LEXEMES");
+  private static final boolean INCREMENTAL_RELEXING = SystemProperties.getBooleanProperty("idea.psi.builder.incremental.relexing", true);
+  // smaller texts are relexed from scratch faster than previous lexemes are restored
+  private static final int INCREMENTAL_RELEXING_THRESHOLD = 32 * 1024;
 
   private TokenSet myAnyLanguageWhitespaceTokens = TokenSet.EMPTY;
 
@@ -68,6 +77,8 @@ public class PsiBuilderImpl extends UnprotectedUserDataHolder implements PsiBuil
 
   private int[] myLexStarts;
   private IElementType[] myLexTypes;
+  // lexer states at token starts, tracked only while lexing text which is cached for incremental relexing
+  private int[] myLexStates;
   private int myCurrentLexeme;
 
   private final MyList myProduction = new MyList();
@@ -233,10 +244,34 @@ public class PsiBuilderImpl extends UnprotectedUserDataHolder implements PsiBuil
       }
     }
 
+    if (isIncrementalRelexingApplicable()) {
+      if (!relexIncrementally()) {
+        lexText(true);
+      }
+      cacheLexemesForReparse();
+    }
+    else {
+      lexText(false);
+    }
+
+    //noinspection ConstantConditions
+    if (doLexingOptimizationCorrectionCheck && lexemeCount != -1) {
+      assert lexemeCount == myLexemeCount;
+      for (int j = 0; j < lexemeCount; ++j) {
+        if (myLexStarts[j] != lexStarts[j] || myLexTypes[j] != lexTypes[j]) {
+          assert false;
+        }
+      }
+      assert myLexStarts[lexemeCount] == lexStarts[lexemeCount];
+    }
+  }
+
+  private void lexText(boolean trackStates) {
     int approxLexCount = Math.max(10, myText.length() / 5);
 
     myLexStarts = new int[approxLexCount];
     myLexTypes = new IElementType[approxLexCount];
+    myLexStates = trackStates ? new int[approxLexCount] : null;
 
     myLexer.start(myText);
     int i = 0;
@@ -252,22 +287,11 @@ public class PsiBuilderImpl extends UnprotectedUserDataHolder implements PsiBuil
       }
       int tokenStart = myLexer.getTokenStart();
       if (tokenStart < offset) {
-        final StringBuilder sb = new StringBuilder();
-        final IElementType tokenType = myLexer.getTokenType();
-        sb.append("Token sequence broken").append("\n  this: '").append(myLexer.getTokenText()).append("' (").append(tokenType).append(':').append(tokenType != null ? tokenType.getLanguage() : null)
-                .append(") ").append(tokenStart).append(":").append(myLexer.getTokenEnd());
-        if (i > 0) {
-          final int prevStart = myLexStarts[i - 1];
-          sb.append("\n  prev: '").append(myText.subSequence(prevStart, offset)).append("' (").append(myLexTypes[i - 1]).append(':').append(myLexTypes[i - 1].getLanguage()).append(") ")
-                  .append(prevStart).append(":").append(offset);
-        }
-        final int quoteStart = Math.max(tokenStart - 256, 0);
-        final int quoteEnd = Math.min(tokenStart + 256, myText.length());
-        sb.append("\n  quote: [").append(quoteStart).append(':').append(quoteEnd).append("] '").append(myText.subSequence(quoteStart, quoteEnd)).append('\'');
-        LOG.error(sb);
+        reportBrokenTokenSequence(i, tokenStart, offset);
       }
       myLexStarts[i] = offset = tokenStart;
       myLexTypes[i] = type;
+      if (trackStates) myLexStates[i] = myLexer.getState();
       i++;
       myLexer.advance();
     }
@@ -276,16 +300,224 @@ public class PsiBuilderImpl extends UnprotectedUserDataHolder implements PsiBuil
 
     myLexemeCount = i;
     clearCachedTokenType();
+  }
 
-    //noinspection ConstantConditions
-    if (doLexingOptimizationCorrectionCheck && lexemeCount != -1) {
-      assert lexemeCount == myLexemeCount;
-      for (int j = 0; j < lexemeCount; ++j) {
-        if (myLexStarts[j] != lexStarts[j] || myLexTypes[j] != lexTypes[j]) {
-          assert false;
+  private void reportBrokenTokenSequence(int index, int tokenStart, int offset) {
+    final StringBuilder sb = new StringBuilder();
+    final IElementType tokenType = myLexer.getTokenType();
+    sb.append("Token sequence broken").append("\n  this: '").append(myLexer.getTokenText()).append("' (").append(tokenType).append(':').append(tokenType != null ? tokenType.getLanguage() : null)
+            .append(") ").append(tokenStart).append(":").append(myLexer.getTokenEnd());
+    if (index > 0) {
+      final int prevStart = myLexStarts[index - 1];
+      sb.append("\n  prev: '").append(myText.subSequence(prevStart, offset)).append("' (").append(myLexTypes[index - 1]).append(':').append(myLexTypes[index - 1].getLanguage()).append(") ")
+              .append(prevStart).append(":").append(offset);
+    }
+    final int quoteStart = Math.max(tokenStart - 256, 0);
+    final int quoteEnd = Math.min(tokenStart + 256, myText.length());
+    sb.append("\n  quote: [").append(quoteStart).append(':').append(quoteEnd).append("] '").append(myText.subSequence(quoteStart, quoteEnd)).append('\'');
+    LOG.error(sb);
+  }
+
+  /**
+   * Incremental relexing is opt-in: only lexers which declare their restartable states by {@link RestartableLexer} are relexed
+   * incrementally, no lexemes are kept for other lexers.
+   */
+  private boolean isIncrementalRelexingApplicable() {
+    return INCREMENTAL_RELEXING && myOriginalTree != null && myText.length() >= INCREMENTAL_RELEXING_THRESHOLD && myLexer instanceof RestartableLexer;
+  }
+
+  /**
+   * Lexemes of the text being reparsed, kept on the reparsed tree for the next reparse.
+   * Token types are copied since the parser remaps them in place. The text itself is not kept, only its length and hash
+   * to check that the next reparse starts from the same text.
+   */
+  private static final class ReparseLexemesCache {
+    private final int myTextLength;
+    private final int myTextHash;
+    private final Class<?> myLexerClass;
+    private final LanguageVersion myLanguageVersion;
+    private final int[] myLexStarts;
+    private final IElementType[] myLexTypes;
+    private final int[] myLexStates;
+    private final int myLexemeCount;
+
+    ReparseLexemesCache(PsiBuilderImpl builder) {
+      myTextLength = builder.myText.length();
+      myTextHash = StringUtil.stringHashCode(builder.myText);
+      myLexerClass = builder.myLexer.getClass();
+      myLanguageVersion = builder.myLanguageVersion;
+      myLexemeCount = builder.myLexemeCount;
+      myLexStarts = Arrays.copyOf(builder.myLexStarts, myLexemeCount + 1);
+      myLexTypes = Arrays.copyOf(builder.myLexTypes, myLexemeCount);
+      myLexStates = Arrays.copyOf(builder.myLexStates, myLexemeCount);
+    }
+
+    int findLexeme(int offset) {
+      int bsResult = Arrays.binarySearch(myLexStarts, 0, myLexemeCount, offset);
+      return bsResult >= 0 ? bsResult : -bsResult - 2;
+    }
+
+    boolean isLexemesOf(@Nonnull CharSequence text) {
+      return myTextLength == text.length() && myTextHash == StringUtil.stringHashCode(text);
+    }
+
+    // previous lexemes before the restart token are the same in the new text
+    @Nonnull
+    TokenIterator createTokenIterator(int restartIndex) {
+      return new TokenIterator() {
+        @Override
+        public int getStartOffset(int index) {
+          return myLexStarts[index];
         }
+
+        @Override
+        public int getEndOffset(int index) {
+          return myLexStarts[index + 1];
+        }
+
+        @Override
+        public IElementType getType(int index) {
+          return myLexTypes[index];
+        }
+
+        @Override
+        public int getState(int index) {
+          return myLexStates[index];
+        }
+
+        @Override
+        public int getTokenCount() {
+          return restartIndex;
+        }
+
+        @Override
+        public int initialTokenIndex() {
+          return restartIndex;
+        }
+      };
+    }
+  }
+
+  private void cacheLexemesForReparse() {
+    myOriginalTree.putUserData(REPARSE_LEXEMES, new SoftReference<>(new ReparseLexemesCache(this)));
+    myLexStates = null;
+  }
+
+  /**
+   * Reuses lexemes of the previous reparse of the same tree: lexing is restarted from a token in a restartable lexer state before
+   * the changed text and stops as soon as a token after the change matches a previous token in a restartable state,
+   * the rest of the previous lexemes is shifted. The same convention as of the editor highlighter lexing of {@link RestartableLexer} is used.
+   *
+   * @return false if there are no lexemes of the previous text, the builder should lex the whole text then
+   */
+  private boolean relexIncrementally() {
+    ReparseLexemesCache previous = SoftReference.dereference(myOriginalTree.getUserData(REPARSE_LEXEMES));
+    if (previous == null ||
+        previous.myLexemeCount == 0 ||
+        previous.myLexerClass != myLexer.getClass() ||
+        previous.myLanguageVersion != myLanguageVersion ||
+        !previous.isLexemesOf(myLastCommittedText)) {
+      return false;
+    }
+
+    RestartableLexer restartableLexer = (RestartableLexer)myLexer;
+    CharSequence oldText = myLastCommittedText;
+    int oldLength = oldText.length();
+    int newLength = myText.length();
+    int commonLength = Math.min(oldLength, newLength);
+    int prefix = 0;
+    while (prefix < commonLength && oldText.charAt(prefix) == myText.charAt(prefix)) prefix++;
+    int suffix = 0;
+    while (suffix < commonLength - prefix && oldText.charAt(oldLength - suffix - 1) == myText.charAt(newLength - suffix - 1)) suffix++;
+    int shift = newLength - oldLength;
+    int changeEnd = newLength - suffix;
+
+    // a lexer could look ahead into the changed text while lexing preceding tokens, so start a bit earlier like the editor highlighter does
+    int restartIndex = Math.max(0, previous.findLexeme(prefix) - 2);
+    while (restartIndex > 0 && !restartableLexer.isRestartableState(previous.myLexStates[restartIndex])) restartIndex--;
+
+    int capacity = Math.max(10, previous.myLexemeCount + Math.max(shift / 5, 0) + 10);
+    myLexStarts = new int[capacity + 1];
+    myLexTypes = new IElementType[capacity];
+    myLexStates = new int[capacity];
+    System.arraycopy(previous.myLexStarts, 0, myLexStarts, 0, restartIndex);
+    System.arraycopy(previous.myLexTypes, 0, myLexTypes, 0, restartIndex);
+    System.arraycopy(previous.myLexStates, 0, myLexStates, 0, restartIndex);
+
+    if (restartIndex == 0) {
+      myLexer.start(myText);
+    }
+    else {
+      restartableLexer.start(myText, previous.myLexStarts[restartIndex], newLength, previous.myLexStates[restartIndex], previous.createTokenIterator(restartIndex));
+    }
+
+    int i = restartIndex;
+    int offset = restartIndex > 0 ? previous.myLexStarts[restartIndex - 1] : 0;
+    int previousIndex = -1;
+    while (true) {
+      IElementType type = myLexer.getTokenType();
+      if (type == null) break;
+
+      if (i % 20 == 0) ProgressIndicatorProvider.checkCanceled();
+
+      int tokenStart = myLexer.getTokenStart();
+      if (tokenStart < offset) {
+        reportBrokenTokenSequence(i, tokenStart, offset);
       }
-      assert myLexStarts[lexemeCount] == lexStarts[lexemeCount];
+      int state = myLexer.getState();
+      if (tokenStart >= changeEnd && restartableLexer.isRestartableState(state)) {
+        int candidate = previous.findLexeme(tokenStart - shift);
+        if (candidate >= 0 && previous.myLexStarts[candidate] == tokenStart - shift && previous.myLexTypes[candidate] == type && previous.myLexStates[candidate] == state) {
+          previousIndex = candidate;
+          break;
+        }
+      }
+
+      if (i >= myLexTypes.length - 1) {
+        resizeLexemes(i * 3 / 2);
+      }
+      myLexStarts[i] = offset = tokenStart;
+      myLexTypes[i] = type;
+      myLexStates[i] = state;
+      i++;
+      myLexer.advance();
+    }
+
+    if (previousIndex >= 0) {
+      int count = previous.myLexemeCount - previousIndex;
+      if (i + count >= myLexTypes.length) {
+        resizeLexemes(i + count + 1);
+      }
+      for (int j = 0; j < count; j++) {
+        myLexStarts[i + j] = previous.myLexStarts[previousIndex + j] + shift;
+      }
+      System.arraycopy(previous.myLexTypes, previousIndex, myLexTypes, i, count);
+      System.arraycopy(previous.myLexStates, previousIndex, myLexStates, i, count);
+      i += count;
+    }
+
+    myLexStarts[i] = newLength;
+    myLexemeCount = i;
+    clearCachedTokenType();
+
+    if (ApplicationManager.getApplication().isUnitTestMode() || ApplicationManager.getApplication().isInternal()) {
+      checkIncrementalRelexing(restartIndex, previousIndex);
+    }
+    return true;
+  }
+
+  private void checkIncrementalRelexing(int restartIndex, int previousIndex) {
+    int[] lexStarts = myLexStarts;
+    IElementType[] lexTypes = myLexTypes;
+    int lexemeCount = myLexemeCount;
+    lexText(true);
+    boolean same = lexemeCount == myLexemeCount;
+    for (int j = 0; same && j <= lexemeCount; j++) {
+      same = lexStarts[j] == myLexStarts[j] && (j == lexemeCount || lexTypes[j] == myLexTypes[j]);
+    }
+    if (!same) {
+      LOG.error("Incremental relexing by " + myLexer.getClass().getName() + " differs from full lexing, restarted at lexeme " + restartIndex +
+                ", synchronized at previous lexeme " + previousIndex);
     }
   }
 
@@ -889,6 +1121,7 @@ public class PsiBuilderImpl extends UnprotectedUserDataHolder implements PsiBuil
   private void resizeLexemes(final int newSize) {
     myLexStarts = ArrayUtil.realloc(myLexStarts, newSize + 1);
     myLexTypes = ArrayUtil.realloc(myLexTypes, newSize, IElementType.ARRAY_FACTORY);
+    if (myLexStates != null) myLexStates = ArrayUtil.realloc(myLexStates, newSize);
     clearCachedTokenType();
   }
 
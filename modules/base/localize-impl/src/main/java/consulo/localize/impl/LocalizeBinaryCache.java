@@ -0,0 +1,251 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.localize.impl;
+
+import consulo.localize.LocalizeKey;
+import consulo.logging.Logger;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Localize texts of a library jar compiled from yaml files into a binary file, which is memory mapped on the next start instead
+ * of parsing of yaml.
+ * <p>
+ * The file starts with a table of localize files (locale, localize id, offset of its hash table). A hash table is an open addressing
+ * table of a power of two capacity, which is at least two times bigger than the number of keys, so a lookup usually checks one slot.
+ * Keys and texts are stored as UTF-16 chars and are compared and decoded only on lookup, nothing is kept on heap for unused texts.
+ * The file is bound to the jar by its length and modification time, a stale file is rewritten.
+ */
+final class LocalizeBinaryCache {
+  private static final Logger LOG = Logger.getInstance(LocalizeBinaryCache.class);
+
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 8 + 8;
+
+  private LocalizeBinaryCache() {
+  }
+
+  @Nonnull
+  static Path getCacheFile(@Nonnull Path cacheDirectory, @Nonnull File jarFile) {
+    return cacheDirectory.resolve(jarFile.getName() + "." + Integer.toHexString(jarFile.getAbsolutePath().hashCode()) + ".bin");
+  }
+
+  /**
+   * @return states by localize id by locale, or null if there is no up-to-date compiled file for the jar
+   */
+  @Nullable
+  static Map<String, Map<String, LocalizeFileState>> load(@Nonnull Path cacheFile, @Nonnull File jarFile) {
+    if (!Files.isRegularFile(cacheFile)) return null;
+
+    try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+      // the header is checked before mapping: a mapping of a stale file would live until GC and prevent replacing the file on Windows
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0) return null;
+      }
+      header.flip();
+      if (header.getInt() != VERSION || header.getLong() != jarFile.length() || header.getLong() != jarFile.lastModified()) {
+        return null;
+      }
+
+      // mapping stays valid after the channel is closed
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, channel.size() - HEADER_SIZE);
+
+      int count = buffer.getInt();
+      List<String[]> names = new ArrayList<>(count);
+      int[] offsets = new int[count];
+      for (int i = 0; i < count; i++) {
+        names.add(new String[]{readString(buffer, buffer.position()), null});
+        buffer.position(buffer.position() + 4 + 2 * buffer.getInt(buffer.position()));
+        names.get(i)[1] = readString(buffer, buffer.position());
+        buffer.position(buffer.position() + 4 + 2 * buffer.getInt(buffer.position()));
+        offsets[i] = buffer.getInt();
+      }
+
+      // offsets are relative to the data section which follows the table of files
+      ByteBuffer data = buffer.slice();
+      Map<String, Map<String, LocalizeFileState>> result = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+        if (offsets[i] < 0 || offsets[i] >= data.limit()) throw new IOException("Invalid offset of " + names.get(i)[1]);
+        result.computeIfAbsent(names.get(i)[0], l -> new HashMap<>()).put(names.get(i)[1], new BinaryLocalizeFileState(data, offsets[i]));
+      }
+      return result;
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.warn("Corrupted localize cache " + cacheFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Parses yaml files of the jar and writes them to the cache file.
+   *
+   * @param files urls of yaml files by localize id by locale
+   */
+  static void write(@Nonnull Path cacheFile, @Nonnull File jarFile, @Nonnull Map<String, Map<String, URL>> files) throws IOException {
+    long jarLength = jarFile.length();
+    long jarTimestamp = jarFile.lastModified();
+
+    ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(dataBytes);
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(headerBytes);
+
+    int count = 0;
+    for (Map<String, URL> byId : files.values()) {
+      count += byId.size();
+    }
+
+    header.writeInt(VERSION);
+    header.writeLong(jarLength);
+    header.writeLong(jarTimestamp);
+    header.writeInt(count);
+    for (Map.Entry<String, Map<String, URL>> localeEntry : files.entrySet()) {
+      for (Map.Entry<String, URL> idEntry : localeEntry.getValue().entrySet()) {
+        // fails on a broken file, the cache is not written then and yaml files are loaded on next start again
+        Map<String, LocalizeKeyText> texts = new YamlLocalizeFileState(idEntry.getKey(), idEntry.getValue()).parseTexts(idEntry.getValue());
+
+        writeString(header, localeEntry.getKey());
+        writeString(header, idEntry.getKey());
+        header.writeInt(data.size());
+        writeTable(data, texts);
+      }
+    }
+
+    header.flush();
+    data.flush();
+
+    Files.createDirectories(cacheFile.getParent());
+    // unique name, the system directory may be shared by several running instances
+    Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream stream = Files.newOutputStream(tempFile)) {
+        headerBytes.writeTo(stream);
+        dataBytes.writeTo(stream);
+      }
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static void writeTable(@Nonnull DataOutputStream data, @Nonnull Map<String, LocalizeKeyText> texts) throws IOException {
+    List<Map.Entry<String, LocalizeKeyText>> entries = new ArrayList<>(texts.entrySet());
+    int capacity = Integer.highestOneBit(Math.max(1, entries.size()) * 2 - 1) << 1;
+
+    int[] slots = new int[capacity];
+    for (int i = 0; i < entries.size(); i++) {
+      int slot = hash(entries.get(i).getKey()) & (capacity - 1);
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      slots[slot] = i + 1;
+    }
+
+    // table: capacity, slots with entry numbers (0 is empty), entry count, entries of key and text offsets, strings
+    int tableStart = data.size();
+    int stringsStart = tableStart + 4 + 4 * capacity + 4 + 8 * entries.size();
+    data.writeInt(capacity);
+    for (int slot : slots) {
+      data.writeInt(slot);
+    }
+    data.writeInt(entries.size());
+    int stringOffset = stringsStart;
+    for (Map.Entry<String, LocalizeKeyText> entry : entries) {
+      data.writeInt(stringOffset);
+      stringOffset += 4 + 2 * entry.getKey().length();
+      data.writeInt(stringOffset);
+      stringOffset += 4 + 2 * entry.getValue().getText().length();
+    }
+    for (Map.Entry<String, LocalizeKeyText> entry : entries) {
+      writeString(data, entry.getKey());
+      writeString(data, entry.getValue().getText());
+    }
+  }
+
+  private static int hash(@Nonnull String key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static void writeString(@Nonnull DataOutputStream output, @Nonnull String value) throws IOException {
+    output.writeInt(value.length());
+    output.writeChars(value);
+  }
+
+  @Nonnull
+  private static String readString(@Nonnull ByteBuffer buffer, int offset) {
+    int length = buffer.getInt(offset);
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = buffer.getChar(offset + 4 + 2 * i);
+    }
+    return new String(chars);
+  }
+
+  private static boolean stringEquals(@Nonnull ByteBuffer buffer, int offset, @Nonnull String value) {
+    int length = buffer.getInt(offset);
+    if (length != value.length()) return false;
+    for (int i = 0; i < length; i++) {
+      if (buffer.getChar(offset + 4 + 2 * i) != value.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  private static final class BinaryLocalizeFileState extends LocalizeFileState {
+    // only absolute reads are used, so the buffer is shared by all states of the jar and by threads
+    private final ByteBuffer myData;
+    private final int myTableOffset;
+
+    BinaryLocalizeFileState(@Nonnull ByteBuffer data, int tableOffset) {
+      myData = data;
+      myTableOffset = tableOffset;
+    }
+
+    @Nullable
+    @Override
+    public String getValue(LocalizeKey key) {
+      String keyText = key.getKey();
+      int capacity = myData.getInt(myTableOffset);
+      int slotsOffset = myTableOffset + 4;
+      int entriesOffset = slotsOffset + 4 * capacity + 4;
+
+      int slot = hash(keyText) & (capacity - 1);
+      for (int probes = 0; probes < capacity; probes++) {
+        int entry = myData.getInt(slotsOffset + 4 * slot);
+        if (entry == 0) return null;
+
+        int entryOffset = entriesOffset + 8 * (entry - 1);
+        if (stringEquals(myData, myData.getInt(entryOffset), keyText)) {
+          return readString(myData, myData.getInt(entryOffset + 4));
+        }
+        slot = (slot + 1) & (capacity - 1);
+      }
+      return null;
+    }
+  }
+}
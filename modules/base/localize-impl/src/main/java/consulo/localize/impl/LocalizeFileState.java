@@ -16,72 +16,16 @@
 package consulo.localize.impl;
 
 import consulo.localize.LocalizeKey;
-import consulo.logging.Logger;
-import consulo.util.lang.StringUtil;
-import org.yaml.snakeyaml.Yaml;
 
-import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
 
 /**
+ * Texts of one localize id in one locale, loaded on first access.
+ *
  * @author VISTALL
  * @since 2020-05-20
  */
-class LocalizeFileState {
-  private static final Logger LOG = Logger.getInstance(LocalizeFileState.class);
-
-  private final String myId;
-  private URL myFileUrl;
-
-  private volatile Map<String, LocalizeKeyText> myTexts;
-
-  public LocalizeFileState(String id, URL fileUrl) {
-    myId = id;
-    myFileUrl = fileUrl;
-  }
-
+abstract class LocalizeFileState {
   @Nullable
-  public String getValue(LocalizeKey key) {
-    Map<String, LocalizeKeyText> texts = myTexts;
-
-    if (texts == null) {
-      texts = loadTexts(myFileUrl);
-      myTexts = texts;
-    }
-
-    LocalizeKeyText text = texts.get(key.getKey());
-    return text == null ? null : text.getText();
-  }
-
-  @Nonnull
-  private Map<String, LocalizeKeyText> loadTexts(URL fileUrl) {
-    Map<String, LocalizeKeyText> map = new HashMap<>();
-
-    long time = System.currentTimeMillis();
-
-    Yaml yaml = new Yaml();
-    try (InputStream stream = fileUrl.openStream()) {
-      Map<String, Map<String, String>> o = yaml.load(stream);
-
-      for (Map.Entry<String, Map<String, String>> entry : o.entrySet()) {
-        String key = entry.getKey();
-        Map<String, String> value = entry.getValue();
-
-        LocalizeKeyText instance = new LocalizeKeyText(StringUtil.notNullize(value.get("text")));
-
-        map.put(key.toLowerCase(Locale.ROOT), instance);
-      }
-    }
-    catch (Exception e) {
-      LOG.error(e);
-    }
-
-    LOG.info(myId + " parsed in " + (System.currentTimeMillis() - time) + " ms. Size: " + map.size());
-    return map;
-  }
+  public abstract String getValue(LocalizeKey key);
 }
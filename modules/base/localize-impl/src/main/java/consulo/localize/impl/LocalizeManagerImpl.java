@@ -23,6 +23,7 @@ import consulo.localize.LocalizeValue;
 import consulo.logging.Logger;
 import consulo.proxy.EventDispatcher;
 import consulo.util.io.URLUtil;
+import consulo.util.lang.SystemProperties;
 import consulo.util.lang.StringUtil;
 
 import jakarta.annotation.Nonnull;
@@ -30,8 +31,10 @@ import jakarta.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.ZipEntry;
@@ -50,6 +53,8 @@ public class LocalizeManagerImpl extends LocalizeManager {
 
   public static final String LOCALIZE_DIRECTORY = "LOCALIZE-LIB/";
 
+  private static final boolean ourBinaryCacheEnabled = SystemProperties.getBooleanProperty("consulo.localize.binary.cache", true);
+
   private final Map<Locale, Map<String, LocalizeFileState>> myLocalizes = new HashMap<>();
 
   private Locale myCurrentLocale = ourDefaultLocale;
@@ -58,7 +63,17 @@ public class LocalizeManagerImpl extends LocalizeManager {
 
   private final AtomicLong myModificationCount = new AtomicLong();
 
+  // binary caches to be compiled once the application thread pool is available, see #writeCaches
+  private final List<Runnable> myPendingCacheWrites = new ArrayList<>();
+
   public void initialize(@Nullable List<String> files) {
+    initialize(files, null);
+  }
+
+  /**
+   * @param cacheDirectory directory for texts compiled from yaml files of library jars, if null yaml files are parsed on each start
+   */
+  public void initialize(@Nullable List<String> files, @Nullable Path cacheDirectory) {
     if (myInitialized.compareAndSet(false, true)) {
       if(files == null) {
         return;
@@ -66,7 +81,7 @@ public class LocalizeManagerImpl extends LocalizeManager {
 
       for (String file : files) {
         try {
-          analyzeLibraryJar(file);
+          analyzeLibraryJar(file, ourBinaryCacheEnabled ? cacheDirectory : null);
         }
         catch (IOException e) {
           LOG.error("Fail to analyze library from url: " + file, e);
@@ -76,9 +91,35 @@ public class LocalizeManagerImpl extends LocalizeManager {
     }
   }
 
-  private void analyzeLibraryJar(String filePath) throws IOException {
+  private void analyzeLibraryJar(String filePath, @Nullable Path cacheDirectory) throws IOException {
     File jarFile = new File(filePath);
 
+    Path cacheFile = cacheDirectory == null ? null : LocalizeBinaryCache.getCacheFile(cacheDirectory, jarFile);
+
+    // locale <localize id, state>
+    Map<String, Map<String, LocalizeFileState>> localizeFiles = cacheFile == null ? null : LocalizeBinaryCache.load(cacheFile, jarFile);
+    if (localizeFiles == null) {
+      localizeFiles = loadYamlFiles(jarFile);
+
+      if (cacheFile != null && !localizeFiles.isEmpty()) {
+        scheduleCacheWrite(cacheFile, jarFile, localizeFiles);
+      }
+    }
+
+    for (Map.Entry<String, Map<String, LocalizeFileState>> entry : localizeFiles.entrySet()) {
+      String localeString = entry.getKey();
+      Map<String, LocalizeFileState> states = entry.getValue();
+
+      Locale locale = buildLocale(localeString);
+
+      Map<String, LocalizeFileState> mapByLocalizeId = myLocalizes.computeIfAbsent(locale, l -> new HashMap<>());
+
+      mapByLocalizeId.putAll(states);
+    }
+  }
+
+  @Nonnull
+  private static Map<String, Map<String, LocalizeFileState>> loadYamlFiles(File jarFile) throws IOException {
     // locale <localize id, state>
     Map<String, Map<String, LocalizeFileState>> localizeFiles = new HashMap<>();
 
@@ -102,20 +143,46 @@ public class LocalizeManagerImpl extends LocalizeManager {
 
           URL localizeFileUrl = URLUtil.getJarEntryURL(jarFile, name);
 
-          map.put(localizeId, new LocalizeFileState(localizeId, localizeFileUrl));
+          map.put(localizeId, new YamlLocalizeFileState(localizeId, localizeFileUrl));
         }
       }
     }
+    return localizeFiles;
+  }
 
-    for (Map.Entry<String, Map<String, LocalizeFileState>> entry : localizeFiles.entrySet()) {
-      String localeString = entry.getKey();
-      Map<String, LocalizeFileState> states = entry.getValue();
-
-      Locale locale = buildLocale(localeString);
+  /**
+   * Compiles binary caches of library jars which yaml files were parsed by {@link #initialize(List, Path)}.
+   */
+  public void writeCaches(@Nonnull Executor executor) {
+    List<Runnable> writes;
+    synchronized (myPendingCacheWrites) {
+      writes = new ArrayList<>(myPendingCacheWrites);
+      myPendingCacheWrites.clear();
+    }
+    for (Runnable write : writes) {
+      executor.execute(write);
+    }
+  }
 
-      Map<String, LocalizeFileState> mapByLocalizeId = myLocalizes.computeIfAbsent(locale, l -> new HashMap<>());
+  private void scheduleCacheWrite(Path cacheFile, File jarFile, Map<String, Map<String, LocalizeFileState>> localizeFiles) {
+    Map<String, Map<String, URL>> urls = new HashMap<>();
+    for (Map.Entry<String, Map<String, LocalizeFileState>> entry : localizeFiles.entrySet()) {
+      Map<String, URL> byId = urls.computeIfAbsent(entry.getKey(), l -> new HashMap<>());
+      for (Map.Entry<String, LocalizeFileState> stateEntry : entry.getValue().entrySet()) {
+        byId.put(stateEntry.getKey(), ((YamlLocalizeFileState)stateEntry.getValue()).getFileUrl());
+      }
+    }
 
-      mapByLocalizeId.putAll(states);
+    // yaml files are parsed second time here, but it's done once per jar version and doesn't block the startup
+    synchronized (myPendingCacheWrites) {
+      myPendingCacheWrites.add(() -> {
+        try {
+          LocalizeBinaryCache.write(cacheFile, jarFile, urls);
+        }
+        catch (IOException e) {
+          LOG.warn("Fail to write localize cache for " + jarFile, e);
+        }
+      });
     }
   }
 
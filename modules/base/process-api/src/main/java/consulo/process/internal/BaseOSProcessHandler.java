@@ -13,6 +13,7 @@ import consulo.process.io.BaseOutputReader;
 import consulo.process.io.ProcessIOExecutorService;
 import consulo.util.dataholder.Key;
 import consulo.util.lang.StringUtil;
+import consulo.util.lang.reflect.ReflectionUtil;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 
@@ -159,6 +160,14 @@ public class BaseOSProcessHandler extends LocalProcessHandler<Process> {
       return BaseOSProcessHandler.this.executeTask(runnable);
     }
 
+    @Override
+    protected boolean isMultiplexed() {
+      // subclasses may customize doRun(), handlers may run readers by their own executeTask()
+      return getClass() == SimpleOutputReader.class &&
+             ReflectionUtil.getMethodDeclaringClass(BaseOSProcessHandler.this.getClass(), "executeTask", Runnable.class) == BaseOSProcessHandler.class &&
+             canBeMultiplexed();
+    }
+
     @Override
     protected void onTextAvailable(@Nonnull String text) {
       notifyTextAvailable(text, myProcessOutputType);
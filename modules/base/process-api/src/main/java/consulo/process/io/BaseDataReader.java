@@ -26,6 +26,15 @@ public abstract class BaseDataReader {
 
   private Future<?> myFinishedFuture;
 
+  static final int POLL_IDLE = 0;
+  static final int POLL_ACTIVE = 1;
+  static final int POLL_FINISHED = 2;
+
+  // state of a reader polled by ProcessOutputMultiplexer
+  private boolean myStopSignalled;
+  private boolean myReadingFinished;
+  private volatile Runnable myMultiplexerWakeUp;
+
   /**
    * @param sleepingPolicy default is {@link SleepingPolicy#NON_BLOCKING} for the reasons described on {@link SleepingPolicy} which may be changed
    *                       in future versions.
@@ -37,7 +46,7 @@ public abstract class BaseDataReader {
 
   protected void startWithoutChangingThreadName() {
     if (myFinishedFuture == null) {
-      myFinishedFuture = executeOnPooledThread(() -> {
+      myFinishedFuture = isMultiplexed() ? ProcessOutputMultiplexer.register(this) : executeOnPooledThread(() -> {
         doRun();
       });
     }
@@ -47,6 +56,9 @@ public abstract class BaseDataReader {
     if (StringUtil.isEmptyOrSpaces(presentableName)) {
       LOG.warn(new Throwable("Must provide not-empty presentable name"));
     }
+    if (myFinishedFuture == null && isMultiplexed()) {
+      myFinishedFuture = ProcessOutputMultiplexer.register(this);
+    }
     if (myFinishedFuture == null) {
       myFinishedFuture = executeOnPooledThread(() -> {
         if (StringUtil.isEmptyOrSpaces(presentableName)) {
@@ -94,6 +106,19 @@ public abstract class BaseDataReader {
   @Nonnull
   protected abstract Future<?> executeOnPooledThread(@Nonnull Runnable runnable);
 
+  /**
+   * Non-blocking readers may be polled by a few shared threads instead of {@link #executeOnPooledThread(Runnable) a thread per reader}.
+   * A polled reader doesn't run {@link #doRun()} and {@link #executeOnPooledThread(Runnable)}, so it's off by default, a reader which
+   * doesn't customize them may turn it on by returning {@link #canBeMultiplexed()}.
+   */
+  protected boolean isMultiplexed() {
+    return false;
+  }
+
+  protected final boolean canBeMultiplexed() {
+    return mySleepingPolicy == SleepingPolicy.NON_BLOCKING && ProcessOutputMultiplexer.ENABLED;
+  }
+
   /**
    * <p>
    * <h2>Blocking</h2>
@@ -199,6 +224,48 @@ public abstract class BaseDataReader {
     }
   }
 
+  // one iteration of the doRun() loop for ProcessOutputMultiplexer, the reader is finished when POLL_FINISHED is returned
+  final int poll() {
+    try {
+      boolean read = readAvailable();
+      if (!myStopSignalled) {
+        myStopSignalled = isStopped;
+        if (myStopSignalled) {
+          // poll once more without sleeping to read the rest of the output
+          return POLL_ACTIVE;
+        }
+        beforeSleeping(read);
+        return read ? POLL_ACTIVE : POLL_IDLE;
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    catch (Exception e) {
+      LOG.error(e);
+    }
+    finishReading();
+    return POLL_FINISHED;
+  }
+
+  // flushes and closes the reader once, even if the multiplexer calls it again after flush() failed
+  final void finishReading() {
+    if (myReadingFinished) return;
+    myReadingFinished = true;
+
+    flush();
+    try {
+      close();
+    }
+    catch (IOException e) {
+      LOG.error("Can't close stream", e);
+    }
+  }
+
+  void setMultiplexerWakeUp(@Nonnull Runnable wakeUp) {
+    myMultiplexerWakeUp = wakeUp;
+  }
+
   protected void flush() {
   }
 
@@ -212,6 +279,10 @@ public abstract class BaseDataReader {
     synchronized (mySleepMonitor) {
       mySleepMonitor.notifyAll();
     }
+    Runnable wakeUp = myMultiplexerWakeUp;
+    if (wakeUp != null) {
+      wakeUp.run();
+    }
   }
 
   public void waitFor() throws InterruptedException {
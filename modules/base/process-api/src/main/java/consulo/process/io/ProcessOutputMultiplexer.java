@@ -0,0 +1,195 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.process.io;
+
+import consulo.logging.Logger;
+import consulo.util.concurrent.ConcurrencyUtil;
+import consulo.util.lang.SystemProperties;
+
+import jakarta.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Polls streams of all {@link BaseDataReader.SleepingPolicy#NON_BLOCKING non-blocking} readers by a few threads, instead of a thread
+ * per stream sleeping between its own polls. The number of threads and wake-ups doesn't depend on the number of running processes.
+ * <p>
+ * Each reader is assigned to the least loaded poller. Readers of a poller are polled one by one and listeners are notified on the poller
+ * thread, so a listener which is slow to process output of one process delays reading of other processes of the same poller, and a listener
+ * which blocks on another process (e.g. writes output of one process to the input of another one) may never be released.
+ * That's why it's off unless enabled by the {@code process.output.multiplexer} property.
+ */
+final class ProcessOutputMultiplexer {
+  private static final Logger LOG = Logger.getInstance(ProcessOutputMultiplexer.class);
+
+  static final boolean ENABLED = SystemProperties.getBooleanProperty("process.output.multiplexer", false);
+  private static final Poller[] ourPollers = createPollers(SystemProperties.getIntProperty("process.output.multiplexer.threads", 2));
+
+  private ProcessOutputMultiplexer() {
+  }
+
+  private static Poller[] createPollers(int count) {
+    Poller[] pollers = new Poller[Math.max(1, count)];
+    for (int i = 0; i < pollers.length; i++) {
+      pollers[i] = new Poller(i + 1);
+    }
+    return pollers;
+  }
+
+  /**
+   * @return future which is completed when the reader is stopped, its stream is read to the end and closed
+   */
+  @Nonnull
+  static Future<?> register(@Nonnull BaseDataReader reader) {
+    Poller target = ourPollers[0];
+    for (Poller poller : ourPollers) {
+      if (poller.getReaderCount() < target.getReaderCount()) {
+        target = poller;
+      }
+    }
+    return target.add(reader);
+  }
+
+  private static final class Poller implements Runnable {
+    private final int myIndex;
+    // guarded by this
+    private final List<PolledReader> myReaders = new ArrayList<>();
+    private boolean myRunning;
+    private boolean myWakeUpRequested;
+
+    Poller(int index) {
+      myIndex = index;
+    }
+
+    synchronized int getReaderCount() {
+      return myReaders.size();
+    }
+
+    @Nonnull
+    synchronized Future<?> add(@Nonnull BaseDataReader reader) {
+      PolledReader polledReader = new PolledReader(reader, this);
+      myReaders.add(polledReader);
+      if (myRunning) {
+        notifyAll();
+      }
+      else {
+        myRunning = true;
+        // the thread is returned to the pool when there is nothing to read
+        ProcessIOExecutorService.INSTANCE.execute(this);
+      }
+      return polledReader.myFinished;
+    }
+
+    synchronized void wakeUp() {
+      myWakeUpRequested = true;
+      notifyAll();
+    }
+
+    @Override
+    public void run() {
+      ConcurrencyUtil.runUnderThreadName("Process output multiplexer " + myIndex, this::pollWhileHasReaders);
+    }
+
+    private void pollWhileHasReaders() {
+      List<PolledReader> readers = new ArrayList<>();
+      try {
+        while (true) {
+          synchronized (this) {
+            if (myReaders.isEmpty()) {
+              myRunning = false;
+              return;
+            }
+            readers.clear();
+            readers.addAll(myReaders);
+          }
+
+          boolean wasActive = false;
+          for (PolledReader reader : readers) {
+            int state;
+            try {
+              state = reader.poll();
+            }
+            catch (Throwable e) {
+              // an error of one reader (e.g. thrown by a listener) finishes only that reader, it's reported to the one waiting for it
+              remove(reader);
+              reader.fail(e);
+              continue;
+            }
+            if (state == BaseDataReader.POLL_FINISHED) {
+              remove(reader);
+            }
+            else if (state == BaseDataReader.POLL_ACTIVE) {
+              wasActive = true;
+            }
+          }
+
+          synchronized (this) {
+            if (!myWakeUpRequested) {
+              wait(wasActive ? BaseDataReader.SleepingPolicy.sleepTimeWhenWasActive : BaseDataReader.SleepingPolicy.sleepTimeWhenIdle);
+            }
+            myWakeUpRequested = false;
+          }
+        }
+      }
+      catch (Throwable e) {
+        if (!(e instanceof InterruptedException)) {
+          LOG.error(e);
+        }
+        // don't leave anyone waiting for the readers
+        synchronized (this) {
+          readers.clear();
+          readers.addAll(myReaders);
+          myReaders.clear();
+          myRunning = false;
+        }
+        for (PolledReader reader : readers) {
+          reader.finish();
+        }
+      }
+    }
+
+    private synchronized void remove(@Nonnull PolledReader reader) {
+      myReaders.remove(reader);
+    }
+  }
+
+  private static final class PolledReader {
+    private final BaseDataReader myReader;
+    private final CompletableFuture<Void> myFinished = new CompletableFuture<>();
+
+    PolledReader(@Nonnull BaseDataReader reader, @Nonnull Poller poller) {
+      myReader = reader;
+      reader.setMultiplexerWakeUp(poller::wakeUp);
+    }
+
+    int poll() {
+      int state = myReader.poll();
+      if (state == BaseDataReader.POLL_FINISHED) {
+        myFinished.complete(null);
+      }
+      return state;
+    }
+
+    void fail(@Nonnull Throwable error) {
+      try {
+        myReader.finishReading();
+      }
+      catch (Throwable e) {
+        error.addSuppressed(e);
+      }
+      finally {
+        myFinished.completeExceptionally(error);
+      }
+    }
+
+    void finish() {
+      try {
+        myReader.finishReading();
+      }
+      finally {
+        myFinished.complete(null);
+      }
+    }
+  }
+}
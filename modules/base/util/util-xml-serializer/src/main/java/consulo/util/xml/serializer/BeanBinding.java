@@ -26,6 +26,7 @@ import org.jdom.Element;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -38,6 +39,10 @@ class BeanBinding extends Binding {
   private final String myTagName;
   @SuppressWarnings("FieldAccessedSynchronizedAndUnsynchronized")
   private Binding[] myBindings;
+  // filters of Property annotations, by binding since sortBindings reorders the bindings
+  @SuppressWarnings("FieldAccessedSynchronizedAndUnsynchronized")
+  private Map<Binding, SerializationFilter> myPropertyFilters;
+  private volatile Constructor<?> myConstructor;
 
   final Class<?> myBeanClass;
 
@@ -58,10 +63,22 @@ class BeanBinding extends Binding {
     assert myBindings == null;
 
     List<MutableAccessor> accessors = getAccessors(myBeanClass);
-    myBindings = new Binding[accessors.size()];
+    Binding[] bindings = new Binding[accessors.size()];
+    Map<Binding, SerializationFilter> propertyFilters = null;
     for (int i = 0, size = accessors.size(); i < size; i++) {
-      myBindings[i] = createBinding(accessors.get(i));
+      MutableAccessor accessor = accessors.get(i);
+      bindings[i] = createBinding(accessor);
+
+      Property property = accessor.getAnnotation(Property.class);
+      if (property != null && property.filter() != SerializationFilter.class) {
+        if (propertyFilters == null) {
+          propertyFilters = new IdentityHashMap<>();
+        }
+        propertyFilters.put(bindings[i], InternalReflectionUtil.newInstance(property.filter()));
+      }
     }
+    myPropertyFilters = propertyFilters == null ? Collections.emptyMap() : propertyFilters;
+    myBindings = bindings;
   }
 
   @Override
@@ -88,9 +105,8 @@ class BeanBinding extends Binding {
         continue;
       }
 
-      //todo: optimize. Cache it.
-      Property property = accessor.getAnnotation(Property.class);
-      if (property != null && property.filter() != SerializationFilter.class && !InternalReflectionUtil.newInstance(property.filter()).accepts(accessor, o)) {
+      SerializationFilter propertyFilter = myPropertyFilters.get(binding);
+      if (propertyFilter != null && !propertyFilter.accepts(accessor, o)) {
         continue;
       }
 
@@ -113,11 +129,21 @@ class BeanBinding extends Binding {
 
   @Override
   public Object deserialize(Object context, @Nonnull Element element) {
-    Object instance = InternalReflectionUtil.newInstance(myBeanClass);
+    Object instance = newInstance();
     deserializeInto(instance, element, null);
     return instance;
   }
 
+  @Nonnull
+  private Object newInstance() {
+    Constructor<?> constructor = myConstructor;
+    if (constructor == null) {
+      constructor = InternalReflectionUtil.getDefaultConstructor(myBeanClass);
+      myConstructor = constructor;
+    }
+    return InternalReflectionUtil.newInstance(constructor);
+  }
+
   boolean equalByFields(@Nonnull Object currentValue, @Nonnull Object defaultValue, @Nonnull SkipDefaultsSerializationFilter filter) {
     for (Binding binding : myBindings) {
       Accessor accessor = binding.getAccessor();
@@ -16,8 +16,18 @@
 package consulo.util.xml.serializer;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * @author VISTALL
@@ -26,6 +36,16 @@ import java.lang.reflect.InvocationTargetException;
  * Since reflection after java 9 can check by stack, we dont need export to util.lang
  */
 class InternalReflectionUtil {
+  // generated accessors are hidden classes which are unloaded only together with the loader of the bean, so they are created once per
+  // method and kept by its class, while property accessors referring to them may be recreated after being collected from a soft cache
+  private static final ClassValue<Map<Method, Object>> ourGeneratedAccessors = new ClassValue<>() {
+    @Override
+    protected Map<Method, Object> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+  private static final Object NO_ACCESSOR = new Object();
+
   @Nonnull
   public static <T> T newInstance(@Nonnull Class<? extends T> clazz) {
     try {
@@ -37,4 +57,108 @@ class InternalReflectionUtil {
       throw new RuntimeException(e);
     }
   }
+
+  @Nonnull
+  static <T> Constructor<T> getDefaultConstructor(@Nonnull Class<T> clazz) {
+    try {
+      Constructor<T> constructor = clazz.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor;
+    }
+    catch (NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Nonnull
+  public static <T> T newInstance(@Nonnull Constructor<T> constructor) {
+    try {
+      return constructor.newInstance();
+    }
+    catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Getter compiled to a class calling the method directly, which is faster than {@link Method#invoke} and doesn't allocate arguments.
+   * The class is defined in the loader of the bean, so it doesn't keep a plugin class loader alive.
+   *
+   * @return null if the package of the method isn't open to this module, reflection should be used then
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  static Function<Object, Object> createGetter(@Nonnull Method method) {
+    return (Function<Object, Object>)getGeneratedAccessor(method, InternalReflectionUtil::generateGetter);
+  }
+
+  /**
+   * @see #createGetter(Method)
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  static BiConsumer<Object, Object> createSetter(@Nonnull Method method) {
+    return (BiConsumer<Object, Object>)getGeneratedAccessor(method, InternalReflectionUtil::generateSetter);
+  }
+
+  @Nullable
+  private static Object getGeneratedAccessor(@Nonnull Method method, @Nonnull Function<Method, Object> generator) {
+    Object accessor = ourGeneratedAccessors.get(method.getDeclaringClass()).computeIfAbsent(method, m -> {
+      Object generated = generator.apply(m);
+      return generated == null ? NO_ACCESSOR : generated;
+    });
+    return accessor == NO_ACCESSOR ? null : accessor;
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> generateGetter(@Nonnull Method method) {
+    MethodHandles.Lookup lookup = getPrivateLookup(method.getDeclaringClass());
+    if (lookup == null) {
+      return null;
+    }
+
+    try {
+      MethodHandle handle = lookup.unreflect(method);
+      MethodType instantiatedType = MethodType.methodType(method.getReturnType(), method.getDeclaringClass()).wrap();
+      return (Function<Object, Object>)LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                                                                     MethodType.methodType(Object.class, Object.class), handle, instantiatedType)
+              .getTarget().invoke();
+    }
+    catch (Throwable e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> generateSetter(@Nonnull Method method) {
+    MethodHandles.Lookup lookup = getPrivateLookup(method.getDeclaringClass());
+    if (lookup == null) {
+      return null;
+    }
+
+    try {
+      MethodHandle handle = lookup.unreflect(method);
+      MethodType instantiatedType = MethodType.methodType(void.class, method.getDeclaringClass(), method.getParameterTypes()[0]).wrap().changeReturnType(void.class);
+      return (BiConsumer<Object, Object>)LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+                                                                       MethodType.methodType(void.class, Object.class, Object.class), handle, instantiatedType)
+              .getTarget().invoke();
+    }
+    catch (Throwable e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static MethodHandles.Lookup getPrivateLookup(@Nonnull Class<?> targetClass) {
+    try {
+      Module module = InternalReflectionUtil.class.getModule();
+      module.addReads(targetClass.getModule());
+      return MethodHandles.privateLookupIn(targetClass, MethodHandles.lookup());
+    }
+    catch (IllegalAccessException | RuntimeException e) {
+      return null;
+    }
+  }
 }
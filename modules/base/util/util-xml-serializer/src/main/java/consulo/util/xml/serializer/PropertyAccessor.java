@@ -21,6 +21,8 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 class PropertyAccessor implements MutableAccessor {
   private final String myName;
@@ -28,6 +30,9 @@ class PropertyAccessor implements MutableAccessor {
   private final Method myReadMethod;
   private final Method myWriteMethod;
   private final Type myGenericType;
+  // see InternalReflectionUtil#createGetter, reflection is used if null
+  private final Function<Object, Object> myGetter;
+  private final BiConsumer<Object, Object> mySetter;
 
   public PropertyAccessor(String name, Class<?> type, @Nonnull Method readMethod, @Nonnull Method writeMethod) {
     myName = name;
@@ -41,10 +46,17 @@ class PropertyAccessor implements MutableAccessor {
       myWriteMethod.setAccessible(true);
     }
     catch (SecurityException ignored) { }
+
+    myGetter = InternalReflectionUtil.createGetter(readMethod);
+    mySetter = InternalReflectionUtil.createSetter(writeMethod);
   }
 
   @Override
   public Object read(@Nonnull Object o) {
+    if (myGetter != null) {
+      return myGetter.apply(o);
+    }
+
     try {
       return myReadMethod.invoke(o);
     }
@@ -61,6 +73,16 @@ class PropertyAccessor implements MutableAccessor {
 
   @Override
   public void set(@Nonnull Object host, @Nullable Object value) {
+    if (mySetter != null) {
+      try {
+        mySetter.accept(host, value);
+      }
+      catch (Exception e) {
+        throw new XmlSerializationException(e);
+      }
+      return;
+    }
+
     try {
       myWriteMethod.invoke(host, value);
     }
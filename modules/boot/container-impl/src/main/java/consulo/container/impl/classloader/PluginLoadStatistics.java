@@ -19,6 +19,8 @@ import consulo.container.StartupError;
 import consulo.container.plugin.PluginId;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -64,8 +66,13 @@ public class PluginLoadStatistics {
     }
   }
 
+  public static final String DESCRIPTOR_STAGE = "descriptor";
+  public static final String CLASSLOADER_STAGE = "classloader";
+
   private static PluginLoadStatistics ourInstance;
 
+  private final ConcurrentMap<PluginId, Map<String, Long>> myLoadTimes = new ConcurrentHashMap<PluginId, Map<String, Long>>();
+
   public static void initialize(boolean internal) {
     if (ourInstance != null) {
       throw new StartupError("duplicate initialize");
@@ -90,4 +97,43 @@ public class PluginLoadStatistics {
 
   public void dumpPluginClassStatistics(Consumer<String> logInfo) {
   }
+
+  /**
+   * Records time spent by particular plugin in loading stage, like {@link #DESCRIPTOR_STAGE} or {@link #CLASSLOADER_STAGE}.
+   * Can be called from any thread
+   */
+  public void addPluginLoadTime(PluginId pluginId, String stage, long timeInMillis) {
+    Map<String, Long> times = myLoadTimes.get(pluginId);
+    if (times == null) {
+      Map<String, Long> newTimes = new ConcurrentHashMap<String, Long>();
+      times = myLoadTimes.putIfAbsent(pluginId, newTimes);
+      if (times == null) {
+        times = newTimes;
+      }
+    }
+    times.put(stage, timeInMillis);
+  }
+
+  public void dumpPluginLoadTimeStatistics(Consumer<String> logInfo, int limit) {
+    List<Map.Entry<PluginId, Map<String, Long>>> entries = new ArrayList<Map.Entry<PluginId, Map<String, Long>>>(myLoadTimes.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<PluginId, Map<String, Long>>>() {
+      @Override
+      public int compare(Map.Entry<PluginId, Map<String, Long>> o1, Map.Entry<PluginId, Map<String, Long>> o2) {
+        return Long.compare(totalTime(o2.getValue()), totalTime(o1.getValue()));
+      }
+    });
+
+    for (int i = 0; i < entries.size() && i < limit; i++) {
+      Map.Entry<PluginId, Map<String, Long>> entry = entries.get(i);
+      logInfo.accept(entry.getKey() + " loaded in " + totalTime(entry.getValue()) + " ms " + new TreeMap<String, Long>(entry.getValue()));
+    }
+  }
+
+  private static long totalTime(Map<String, Long> times) {
+    long result = 0;
+    for (Long time : times.values()) {
+      result += time;
+    }
+    return result;
+  }
 }
@@ -52,6 +52,7 @@ public class ClassPath {
   private final CachePoolImpl myCachePool;
   private final UrlClassLoader.CachingCondition myCachingCondition;
   final boolean myLogErrorOnMissingJar;
+  private final PersistentJarIndex myPersistentJarIndex;
 
   public ClassPath(List<URL> urls,
                    boolean canLockJars,
@@ -65,6 +66,23 @@ public class ClassPath {
                    boolean logErrorOnMissingJar,
                    boolean lazyClassloadingCaches,
                    Set<URL> urlsWithProtectionDomain) {
+    this(urls, canLockJars, canUseCache, acceptUnescapedUrls, preloadJarContents, canHavePersistentIndex, enableJarIndex, cachePool, cachingCondition,
+         logErrorOnMissingJar, lazyClassloadingCaches, urlsWithProtectionDomain, null);
+  }
+
+  public ClassPath(List<URL> urls,
+                   boolean canLockJars,
+                   boolean canUseCache,
+                   boolean acceptUnescapedUrls,
+                   boolean preloadJarContents,
+                   boolean canHavePersistentIndex,
+                   boolean enableJarIndex,
+                   CachePoolImpl cachePool,
+                   UrlClassLoader.CachingCondition cachingCondition,
+                   boolean logErrorOnMissingJar,
+                   boolean lazyClassloadingCaches,
+                   Set<URL> urlsWithProtectionDomain,
+                   File persistentJarIndexFile) {
     myLazyClassloadingCaches = lazyClassloadingCaches;
     myCanLockJars = canLockJars;
     myCanUseCache = canUseCache && !myLazyClassloadingCaches;
@@ -76,6 +94,7 @@ public class ClassPath {
     myCanHavePersistentIndex = canHavePersistentIndex;
     myLogErrorOnMissingJar = logErrorOnMissingJar;
     myURLsWithProtectionDomain = urlsWithProtectionDomain;
+    myPersistentJarIndex = persistentJarIndexFile == null ? null : PersistentJarIndex.getInstance(persistentJarIndexFile);
     push(urls);
   }
 
@@ -214,7 +233,7 @@ public class ClassPath {
       File file = new File(path);
       Loader loader = createLoader(url, index, file, file.getName().startsWith(CLASSPATH_JAR_FILE_NAME_PREFIX));
       if (loader != null) {
-        initLoader(url, loader);
+        initLoader(url, loader, file);
       }
     }
   }
@@ -255,11 +274,18 @@ public class ClassPath {
     return null;
   }
 
-  private void initLoader(URL url, Loader loader) throws IOException {
+  private void initLoader(URL url, Loader loader, File file) throws IOException {
     if (myCanUseCache) {
       ClasspathCache.LoaderData data = myCachePool == null ? null : myCachePool.getCachedData(url);
+      boolean persistent = myPersistentJarIndex != null && loader instanceof JarLoader;
+      if (data == null && persistent) {
+        data = myPersistentJarIndex.getData(file);
+      }
       if (data == null) {
         data = loader.buildData();
+        if (persistent) {
+          myPersistentJarIndex.putData(file, data);
+        }
         if (myCachePool != null && myCachingCondition != null && myCachingCondition.shouldCacheData(url)) {
           myCachePool.cacheData(url, data);
         }
@@ -273,6 +299,10 @@ public class ClassPath {
 
       if (lastOne) {
         myAllUrlsWereProcessed = true;
+
+        if (myPersistentJarIndex != null) {
+          myPersistentJarIndex.saveIfDirty();
+        }
       }
     }
     myLoaders.add(loader);
@@ -280,6 +310,10 @@ public class ClassPath {
     myLastLoaderProcessed.incrementAndGet(); // volatile write
   }
 
+  ClasspathCache.LoaderData getPersistentJarData(File jar) {
+    return myPersistentJarIndex == null ? null : myPersistentJarIndex.getData(jar);
+  }
+
   Attributes getManifestData(URL url) {
     return myCanUseCache && myCachePool != null ? myCachePool.getManifestData(url) : null;
   }
@@ -63,6 +63,14 @@ public class ClasspathCache {
     NameFilter getNameFilter() {
       return myNameFilter;
     }
+
+    IntHashSet getPackageHashes() {
+      IntHashSet result = new IntHashSet(myResourcePackageHashes.length + myClassPackageHashes.length);
+      for (int hash : myResourcePackageHashes) result.add(hash);
+      for (int hash : myClassPackageHashes) result.add(hash);
+      result.add(0); // empty package is in every jar
+      return result;
+    }
   }
 
   static class LoaderDataBuilder {
@@ -15,39 +15,96 @@
  */
 package consulo.util.nodep.classloader;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * @author VISTALL
  * @since 2019-07-15
  * <p>
- * FIXME [VISTALL] make more clear impl ?
+ * Open addressing set of primitive ints, zero is kept out of the table
  */
 final class IntHashSet {
-  private final Set<Integer> impl;
+  private int[] myTable;
+  private int mySize;
+  private boolean myHasZero;
 
   IntHashSet() {
     this(10);
   }
 
   IntHashSet(int capacity) {
-    impl = new HashSet<Integer>(capacity);
+    myTable = new int[tableSize(capacity)];
+  }
+
+  static int tableSize(int capacity) {
+    int size = 16;
+    // keep load factor below 0.5
+    while (size < capacity * 2 && size < (1 << 30)) size <<= 1;
+    return size;
+  }
+
+  static int mix(int value) {
+    int h = value * 0x9E3779B9;
+    return h ^ (h >>> 16);
   }
 
   void add(int value) {
-    impl.add(value);
+    if (value == 0) {
+      if (!myHasZero) {
+        myHasZero = true;
+        mySize++;
+      }
+      return;
+    }
+
+    if ((mySize + 1) * 2 > myTable.length) rehash(myTable.length << 1);
+    if (insert(myTable, value)) mySize++;
+  }
+
+  private static boolean insert(int[] table, int value) {
+    int mask = table.length - 1;
+    int index = mix(value) & mask;
+    while (true) {
+      int current = table[index];
+      if (current == 0) {
+        table[index] = value;
+        return true;
+      }
+      if (current == value) return false;
+      index = (index + 1) & mask;
+    }
+  }
+
+  private void rehash(int newLength) {
+    int[] newTable = new int[newLength];
+    for (int value : myTable) {
+      if (value != 0) insert(newTable, value);
+    }
+    myTable = newTable;
   }
 
   boolean contains(int value) {
-    return impl.contains(value);
+    if (value == 0) return myHasZero;
+
+    int[] table = myTable;
+    int mask = table.length - 1;
+    int index = mix(value) & mask;
+    while (true) {
+      int current = table[index];
+      if (current == 0) return false;
+      if (current == value) return true;
+      index = (index + 1) & mask;
+    }
+  }
+
+  int size() {
+    return mySize;
   }
 
   int[] toArray() {
-    int[] array = new int[impl.size()];
+    int[] array = new int[mySize];
     int i = 0;
-    for (Integer val : impl) {
-      array[i++] = val;
+    if (myHasZero) array[i++] = 0;
+    for (int value : myTable) {
+      if (value != 0) array[i++] = value;
     }
     return array;
   }
@@ -239,6 +239,11 @@ class JarLoader extends Loader {
   private volatile IntHashSet myPackageHashesInside;
 
   private IntHashSet buildPackageHashes() {
+    ClasspathCache.LoaderData persistentData = myConfiguration.getPersistentJarData(new File(myFilePath));
+    if (persistentData != null) {
+      return persistentData.getPackageHashes();
+    }
+
     try {
       ZipFile zipFile = getJarFile();
       try {
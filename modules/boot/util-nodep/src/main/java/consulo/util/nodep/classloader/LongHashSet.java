@@ -15,53 +15,99 @@
  */
 package consulo.util.nodep.classloader;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * @author VISTALL
  * @since 2019-07-15
  * <p>
- * FIXME [VISTALL] make more clear impl ?
+ * Open addressing set of primitive longs, zero is kept out of the table
  */
 class LongHashSet {
   interface LongConsumer {
     void consume(long value);
   }
 
-  private final Set<Long> impl;
+  private long[] myTable;
+  private int mySize;
+  private boolean myHasZero;
 
   LongHashSet() {
     this(10);
   }
 
   LongHashSet(int capacity) {
-    impl = new HashSet<Long>(capacity);
+    myTable = new long[IntHashSet.tableSize(capacity)];
+  }
+
+  private static int mix(long value) {
+    return IntHashSet.mix((int)(value ^ (value >>> 32)));
   }
 
   void add(long value) {
-    impl.add(value);
+    if (value == 0) {
+      if (!myHasZero) {
+        myHasZero = true;
+        mySize++;
+      }
+      return;
+    }
+
+    if ((mySize + 1) * 2 > myTable.length) rehash(myTable.length << 1);
+    if (insert(myTable, value)) mySize++;
+  }
+
+  private static boolean insert(long[] table, long value) {
+    int mask = table.length - 1;
+    int index = mix(value) & mask;
+    while (true) {
+      long current = table[index];
+      if (current == 0) {
+        table[index] = value;
+        return true;
+      }
+      if (current == value) return false;
+      index = (index + 1) & mask;
+    }
+  }
+
+  private void rehash(int newLength) {
+    long[] newTable = new long[newLength];
+    for (long value : myTable) {
+      if (value != 0) insert(newTable, value);
+    }
+    myTable = newTable;
   }
 
   boolean contains(long value) {
-    return impl.contains(value);
+    if (value == 0) return myHasZero;
+
+    long[] table = myTable;
+    int mask = table.length - 1;
+    int index = mix(value) & mask;
+    while (true) {
+      long current = table[index];
+      if (current == 0) return false;
+      if (current == value) return true;
+      index = (index + 1) & mask;
+    }
   }
 
   void forEach(LongConsumer consumer) {
-    for (Long aLong : impl) {
-      consumer.consume(aLong);
+    if (myHasZero) consumer.consume(0);
+    for (long value : myTable) {
+      if (value != 0) consumer.consume(value);
     }
   }
 
   int size() {
-    return impl.size();
+    return mySize;
   }
 
   long[] toArray() {
-    long[] array = new long[impl.size()];
+    long[] array = new long[mySize];
     int i = 0;
-    for (Long val : impl) {
-      array[i++] = val;
+    if (myHasZero) array[i++] = 0;
+    for (long value : myTable) {
+      if (value != 0) array[i++] = value;
     }
     return array;
   }
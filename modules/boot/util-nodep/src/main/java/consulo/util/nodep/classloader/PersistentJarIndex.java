@@ -0,0 +1,232 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.util.nodep.classloader;
+
+import consulo.util.nodep.LoggerRt;
+import consulo.util.nodep.io.DataInputOutputUtilRt;
+import consulo.util.nodep.io.UnsyncByteArrayInputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent storage of {@link ClasspathCache.LoaderData} for jars, shared by all class loaders which are configured with the same index file.
+ * <p>
+ * The file is written once per set of jars and is validated per jar by its length and modification time. On load only the table of jars is read,
+ * data of a jar is deserialized when a loader for it is created, so jars which are never touched by class loading cost nothing.
+ * Stale or missing entries are rebuilt by scanning the jar and the file is rewritten when all urls of a classpath are processed.
+ */
+final class PersistentJarIndex {
+  private static final int VERSION = 1;
+
+  private static final Map<File, PersistentJarIndex> ourIndices = new HashMap<File, PersistentJarIndex>();
+
+  static PersistentJarIndex getInstance(File file) {
+    synchronized (ourIndices) {
+      PersistentJarIndex index = ourIndices.get(file);
+      if (index == null) {
+        index = new PersistentJarIndex(file);
+        ourIndices.put(file, index);
+      }
+      return index;
+    }
+  }
+
+  // for tests: the next getInstance reads the file like the next run of the application does
+  static void dropInstance(File file) {
+    synchronized (ourIndices) {
+      ourIndices.remove(file);
+    }
+  }
+
+  private static final class Entry {
+    final long myLength;
+    final long myTimestamp;
+    // either serialized data (offset and size in myBytes) or already built data
+    final int myOffset;
+    final int mySize;
+    ClasspathCache.LoaderData myData;
+
+    Entry(long length, long timestamp, int offset, int size) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myOffset = offset;
+      mySize = size;
+    }
+
+    Entry(long length, long timestamp, ClasspathCache.LoaderData data) {
+      this(length, timestamp, -1, 0);
+      myData = data;
+    }
+
+    boolean isUpToDate(File jar) {
+      return jar.length() == myLength && jar.lastModified() == myTimestamp;
+    }
+  }
+
+  private final File myFile;
+  private final Map<String, Entry> myEntries = new LinkedHashMap<String, Entry>();
+  private byte[] myBytes;
+  private boolean myDirty;
+
+  // package-private for tests: a new instance reads the file like the next run of the application does
+  PersistentJarIndex(File file) {
+    myFile = file;
+    try {
+      load();
+    }
+    catch (IOException e) {
+      LoggerRt.getInstance(PersistentJarIndex.class).warn("Corrupted classpath index " + file, e);
+      myEntries.clear();
+      myBytes = null;
+      myDirty = true;
+    }
+  }
+
+  private void load() throws IOException {
+    if (!myFile.isFile()) return;
+
+    RandomAccessFile raf = new RandomAccessFile(myFile, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) throw new IOException("Index file is too big: " + size);
+
+      // single bulk read, the file is replaced on save, so it is not kept mapped
+      ByteBuffer buffer = ByteBuffer.allocate((int)size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) throw new EOFException();
+      }
+      myBytes = buffer.array();
+    }
+    finally {
+      raf.close();
+    }
+
+    DataInputStream input = new DataInputStream(new UnsyncByteArrayInputStream(myBytes));
+    if (DataInputOutputUtilRt.readINT(input) != VERSION) {
+      myBytes = null;
+      myDirty = true;
+      return;
+    }
+
+    int count = DataInputOutputUtilRt.readINT(input);
+    Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    for (int i = 0; i < count; i++) {
+      String path = input.readUTF();
+      long length = input.readLong();
+      long timestamp = input.readLong();
+      int offset = DataInputOutputUtilRt.readINT(input);
+      int dataSize = DataInputOutputUtilRt.readINT(input);
+      entries.put(path, new Entry(length, timestamp, offset, dataSize));
+    }
+
+    // offsets are relative to the data section which follows the table of jars
+    int dataStart = myBytes.length - input.available();
+    for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+      Entry entry = mapEntry.getValue();
+      if (entry.myOffset < 0 || entry.mySize < 0 || dataStart + entry.myOffset + entry.mySize > myBytes.length) {
+        throw new IOException("Invalid entry for " + mapEntry.getKey());
+      }
+      myEntries.put(mapEntry.getKey(), new Entry(entry.myLength, entry.myTimestamp, dataStart + entry.myOffset, entry.mySize));
+    }
+  }
+
+  synchronized ClasspathCache.LoaderData getData(File jar) {
+    Entry entry = myEntries.get(jar.getPath());
+    if (entry == null || !entry.isUpToDate(jar)) return null;
+
+    if (entry.myData == null) {
+      try {
+        entry.myData = new ClasspathCache.LoaderData(new DataInputStream(new UnsyncByteArrayInputStream(myBytes, entry.myOffset, entry.myOffset + entry.mySize)));
+      }
+      catch (IOException e) {
+        myEntries.remove(jar.getPath());
+        myDirty = true;
+        return null;
+      }
+    }
+    return entry.myData;
+  }
+
+  synchronized void putData(File jar, ClasspathCache.LoaderData data) {
+    myEntries.put(jar.getPath(), new Entry(jar.length(), jar.lastModified(), data));
+    myDirty = true;
+  }
+
+  synchronized void saveIfDirty() {
+    if (!myDirty) return;
+
+    try {
+      ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+      DataOutputStream dataOutput = new DataOutputStream(dataBytes);
+
+      Map<String, int[]> ranges = new LinkedHashMap<String, int[]>();
+      for (Map.Entry<String, Entry> mapEntry : myEntries.entrySet()) {
+        // jars removed from distribution are not worth to keep
+        if (!new File(mapEntry.getKey()).isFile()) continue;
+
+        Entry entry = mapEntry.getValue();
+        int start = dataOutput.size();
+        if (entry.myData != null) {
+          entry.myData.save(dataOutput);
+        }
+        else {
+          dataOutput.write(myBytes, entry.myOffset, entry.mySize);
+        }
+        ranges.put(mapEntry.getKey(), new int[]{start, dataOutput.size() - start});
+      }
+      dataOutput.flush();
+
+      ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(dataBytes.size() + ranges.size() * 128);
+      DataOutputStream output = new DataOutputStream(fileBytes);
+      DataInputOutputUtilRt.writeINT(output, VERSION);
+      DataInputOutputUtilRt.writeINT(output, ranges.size());
+      for (Map.Entry<String, int[]> range : ranges.entrySet()) {
+        Entry entry = myEntries.get(range.getKey());
+        output.writeUTF(range.getKey());
+        output.writeLong(entry.myLength);
+        output.writeLong(entry.myTimestamp);
+        DataInputOutputUtilRt.writeINT(output, range.getValue()[0]);
+        DataInputOutputUtilRt.writeINT(output, range.getValue()[1]);
+      }
+      dataBytes.writeTo(output);
+      output.flush();
+
+      writeAtomically(fileBytes.toByteArray());
+      myDirty = false;
+    }
+    catch (IOException e) {
+      LoggerRt.getInstance(PersistentJarIndex.class).warn("Failed to save classpath index " + myFile, e);
+    }
+  }
+
+  private void writeAtomically(byte[] bytes) throws IOException {
+    File parent = myFile.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Cannot create " + parent);
+    }
+
+    // a unique temp file, so that concurrent writers never interleave, and an atomic move, so that readers never see a partial file
+    Path temp = Files.createTempFile(parent.toPath(), myFile.getName(), ".tmp");
+    try {
+      Files.write(temp, bytes);
+      try {
+        Files.move(temp, myFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, myFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
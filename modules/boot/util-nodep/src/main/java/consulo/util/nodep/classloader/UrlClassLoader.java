@@ -49,6 +49,11 @@ public class UrlClassLoader extends ClassLoader implements AutoCloseable {
 
   private static final boolean ourClassPathIndexEnabled = Boolean.parseBoolean(System.getProperty("idea.classpath.index.enabled", "true"));
 
+  private static File getJarIndexFileFromProperty() {
+    String path = System.getProperty("idea.classpath.jar.index.file");
+    return path == null ? null : new File(path);
+  }
+
   protected ClassPath getClassPath() {
     return myClassPath;
   }
@@ -74,6 +79,7 @@ public class UrlClassLoader extends ClassLoader implements AutoCloseable {
     private boolean myAllowBootstrapResources;
     private boolean myErrorOnMissingJar = true;
     private boolean myLazyClassloadingCaches;
+    private File myPersistentJarIndexFile;
 
     private CachePoolImpl myCachePool;
 
@@ -176,6 +182,16 @@ public class UrlClassLoader extends ClassLoader implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Jar loaders will store list of packages / names of their entries in the given file and reuse it on next start instead of
+     * scanning jars. Entries are validated by length and modification time of jar, so the file may be shared between runs of
+     * different distributions. The file is replaced atomically, so processes running at the same time may share it, the last writer wins.
+     */
+    public Builder usePersistentClasspathIndexForJars(File indexFile) {
+      myPersistentJarIndexFile = ourClassPathIndexEnabled ? indexFile : null;
+      return this;
+    }
+
     public Builder allowUnescaped() {
       myAcceptUnescaped = true;
       return this;
@@ -236,6 +252,7 @@ public class UrlClassLoader extends ClassLoader implements AutoCloseable {
                 .allowLock()
                 .useCache()
                 .usePersistentClasspathIndexForLocalClassDirectories()
+                .usePersistentClasspathIndexForJars(getJarIndexFileFromProperty())
                 .useLazyClassloadingCaches(Boolean.parseBoolean(System.getProperty("idea.lazy.classloading.caches", "false"))));
   }
 
@@ -282,7 +299,8 @@ public class UrlClassLoader extends ClassLoader implements AutoCloseable {
                          builder.myCachingCondition,
                          builder.myErrorOnMissingJar,
                          builder.myLazyClassloadingCaches,
-                         builder.myURLsWithProtectionDomain);
+                         builder.myURLsWithProtectionDomain,
+                         builder.myPersistentJarIndexFile);
   }
 
   public static URL internProtocol(URL url) {
@@ -0,0 +1,130 @@
+// Copyright 2013-2026 consulo.io. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package consulo.util.nodep.classloader;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Class loaders configured with {@link UrlClassLoader.Builder#usePersistentClasspathIndexForJars(File)} store data of scanned jars,
+ * which is reused by next loaders and next runs as long as the jar is not changed.
+ */
+public class PersistentJarIndexTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    // a directory per test: indices are shared by all loaders of the same file
+    myDir = Files.createTempDirectory("jar-index").toFile();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try (Stream<Path> paths = Files.walk(myDir.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testNextRunReadsJarDataFromIndex() throws Exception {
+    File jar = createJar("lib.jar", "pkg/sub/Resource.txt", "other/Data.bin");
+    File indexFile = new File(myDir, "jars.index");
+
+    try (UrlClassLoader loader = createLoader(jar, indexFile)) {
+      assertNotNull(loader.getResource("pkg/sub/Resource.txt"));
+      assertNull(loader.getResource("pkg/sub/Missing.txt"));
+    }
+    assertTrue(indexFile.isFile());
+
+    // a new instance reads the file like the next run does
+    ClasspathCache.LoaderData data = new PersistentJarIndex(indexFile).getData(jar);
+    assertNotNull(data);
+    assertTrue(data.getNameFilter().maybeContains(ClasspathCache.transformName("pkg/sub/Resource.txt")));
+    assertTrue(data.getPackageHashes().contains(ClasspathCache.getPackageNameHash("pkg/sub/Resource.txt")));
+    assertTrue(data.getPackageHashes().contains(ClasspathCache.getPackageNameHash("other/Data.bin")));
+  }
+
+  public void testNextLoaderDoesNotRescanJar() throws Exception {
+    File jar = createJar("lib.jar", "pkg/Resource.txt");
+    File indexFile = new File(myDir, "jars.index");
+
+    try (UrlClassLoader loader = createLoader(jar, indexFile)) {
+      assertNotNull(loader.getResource("pkg/Resource.txt"));
+    }
+    byte[] content = Files.readAllBytes(indexFile.toPath());
+    assertTrue(indexFile.setLastModified(1000));
+    PersistentJarIndex.dropInstance(indexFile);
+
+    // a rescanned jar would make the index dirty and rewritten
+    try (UrlClassLoader loader = createLoader(jar, indexFile)) {
+      assertNotNull(loader.getResource("pkg/Resource.txt"));
+      assertNull(loader.getResource("pkg/Missing.txt"));
+    }
+    assertEquals(1000, indexFile.lastModified());
+    assertTrue(Arrays.equals(content, Files.readAllBytes(indexFile.toPath())));
+  }
+
+  public void testChangedJarIsRescanned() throws Exception {
+    File jar = createJar("lib.jar", "pkg/Old.txt");
+    File indexFile = new File(myDir, "jars.index");
+
+    try (UrlClassLoader loader = createLoader(jar, indexFile)) {
+      assertNotNull(loader.getResource("pkg/Old.txt"));
+    }
+
+    createJar("lib.jar", "pkg/New.txt", "pkg/newer/Other.txt");
+    assertNull(new PersistentJarIndex(indexFile).getData(jar));
+    PersistentJarIndex.dropInstance(indexFile);
+
+    try (UrlClassLoader loader = createLoader(jar, indexFile)) {
+      assertNotNull(loader.getResource("pkg/New.txt"));
+      assertNotNull(loader.getResource("pkg/newer/Other.txt"));
+      assertNull(loader.getResource("pkg/Old.txt"));
+    }
+
+    ClasspathCache.LoaderData data = new PersistentJarIndex(indexFile).getData(jar);
+    assertNotNull(data);
+    assertTrue(data.getPackageHashes().contains(ClasspathCache.getPackageNameHash("pkg/newer/Other.txt")));
+  }
+
+  public void testCorruptedIndexIsIgnored() throws Exception {
+    File jar = createJar("lib.jar", "pkg/Resource.txt");
+    File indexFile = new File(myDir, "jars.index");
+    Files.write(indexFile.toPath(), "not an index".getBytes(StandardCharsets.UTF_8));
+
+    assertNull(new PersistentJarIndex(indexFile).getData(jar));
+    try (UrlClassLoader loader = createLoader(jar, indexFile)) {
+      assertNotNull(loader.getResource("pkg/Resource.txt"));
+    }
+    assertNotNull(new PersistentJarIndex(indexFile).getData(jar));
+  }
+
+  private static UrlClassLoader createLoader(File jar, File indexFile) throws IOException {
+    return UrlClassLoader.build().urls(jar.toURI().toURL()).parent(null).useCache().usePersistentClasspathIndexForJars(indexFile).get();
+  }
+
+  private File createJar(String name, String... entries) throws IOException {
+    File jar = new File(myDir, name);
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+      for (String entry : entries) {
+        output.putNextEntry(new ZipEntry(entry));
+        output.write(entry.getBytes(StandardCharsets.UTF_8));
+        output.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
@@ -30,73 +30,96 @@ class ComplexTextFragment extends TextFragment {
   // We expect no more than 1025 chars in a fragment, so 'short' should be enough.
 
   ComplexTextFragment(@Nonnull char[] lineChars, int start, int end, boolean isRtl, @Nonnull FontInfo fontInfo) {
-    super(end - start);
-    assert start >= 0;
-    assert end <= lineChars.length;
-    assert start < end;
-    myGlyphVector = FontLayoutService.getInstance().layoutGlyphVector(fontInfo.getFont(), fontInfo.getFontRenderContext(), lineChars, start, end, isRtl);
-    int numChars = end - start;
-    int numGlyphs = myGlyphVector.getNumGlyphs();
-    float totalWidth = (float)myGlyphVector.getGlyphPosition(numGlyphs).getX();
-    myCharPositions[numChars - 1] = totalWidth;
-    int lastCharIndex = -1;
-    float lastX = isRtl ? totalWidth : 0;
-    float prevX = lastX;
-    // Here we determine coordinates for boundaries between characters.
-    // They will be used to place caret, last boundary coordinate is also defining the width of text fragment.
-    //
-    // We expect these positions to be ordered, so that when caret moves through text characters in some direction, corresponding text
-    // offsets change monotonously (within the same-directionality fragment).
-    //
-    // Special case that we must account for is a ligature, when several adjacent characters are represented as a single glyph.
-    // In a glyph vector this glyph is associated with the first character,
-    // other characters either don't have an associated glyph, or they are associated with empty glyphs.
-    // (in RTL case real glyph will be associated with first logical character, i.e. last visual character)
-    for (int i = 0; i < numGlyphs; i++) {
-      int visualGlyphIndex = isRtl ? numGlyphs - 1 - i : i;
-      int charIndex = myGlyphVector.getGlyphCharIndex(visualGlyphIndex);
-      if (charIndex > lastCharIndex) {
-        Rectangle2D bounds = myGlyphVector.getGlyphLogicalBounds(visualGlyphIndex).getBounds2D();
-        if (!bounds.isEmpty()) {
-          if (charIndex > lastCharIndex + 1) {
-            for (int j = Math.max(0, lastCharIndex); j < charIndex; j++) {
-              setCharPosition(j, prevX + (lastX - prevX) * (j - lastCharIndex + 1) / (charIndex - lastCharIndex), isRtl, numChars);
+    this(GlyphLayoutCache.getLayout(lineChars, start, end, isRtl, fontInfo));
+  }
+
+  private ComplexTextFragment(@Nonnull Layout layout) {
+    super(layout.myCharPositions);
+    myGlyphVector = layout.myGlyphVector;
+    myCodePoint2Offset = layout.myCodePoint2Offset;
+  }
+
+  /**
+   * Glyph vector of a text with character positions derived from it, shared by all fragments of the same text and font
+   * (see {@link GlyphLayoutCache}), so it's never modified after construction.
+   */
+  static final class Layout {
+    @Nonnull
+    private final GlyphVector myGlyphVector;
+    @Nonnull
+    private final float[] myCharPositions;
+    @Nullable
+    private final short[] myCodePoint2Offset;
+
+    Layout(@Nonnull char[] lineChars, int start, int end, boolean isRtl, @Nonnull FontInfo fontInfo) {
+      assert start >= 0;
+      assert end <= lineChars.length;
+      assert start < end;
+      myGlyphVector = FontLayoutService.getInstance().layoutGlyphVector(fontInfo.getFont(), fontInfo.getFontRenderContext(), lineChars, start, end, isRtl);
+      int numChars = end - start;
+      myCharPositions = new float[numChars];
+      int numGlyphs = myGlyphVector.getNumGlyphs();
+      float totalWidth = (float)myGlyphVector.getGlyphPosition(numGlyphs).getX();
+      myCharPositions[numChars - 1] = totalWidth;
+      int lastCharIndex = -1;
+      float lastX = isRtl ? totalWidth : 0;
+      float prevX = lastX;
+      // Here we determine coordinates for boundaries between characters.
+      // They will be used to place caret, last boundary coordinate is also defining the width of text fragment.
+      //
+      // We expect these positions to be ordered, so that when caret moves through text characters in some direction, corresponding text
+      // offsets change monotonously (within the same-directionality fragment).
+      //
+      // Special case that we must account for is a ligature, when several adjacent characters are represented as a single glyph.
+      // In a glyph vector this glyph is associated with the first character,
+      // other characters either don't have an associated glyph, or they are associated with empty glyphs.
+      // (in RTL case real glyph will be associated with first logical character, i.e. last visual character)
+      for (int i = 0; i < numGlyphs; i++) {
+        int visualGlyphIndex = isRtl ? numGlyphs - 1 - i : i;
+        int charIndex = myGlyphVector.getGlyphCharIndex(visualGlyphIndex);
+        if (charIndex > lastCharIndex) {
+          Rectangle2D bounds = myGlyphVector.getGlyphLogicalBounds(visualGlyphIndex).getBounds2D();
+          if (!bounds.isEmpty()) {
+            if (charIndex > lastCharIndex + 1) {
+              for (int j = Math.max(0, lastCharIndex); j < charIndex; j++) {
+                setCharPosition(myCharPositions, j, prevX + (lastX - prevX) * (j - lastCharIndex + 1) / (charIndex - lastCharIndex), isRtl, numChars);
+              }
             }
+            float newX = isRtl ? Math.min(lastX, (float)bounds.getMinX()) : Math.max(lastX, (float)bounds.getMaxX());
+            newX = Math.max(0, Math.min(totalWidth, newX));
+            setCharPosition(myCharPositions, charIndex, newX, isRtl, numChars);
+            prevX = lastX;
+            lastX = newX;
+            lastCharIndex = charIndex;
           }
-          float newX = isRtl ? Math.min(lastX, (float)bounds.getMinX()) : Math.max(lastX, (float)bounds.getMaxX());
-          newX = Math.max(0, Math.min(totalWidth, newX));
-          setCharPosition(charIndex, newX, isRtl, numChars);
-          prevX = lastX;
-          lastX = newX;
-          lastCharIndex = charIndex;
         }
       }
-    }
-    if (lastCharIndex < numChars - 1) {
-      for (int j = Math.max(0, lastCharIndex); j < numChars - 1; j++) {
-        setCharPosition(j, prevX + (lastX - prevX) * (j - lastCharIndex + 1) / (numChars - lastCharIndex), isRtl, numChars);
+      if (lastCharIndex < numChars - 1) {
+        for (int j = Math.max(0, lastCharIndex); j < numChars - 1; j++) {
+          setCharPosition(myCharPositions, j, prevX + (lastX - prevX) * (j - lastCharIndex + 1) / (numChars - lastCharIndex), isRtl, numChars);
+        }
       }
-    }
-    int codePointCount = Character.codePointCount(lineChars, start, end - start);
-    if (codePointCount == numChars) {
-      myCodePoint2Offset = null;
-    }
-    else {
-      myCodePoint2Offset = new short[codePointCount];
-      int offset = 0;
-      for (int i = 0; i < codePointCount; i++) {
-        myCodePoint2Offset[i] = (short)(offset++);
-        if (offset < numChars && Character.isHighSurrogate(lineChars[start + offset - 1]) && Character.isLowSurrogate(lineChars[start + offset])) {
-          offset++;
+      int codePointCount = Character.codePointCount(lineChars, start, end - start);
+      if (codePointCount == numChars) {
+        myCodePoint2Offset = null;
+      }
+      else {
+        myCodePoint2Offset = new short[codePointCount];
+        int offset = 0;
+        for (int i = 0; i < codePointCount; i++) {
+          myCodePoint2Offset[i] = (short)(offset++);
+          if (offset < numChars && Character.isHighSurrogate(lineChars[start + offset - 1]) && Character.isLowSurrogate(lineChars[start + offset])) {
+            offset++;
+          }
         }
       }
     }
-  }
 
-  private void setCharPosition(int logicalCharIndex, float x, boolean isRtl, int numChars) {
-    int charPosition = isRtl ? numChars - logicalCharIndex - 2 : logicalCharIndex;
-    if (charPosition >= 0 && charPosition < numChars - 1) {
-      myCharPositions[charPosition] = x;
+    private static void setCharPosition(float[] charPositions, int logicalCharIndex, float x, boolean isRtl, int numChars) {
+      int charPosition = isRtl ? numChars - logicalCharIndex - 2 : logicalCharIndex;
+      if (charPosition >= 0 && charPosition < numChars - 1) {
+        charPositions[charPosition] = x;
+      }
     }
   }
 
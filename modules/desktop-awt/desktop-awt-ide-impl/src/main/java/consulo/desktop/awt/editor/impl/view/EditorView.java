@@ -683,6 +683,7 @@ public class EditorView implements TextDrawingCallback, Disposable, Dumpable, Hi
              ", tab size: " + myTabSize +
              " ,size manager: " + mySizeManager.dumpState() +
              " ,logical position cache: " + myLogicalPositionCache.dumpState() +
+             " ,glyph layout cache: " + GlyphLayoutCache.dumpState() +
              "]";
     }
   }
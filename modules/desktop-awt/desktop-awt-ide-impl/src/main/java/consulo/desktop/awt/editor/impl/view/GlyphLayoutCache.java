@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013-2026 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package consulo.desktop.awt.editor.impl.view;
+
+import consulo.codeEditor.impl.FontInfo;
+
+import jakarta.annotation.Nonnull;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Glyph layouts of {@link ComplexTextFragment}s, shared by all editors. It's the second level of text layout caching:
+ * {@link TextLayoutCache} keeps line layouts of an editor and drops them on document, font or highlighting changes,
+ * while layouts of the same text with the same font are taken from here - after such invalidation, in other editors
+ * of the same file and for the text repeated in lines (indents, keywords, when ligatures are enabled).
+ * <p>
+ * Memory is bounded by the total length of cached text, least recently used layouts are evicted first.
+ * The cache is split into shards by the key hash, so threads computing layouts for different text don't contend.
+ */
+final class GlyphLayoutCache {
+  private static final int SHARD_COUNT = 8;
+  private static final int MAX_CHARS_IN_SHARD = 32 * 1024;
+
+  private static final Shard[] ourShards = new Shard[SHARD_COUNT];
+
+  static {
+    for (int i = 0; i < SHARD_COUNT; i++) {
+      ourShards[i] = new Shard();
+    }
+  }
+
+  private static final LongAdder ourHits = new LongAdder();
+  private static final LongAdder ourMisses = new LongAdder();
+  private static final LongAdder ourEvictions = new LongAdder();
+
+  private GlyphLayoutCache() {
+  }
+
+  @Nonnull
+  static ComplexTextFragment.Layout getLayout(@Nonnull char[] lineChars, int start, int end, boolean isRtl, @Nonnull FontInfo fontInfo) {
+    Key key = new Key(Arrays.copyOfRange(lineChars, start, end), isRtl, fontInfo.getFont(), fontInfo.getFontRenderContext());
+    Shard shard = ourShards[(key.myHashCode ^ (key.myHashCode >>> 16)) & (SHARD_COUNT - 1)];
+
+    ComplexTextFragment.Layout layout;
+    synchronized (shard) {
+      layout = shard.myLayouts.get(key);
+    }
+    if (layout != null) {
+      ourHits.increment();
+      return layout;
+    }
+
+    ourMisses.increment();
+    // laid out without lock, concurrent computation of the same layout is harmless
+    layout = new ComplexTextFragment.Layout(lineChars, start, end, isRtl, fontInfo);
+    synchronized (shard) {
+      ComplexTextFragment.Layout previous = shard.myLayouts.put(key, layout);
+      if (previous == null) {
+        shard.myCharCount += key.myText.length;
+        shard.trim();
+      }
+    }
+    return layout;
+  }
+
+  @Nonnull
+  static String dumpState() {
+    int layoutCount = 0;
+    long charCount = 0;
+    for (Shard shard : ourShards) {
+      synchronized (shard) {
+        layoutCount += shard.myLayouts.size();
+        charCount += shard.myCharCount;
+      }
+    }
+    return "[layouts: " + layoutCount +
+           ", chars: " + charCount +
+           ", hits: " + ourHits.sum() +
+           ", misses: " + ourMisses.sum() +
+           ", evictions: " + ourEvictions.sum() +
+           "]";
+  }
+
+  private static final class Shard {
+    private final LinkedHashMap<Key, ComplexTextFragment.Layout> myLayouts = new LinkedHashMap<>(256, 0.75f, true);
+    private int myCharCount;
+
+    // run under shard lock
+    private void trim() {
+      Iterator<Map.Entry<Key, ComplexTextFragment.Layout>> it = myLayouts.entrySet().iterator();
+      while (myCharCount > MAX_CHARS_IN_SHARD && it.hasNext()) {
+        myCharCount -= it.next().getKey().myText.length;
+        it.remove();
+        ourEvictions.increment();
+      }
+    }
+  }
+
+  private static final class Key {
+    private final char[] myText;
+    private final boolean myRtl;
+    private final Font myFont;
+    private final FontRenderContext myContext;
+    private final int myHashCode;
+
+    private Key(@Nonnull char[] text, boolean rtl, @Nonnull Font font, @Nonnull FontRenderContext context) {
+      myText = text;
+      myRtl = rtl;
+      myFont = font;
+      myContext = context;
+      myHashCode = 31 * (31 * (31 * Arrays.hashCode(text) + Boolean.hashCode(rtl)) + font.hashCode()) + context.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key)o;
+      return myHashCode == key.myHashCode &&
+             myRtl == key.myRtl &&
+             Arrays.equals(myText, key.myText) &&
+             myFont.equals(key.myFont) &&
+             myContext.equals(key.myContext);
+    }
+
+    @Override
+    public int hashCode() {
+      return myHashCode;
+    }
+  }
+}
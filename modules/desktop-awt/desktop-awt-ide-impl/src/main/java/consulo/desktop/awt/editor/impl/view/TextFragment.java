@@ -17,6 +17,11 @@ abstract class TextFragment implements LineFragment {
     myCharPositions = new float[charCount]; // populated by subclasses' constructors
   }
 
+  TextFragment(@Nonnull float[] charPositions) {
+    assert charPositions.length > 0;
+    myCharPositions = charPositions; // can be shared by fragments, not modified
+  }
+
   @Override
   public int getLength() {
     return myCharPositions.length;